@@ -1,10 +1,54 @@
 import tester.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.lang.management.ManagementFactory;
 import javalib.impworld.*;
 import javalib.worldimages.*;
 import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
 
 
 // represents the world where all the components are drawn on
@@ -13,21 +57,65 @@ class GameWorld extends World {
   int gridWidth;
   int numMines;
   int flagNum;
-  ArrayList<ArrayList<IGamePiece>> grid;
+  Board board;
   Random rand;
+  WorldScene scene;
+  int tilesPlaced;
+  int[] dirty;
+  int dirtyCount;
+  boolean hints;
+  MineProbability odds;
+  Path savePath;
+  MoveLog log;
+  boolean isGameOver;
+  MoveHistory history;
+  int frames;
+  Viewport view;
+  Overview overview;
+  Posn dragFrom;
+  HitTester hits;
+  boolean flagging;
+  int lastHit;
+  boolean deferred;
+  boolean hud;
+  int hudMines;
+  int hudCells;
 
   // default constructor
+  // the seed is drawn here rather than left to Random, so that the game can
+  // be dealt again from its MoveLog
+  // the mines are only placed on the first left click, so it is never on a
+  // mine and opening the window costs no more than allocating the board
   GameWorld(int gridLength, int gridWidth, int numMines) {
+    int seed = new Random().nextInt();
     this.gridLength = gridLength;
     this.gridWidth = gridWidth;
     this.numMines = numMines;
     this.flagNum = 0;
-    this.grid = new ArrayList<ArrayList<IGamePiece>>();
-    this.rand = new Random();
-
-    this.initCells();
-    this.placeMines();
-    this.updateNeighbors();
+    this.board = new Board(0, 0);
+    this.rand = new Random(seed);
+    this.scene = null;
+    this.tilesPlaced = 0;
+    this.dirty = new int[64];
+    this.dirtyCount = 0;
+    this.hints = false;
+    this.odds = new MineProbability();
+    this.savePath = Paths.get("minesweeper.sav");
+    this.log = new MoveLog(gridLength, gridWidth, numMines, seed, false);
+    this.isGameOver = false;
+    this.history = new MoveHistory();
+    this.frames = 0;
+    this.view = new Viewport(gridLength, gridWidth, 300, 300);
+    this.overview = null;
+    this.dragFrom = null;
+    this.hits = new HitTester(this.view);
+    this.flagging = false;
+    this.lastHit = -1;
+    this.deferred = false;
+    this.hud = false;
+    this.hudMines = -1;
+    this.hudCells = -1;
+    this.defer();
   }
 
   // convenience constructor
@@ -36,8 +124,48 @@ class GameWorld extends World {
     this.gridWidth = gridWidth;
     this.numMines = numMines;
     this.flagNum = 0;
-    this.grid = new ArrayList<ArrayList<IGamePiece>>();
+    this.board = new Board(0, 0);
     this.rand = new Random(seed);
+    this.scene = null;
+    this.tilesPlaced = 0;
+    this.dirty = new int[64];
+    this.dirtyCount = 0;
+    this.hints = false;
+    this.odds = new MineProbability();
+    this.savePath = Paths.get("minesweeper.sav");
+    this.log = new MoveLog(gridLength, gridWidth, numMines, seed, false);
+    this.isGameOver = false;
+    this.history = new MoveHistory();
+    this.frames = 0;
+    this.view = new Viewport(gridLength, gridWidth, 300, 300);
+    this.overview = null;
+    this.dragFrom = null;
+    this.hits = new HitTester(this.view);
+    this.flagging = false;
+    this.lastHit = -1;
+    this.deferred = false;
+    this.hud = false;
+    this.hudMines = -1;
+    this.hudCells = -1;
+  }
+
+  // convenience constructor
+  // deals a board from the given generator that can be solved by logic alone,
+  // with the square in the middle already opened as the first click
+  GameWorld(NoGuessGenerator generator, int seed) {
+    this(generator.length, generator.width, generator.numMines, seed);
+    this.log.noGuess = true;
+    int first = this.gridLength / 2 * this.gridWidth + this.gridWidth / 2;
+    DealEvent event = DealEvent.start();
+    long start = System.nanoTime();
+    this.board = generator.generate(seed, first);
+    if (this.board == null) {
+      this.initCells();
+      this.board.placeMines(this.numMines, this.rand, first);
+      this.updateNeighbors();
+    }
+    this.dealt(start, event);
+    this.floodFill(this.board.rowOf(first), this.board.colOf(first));
   }
   
   /* TEMPLATE
@@ -45,75 +173,121 @@ class GameWorld extends World {
    * ... this.gridLength ...                                     --int
    * ... this.gridWidth ...                                      --int
    * ... this.numMines ...                                       --int
-   * ... this.grid ...                                           --ArrayList<ArrayList<IGamePiece>>
+   * ... this.board ...                                          --Board
    * ... this.rand ...                                           --Random
+   * ... this.scene ...                                          --WorldScene
+   * ... this.tilesPlaced ...                                    --int
+   * ... this.dirty ...                                          --int[]
+   * ... this.dirtyCount ...                                     --int
+   * ... this.hints ...                                          --boolean
+   * ... this.odds ...                                           --MineProbability
+   * ... this.savePath ...                                       --Path
+   * ... this.log ...                                            --MoveLog
    * ... this.isGameOver ...                                     --boolean
+   * ... this.history ...                                        --MoveHistory
+   * ... this.frames ...                                         --int
+   * ... this.view ...                                           --Viewport
+   * ... this.overview ...                                       --Overview
+   * ... this.dragFrom ...                                       --Posn
+   * ... this.hits ...                                           --HitTester
+   * ... this.flagging ...                                       --boolean
+   * ... this.lastHit ...                                        --int
+   * ... this.deferred ...                                       --boolean
+   * ... this.hud ...                                            --boolean
+   * ... this.hudMines ...                                       --int
+   * ... this.hudCells ...                                       --int
    * Methods:
    * ... this.initCells() ...                                    --void
    * ... this.placeMines() ...                                   --void
    * ... this.updateNeighbors() ...                              --void
+   * ... this.defer() ...                                        --void
+   * ... this.deal(int safe) ...                                 --void
    * ... this.checkOutOfBounds(int n) ...                        --int
+   * ... this.pieceAt(int row, int col) ...                      --IGamePiece
+   * ... this.dealt(long start, DealEvent event) ...             --void
    * ... this.makeScene() ...                                    --WorldScene
+   * ... this.drawTile(int idx) ...                              --void
+   * ... this.drawOverview() ...                                 --int
+   * ... this.drawHud(boolean fresh) ...                         --void
+   * ... this.markDirty(int idx) ...                             --void
+   * ... this.resize(int width, int height) ...                  --void
+   * ... this.zoomBy(int steps) ...                              --void
+   * ... this.onMousePressed(Posn pos, String buttonName) ...    --void
+   * ... this.onMouseReleased(Posn pos, String buttonName) ...   --void
+   * ... this.onMouseMoved(Posn pos) ...                         --void
+   * ... this.flagAlong(int idx) ...                             --void
+   * ... this.onKeyEvent(String key) ...                         --void
+   * ... this.save() ...                                         --void
+   * ... this.load() ...                                         --void
+   * ... this.resume(Board loaded) ...                           --void
+   * ... this.resume(Board loaded, int toDeal) ...               --void
    * ... this.onMouseClicked(Posn pos, String buttonName) ...    --void
-   * ... this.floodFill(int rowIdx, int colIdx) ...              --void
+   * ... this.play(Posn pos, String buttonName) ...              --void
+   * ... this.play(int x, int y, String buttonName) ...          --void
+   * ... this.click(Posn pos, String buttonName) ...             --void
+   * ... this.click(int x, int y, String buttonName) ...         --void
+   * ... this.clickCell(int idx, String buttonName) ...          --void
+   * ... this.chord(int idx) ...                                 --void
+   * ... this.remember(int opened) ...                           --void
+   * ... this.undo() ...                                         --void
+   * ... this.redo() ...                                         --void
+   * ... this.flip(int entry) ...                                --void
+   * ... this.checkWin() ...                                     --void
+   * ... this.isWon() ...                                        --boolean
+   * ... this.minesLeft() ...                                    --int
+   * ... this.cellsLeft() ...                                    --int
+   * ... this.toggleHud() ...                                    --void
+   * ... this.floodFill(int rowIdx, int colIdx) ...              --int
+   * ... this.filled(long start, FloodFillEvent event, int opened) ...  --void
    * ... this.lastScene(String msg) ...                          --WorldScene
    */
 
-  // initializes all gridLength*gridWidth cells in this.grid
-  void initCells() {
-    for (int r = 0; r < this.gridLength; r++) {
-      ArrayList<IGamePiece> row = new ArrayList<IGamePiece>();
-      for (int c = 0; c < this.gridWidth; c++) {
-        row.add(new Cell());
-      }
-      this.grid.add(row);
+  // records in Metrics and JFR a board dealt since the given nanoTime
+  void dealt(long start, DealEvent event) {
+    Metrics.DEAL_NANOS.record(System.nanoTime() - start);
+    if (event != null) {
+      event.cells = this.board.size();
+      event.mines = this.board.numMines;
+      event.commit();
     }
   }
 
-  // randomly places mines in this.grid
+  // initializes all gridLength*gridWidth cells in this.board
+  void initCells() {
+    this.board = new Board(this.gridLength, this.gridWidth);
+    this.scene = null;
+    this.overview = null;
+  }
+
+  // randomly places mines in this.board
   void placeMines() {
-    ArrayList<Mine> mines = new ArrayList<Mine>();
-    while (mines.size() < this.numMines) {
-      int r = rand.nextInt(this.gridLength);
-      int c = rand.nextInt(this.gridWidth);
-      Mine m = new Mine(r, c);
-      if (mines.size() == 0) {
-        mines.add(m);
-      }
-      else {
-        boolean result = false;
-        for (Mine mine : mines) {
-          result = result || mine.sameMine(m);
-        }
-        if (!result) {
-          mines.add(m);
-        }
-      }
-    }
-    for (Mine mine : mines) {
-      grid.get(mine.rowNum).set(mine.colNum, mine);
-    }
+    this.board.placeMines(this.numMines, this.rand);
   }
 
-  // updates the list of neighbors for each cell
+  // updates the number of neighboring mines for each cell
   void updateNeighbors() {
-    for (int r = 0; r < grid.size(); r++) {
-      for (int c = 0; c < grid.get(r).size(); c++) {
-        int startRow = this.checkOutOfBounds(r - 1, this.grid.size());
-        int endRow = this.checkOutOfBounds(r + 1, this.grid.size());
-        int startCol = this.checkOutOfBounds(c - 1, this.grid.get(r).size());
-        int endCol = this.checkOutOfBounds(c + 1, this.grid.get(r).size());
-        for (int row = startRow; row <= endRow; row++) {
-          for (int col = startCol; col <= endCol; col++) {
-            if (row == r && col == c) {
-              continue;
-            }
-            grid.get(r).get(c).addNeighbor(grid.get(row).get(col));
-          }
-        }
-        grid.get(r).get(c).countNeighbor();
-      }
-    }
+    this.board.countNeighbors();
+  }
+
+  // starts the game on an empty board, leaving the mines to be placed by
+  // deal on the first left click
+  void defer() {
+    this.initCells();
+    this.deferred = true;
+    this.log.deferred = true;
+  }
+
+  // places the mines anywhere but on the given square and its neighbors,
+  // counting only around the mines placed
+  // the squares flagged before the first click may turn out to be mines,
+  // which setMine counts as right flags
+  void deal(int safe) {
+    DealEvent event = DealEvent.start();
+    long start = System.nanoTime();
+    this.board.placeMines(this.numMines, this.rand, safe);
+    this.board.countAroundMines();
+    this.deferred = false;
+    this.dealt(start, event);
   }
 
   // prevents the given number to be OutOfBounds in the 2D array
@@ -127,96 +301,568 @@ class GameWorld extends World {
     return num;
   }
 
-  // draws the game
+  // produces the IGamePiece that shows the square at the given row and column
+  IGamePiece pieceAt(int row, int col) {
+    return this.board.pieceAt(this.board.index(row, col));
+  }
+
+  // draws the part of the game in this.view
+  // the scene is kept between frames, and only the cells changed since the last
+  // frame are drawn again on top of it; once the stacked tiles outnumber the
+  // cells in view twice over, the scene is thrown away and drawn again from
+  // scratch
+  // while hints are shown, any change can shift the odds of every hidden cell,
+  // so the whole view is drawn again; zoomed out to the overview, the view is
+  // drawn again after any change, which costs one tile per block on screen
+  // asking the JVM how much was allocated costs more than a small frame, so
+  // it is only done for one frame in 16
   public WorldScene makeScene() {
-    WorldScene background = this.getEmptyScene();
-    WorldImage bg = new RectangleImage(20 * this.gridWidth, 20 * this.gridLength,
-        OutlineMode.SOLID, Color.CYAN);
-    for (int r = 0; r < grid.size(); r++) {
-      for (int c = 0; c < grid.get(r).size(); c++) {
-        bg = this.grid.get(r).get(c).drawAt(0, 0, bg);
-        background.placeImageXY(bg, 20 * r + 10, 20 * c + 10);
+    SceneEvent event = SceneEvent.start();
+    long start = System.nanoTime();
+    boolean sampled = (this.frames & 15) == 0;
+    this.frames++;
+    long bytes = sampled ? Metrics.allocatedBytes() : 0;
+    int drawn = this.dirtyCount;
+    if (this.hints && (this.scene == null || this.dirtyCount > 0)) {
+      this.odds.compute(this.board);
+      this.scene = null;
+    }
+    WorldScene before = this.scene;
+    int bottom = this.view.bottom();
+    int right = this.view.right();
+    int inView = (bottom - this.view.top) * (right - this.view.left);
+    if (this.view.zoom >= Viewport.OVERVIEW) {
+      drawn = this.scene == null ? this.drawOverview() : 0;
+    }
+    else if (this.scene == null || this.tilesPlaced + this.dirtyCount > 2 * inView) {
+      this.scene = this.getEmptyScene();
+      this.tilesPlaced = 0;
+      drawn = inView;
+      for (int row = this.view.top; row < bottom; row++) {
+        for (int col = this.view.left; col < right; col++) {
+          this.drawTile(row * this.board.width + col);
+        }
       }
     }
-    return background;
+    else {
+      for (int i = 0; i < this.dirtyCount; i++) {
+        this.drawTile(this.dirty[i]);
+      }
+    }
+    if (this.hud) {
+      this.drawHud(this.scene != before);
+    }
+    this.dirtyCount = 0;
+    Metrics.SCENE_NANOS.record(System.nanoTime() - start);
+    Metrics.SCENE_TILES.record(drawn);
+    if (sampled) {
+      bytes = Metrics.allocatedBytes() - bytes;
+      Metrics.SCENE_BYTES.record(bytes);
+    }
+    if (event != null) {
+      event.tiles = drawn;
+      event.bytes = sampled ? bytes : -1;
+      event.commit();
+    }
+    return this.scene;
   }
- 
-    
-  
+
+  // draws the cell at the given index onto this.scene, where this.view
+  // puts it
+  void drawTile(int idx) {
+    WorldImage tile = TileAtlas.tileAt(this.board, idx);
+    if (this.hints && tile == TileAtlas.HIDDEN) {
+      tile = TileAtlas.hintAt(this.odds.probabilityOf(idx));
+    }
+    int size = this.view.tile();
+    if (size != Viewport.TILE) {
+      tile = TileAtlas.small(tile);
+    }
+    this.scene.placeImageXY(tile, size * (this.board.colOf(idx) - this.view.left) + size / 2,
+        size * (this.board.rowOf(idx) - this.view.top) + size / 2);
+    this.tilesPlaced++;
+  }
+
+  // draws the blocks of this.overview that are in view onto a new scene,
+  // each shaded by the share of its squares that are open, and returns the
+  // number drawn
+  int drawOverview() {
+    if (this.overview == null || this.overview.levels < this.view.zoom) {
+      this.overview = new Overview(this.board, this.view.maxZoom());
+    }
+    this.overview.refresh();
+    this.scene = this.getEmptyScene();
+    this.tilesPlaced = 0;
+    int z = this.view.zoom;
+    int top = this.view.top >> z;
+    int left = this.view.left >> z;
+    int bottom = Math.min(this.overview.blocksDown(z), top + this.view.tilesDown());
+    int right = Math.min(this.overview.blocksAcross(z), left + this.view.tilesAcross());
+    for (int br = top; br < bottom; br++) {
+      for (int bc = left; bc < right; bc++) {
+        this.scene.placeImageXY(TileAtlas.shadeAt(this.overview.fraction(z, br, bc)),
+            Viewport.SMALL * (bc - left) + Viewport.SMALL / 2,
+            Viewport.SMALL * (br - top) + Viewport.SMALL / 2);
+      }
+    }
+    return (bottom - top) * (right - left);
+  }
+
+  // draws the mines left to flag and the safe squares left to open in the
+  // strip below the board, if either changed since it was last drawn on
+  // this.scene, or the scene is fresh
+  void drawHud(boolean fresh) {
+    int mines = this.minesLeft();
+    int cells = this.cellsLeft();
+    if (!fresh && mines == this.hudMines && cells == this.hudCells) {
+      return;
+    }
+    this.hudMines = mines;
+    this.hudCells = cells;
+    int x = this.view.width / 2;
+    int y = this.view.height + Viewport.TILE / 2;
+    this.scene.placeImageXY(
+        new RectangleImage(this.view.width, Viewport.TILE, OutlineMode.SOLID, Color.WHITE), x, y);
+    this.scene.placeImageXY(
+        new TextImage("mines left " + mines + "   cells left " + cells, Color.BLACK), x, y);
+    this.tilesPlaced += 2;
+  }
+
+  // records that the cell at the given index has to be drawn again, unless
+  // it is out of view or the whole view is going to be drawn anyway
+  void markDirty(int idx) {
+    if (this.overview != null) {
+      this.overview.touch(idx);
+    }
+    if (this.scene == null) {
+      return;
+    }
+    if (this.view.zoom >= Viewport.OVERVIEW) {
+      this.scene = null;
+      return;
+    }
+    if (!this.view.shows(this.board.rowOf(idx), this.board.colOf(idx))) {
+      return;
+    }
+    if (this.dirtyCount == this.dirty.length) {
+      this.dirty = Arrays.copyOf(this.dirty, this.dirty.length * 2);
+    }
+    this.dirty[this.dirtyCount] = idx;
+    this.dirtyCount++;
+  }
+
+  // shows or hides the chance of each hidden cell being a mine when "h" is
+  // pressed, saves the game when "s" is pressed, and loads it back with "l"
+  // "u" takes back the last move and "r" makes it again, and "m" prints the
+  // metrics of every game so far
+  // the arrow keys move the view by a quarter of the window, and "+" and
+  // "-" zoom in and out; "i" shows or hides the mines and squares left
+  public void onKeyEvent(String key) {
+    if (key.equals("h")) {
+      this.hints = !this.hints;
+      this.scene = null;
+    }
+    else if (key.equals("i")) {
+      this.toggleHud();
+    }
+    else if (key.equals("s")) {
+      this.save();
+    }
+    else if (key.equals("l")) {
+      this.load();
+    }
+    else if (key.equals("u")) {
+      this.play(-1, -1, "Undo");
+    }
+    else if (key.equals("r")) {
+      this.play(-1, -1, "Redo");
+    }
+    else if (key.equals("m")) {
+      System.out.println(Metrics.snapshot());
+    }
+    else if (key.equals("up") || key.equals("down")) {
+      int step = Math.max(1, this.view.tilesDown() / 4);
+      this.view.pan(key.equals("up") ? -step : step, 0);
+      this.scene = null;
+    }
+    else if (key.equals("left") || key.equals("right")) {
+      int step = Math.max(1, this.view.tilesAcross() / 4);
+      this.view.pan(0, key.equals("left") ? -step : step);
+      this.scene = null;
+    }
+    else if (key.equals("+") || key.equals("=")) {
+      this.zoomBy(-1);
+    }
+    else if (key.equals("-")) {
+      this.zoomBy(1);
+    }
+  }
+
+  // shows the game in a window of the given size in pixels
+  void resize(int width, int height) {
+    this.view.width = width;
+    this.view.height = height;
+    this.view.zoomTo(this.view.zoom, this.view.top, this.view.left);
+    this.scene = null;
+  }
+
+  // zooms out by the given number of steps, or in if it is negative,
+  // keeping the middle of the window where it is
+  void zoomBy(int steps) {
+    this.view.zoomTo(this.view.zoom + steps,
+        (this.view.top + this.view.bottom()) / 2, (this.view.left + this.view.right()) / 2);
+    this.scene = null;
+  }
+
+  // remembers where a drag starts; a drag with the right button flags
+  // every hidden square it passes over, starting with the one under it
+  public void onMousePressed(Posn pos, String buttonName) {
+    if (buttonName.equals("RightButton") && this.view.zoom < Viewport.OVERVIEW) {
+      this.flagging = true;
+      this.lastHit = this.hits.cellAt(pos.x, pos.y);
+    }
+    else {
+      this.dragFrom = pos;
+    }
+  }
+
+  // moves the view along with a drag of at least one tile, so that the
+  // squares follow the mouse, or ends a drag that flags
+  public void onMouseReleased(Posn pos, String buttonName) {
+    if (this.flagging) {
+      this.flagging = false;
+      this.lastHit = -1;
+      return;
+    }
+    if (this.dragFrom == null) {
+      return;
+    }
+    int dRows = (this.dragFrom.y - pos.y) / this.view.tile();
+    int dCols = (this.dragFrom.x - pos.x) / this.view.tile();
+    this.dragFrom = null;
+    if (dRows != 0 || dCols != 0) {
+      this.view.pan(dRows, dCols);
+      this.scene = null;
+    }
+  }
+
+  // flags the hidden squares that a drag with the right button moves onto,
+  // and the one it started from once it leaves it
+  // the mouse moves many times within a square, so only a move onto
+  // another square does anything, and a move does nothing unless flagging
+  public void onMouseMoved(Posn pos) {
+    if (!this.flagging) {
+      return;
+    }
+    int idx = this.hits.cellAt(pos.x, pos.y);
+    if (idx == this.lastHit) {
+      return;
+    }
+    this.flagAlong(this.lastHit);
+    this.flagAlong(idx);
+    this.lastHit = idx;
+  }
+
+  // flags the square at the given index if it is on the board, hidden and
+  // not flagged yet, so that a drag never takes a flag off
+  void flagAlong(int idx) {
+    if (idx < 0 || this.isGameOver || this.board.isRevealed(idx) || this.board.isFlagged(idx)) {
+      return;
+    }
+    int row = this.board.rowOf(idx);
+    int col = this.board.colOf(idx);
+    this.play(Viewport.TILE * col, Viewport.TILE * row, "RightButton");
+  }
+
+  // writes this game to this.savePath, with the mines it still has to deal
+  // if the first click hasn't been made
+  void save() {
+    try {
+      SaveFile.save(this.board, this.deferred ? this.numMines : 0, this.savePath);
+    }
+    catch (IOException e) {
+      System.out.println("Could not save the game: " + e.getMessage());
+    }
+  }
+
+  // replaces this game with the one saved at this.savePath
+  void load() {
+    try {
+      this.resume(SaveFile.load(this.savePath), SaveFile.toDeal(this.savePath));
+    }
+    catch (IOException e) {
+      System.out.println("Could not load the game: " + e.getMessage());
+    }
+  }
+
+  // replaces this game with the given board, with all its mines dealt
+  void resume(Board loaded) {
+    this.resume(loaded, 0);
+  }
+
+  // replaces this game with the given board, taking the flags placed from
+  // its counters; if toDeal is more than 0, the board has no mines yet and
+  // the first left click deals that many
+  // a loaded game can't be dealt again from a seed, so it is no longer logged
+  void resume(Board loaded, int toDeal) {
+    this.board = loaded;
+    this.gridLength = loaded.length;
+    this.gridWidth = loaded.width;
+    this.flagNum = loaded.flags;
+    this.numMines = toDeal > 0 ? toDeal : loaded.numMines;
+    this.scene = null;
+    this.dirtyCount = 0;
+    this.log = null;
+    this.deferred = toDeal > 0;
+    this.history = new MoveHistory();
+    this.view = new Viewport(loaded.length, loaded.width, this.view.width, this.view.height);
+    this.overview = null;
+    this.hits = new HitTester(this.view);
+  }
+
+  // plays the click on the square under it in this.view, ignoring clicks
+  // off the board
+  // zoomed out to the overview, a click zooms back in on the block clicked
+  public void onMouseClicked(Posn pos, String buttonName) {
+    int idx = this.hits.cellAt(pos.x, pos.y);
+    if (idx < 0) {
+      return;
+    }
+    if (this.view.zoom >= Viewport.OVERVIEW) {
+      this.view.zoomTo(0, this.board.rowOf(idx) + this.view.span() / 2,
+          this.board.colOf(idx) + this.view.span() / 2);
+      this.scene = null;
+      return;
+    }
+    this.play(this.hits.boardX(pos.x), this.hits.boardY(pos.y), buttonName);
+  }
+
+  // records the click in this.log, then plays it, timing it for Metrics
+  // the position is on the whole board at full size, whatever the view, so
+  // that the log can be played again
+  void play(Posn pos, String buttonName) {
+    this.play(pos.x, pos.y, buttonName);
+  }
+
+  // records the click at (x, y) of the board at full size in this.log,
+  // then plays it, timing it for Metrics
+  void play(int x, int y, String buttonName) {
+    ClickEvent event = ClickEvent.start();
+    long start = System.nanoTime();
+    if (this.log != null) {
+      this.log.add(x, y, buttonName);
+    }
+    this.click(x, y, buttonName);
+    Metrics.CLICK_NANOS.record(System.nanoTime() - start);
+    if (event != null) {
+      event.button = buttonName;
+      event.commit();
+    }
+  }
+
   // detects which mouse button is being pressed, and reacts according
   // if a Mine is pressed, game over
   // if not, then the Cell will be represented as clicked
-  public void onMouseClicked(Posn pos, String buttonName) {
-    int rowIndex = (int) Math.ceil(pos.x / 20);
-    int colIndex = (int) Math.ceil(pos.y / 20);
-    IGamePiece piece = this.grid.get(rowIndex).get(colIndex);
+  // the middle button, or the left one on an opened number, chords
+  // undo and redo come through here as the buttons "Undo" and "Redo", so
+  // that they are logged and replayed in order with the clicks
+  void click(Posn pos, String buttonName) {
+    this.click(pos.x, pos.y, buttonName);
+  }
+
+  // plays the click at (x, y) of the board at full size, doing nothing if
+  // it is off the board
+  void click(int x, int y, String buttonName) {
+    if (buttonName.equals("Undo")) {
+      this.undo();
+      return;
+    }
+    else if (buttonName.equals("Redo")) {
+      this.redo();
+      return;
+    }
+    int idx = this.hits.cellOnBoard(x, y);
+    if (idx < 0) {
+      return;
+    }
+    this.clickCell(idx, buttonName);
+  }
+
+  // plays the click with the given button on the square at the given index
+  void clickCell(int idx, String buttonName) {
+    int rowIndex = this.board.rowOf(idx);
+    int colIndex = this.board.colOf(idx);
+    if (this.deferred && buttonName.equals("LeftButton") && !this.board.isFlagged(idx)) {
+      this.deal(idx);
+    }
     if (buttonName.equals("LeftButton")) {
-      if (piece.isFlag()) {
+      if (this.board.isFlagged(idx)) {
         System.out.println("Are you sure you want to click that?");
       }
-      else if (piece.isMine()) {
+      else if (this.board.isRevealed(idx)) {
+        this.chord(idx);
+      }
+      else if (this.board.isMine(idx)) {
+        this.isGameOver = true;
         this.endOfWorld("lost");
       }
-      else if (piece.isCell()) {
-        this.floodFill(rowIndex, colIndex);
+      else {
+        this.remember(this.floodFill(rowIndex, colIndex));
       }
     }
+    else if (buttonName.equals("MiddleButton")) {
+      this.chord(idx);
+    }
     else if (buttonName.equals("RightButton")) {
-      if (piece.isFlag()) {
-        Flag f = (Flag) piece;
-        if (f.isMine) {
-          this.grid.get(rowIndex).set(colIndex, new Mine(rowIndex, colIndex));
-          this.numMines++;
-          //flagNum--;
-        } else {
-          this.grid.get(rowIndex).set(colIndex, new Cell(f.neighbors, f.mineNum, false));
-          //flagNum--;
-        }
-      } else if (piece.isMine()) {
-        this.grid.get(rowIndex).set(colIndex, new Flag(true));
-        this.numMines--;
-        //flagNum++;
-      }
-      else if (piece.isCell()) {
-        Cell c = (Cell) piece;
-        if (!c.isClicked) {
-          this.grid.get(rowIndex).set(colIndex, new Flag(c.neighbors, c.mineNum));
-          //flagNum++;
-        }
-      }
-    }
-    if (this.numMines == 0) {
-      this.endOfWorld("win");
+      if (this.board.isFlagged(idx)) {
+        this.board.toggleFlag(idx);
+        this.markDirty(idx);
+        this.flagNum--;
+        this.history.begin(MoveHistory.FLAG);
+        this.history.push(idx);
+      } else if (!this.board.isRevealed(idx)) {
+        this.board.toggleFlag(idx);
+        this.markDirty(idx);
+        this.flagNum++;
+        this.history.begin(MoveHistory.FLAG);
+        this.history.push(idx);
+      }
     }
+    this.checkWin();
   }
-    
-  // achieves the flood-fill effect
-  void floodFill(int rowIdx, int colIdx) {
-    Cell c = (Cell) this.grid.get(rowIdx).get(colIdx);
-    if (c.isClicked) {
+
+  // opens the squares around the opened number at the given index if its
+  // flags are all placed, losing the game if one of them was wrong
+  void chord(int idx) {
+    FloodFillEvent event = FloodFillEvent.start();
+    long start = System.nanoTime();
+    int opened = this.board.chord(idx);
+    if (opened < 0) {
+      this.isGameOver = true;
+      this.endOfWorld("lost");
       return;
-    } 
-    if (c.mineNum == 0) {
-      this.grid.get(rowIdx).set(colIdx, new Cell(c.neighbors, c.mineNum, true));
-      int startRow = this.checkOutOfBounds(rowIdx - 1, this.grid.size());
-      int endRow = this.checkOutOfBounds(rowIdx + 1, this.grid.size());
-      int startCol = this.checkOutOfBounds(colIdx - 1, this.grid.get(rowIdx).size());
-      int endCol = this.checkOutOfBounds(colIdx + 1, this.grid.get(rowIdx).size());
-      for (int row = startRow; row <= endRow; row++) {
-        for (int col = startCol; col <= endCol; col++) {
-          if (row == rowIdx && col == colIdx) {
-            continue;
-          }
-          else {
-            if (this.grid.get(row).get(col).isCell()) {
-              this.floodFill(row, col);
-            }
-          }
-        } 
+    }
+    for (int i = 0; i < opened; i++) {
+      this.markDirty(this.board.opened[i]);
+    }
+    this.filled(start, event, opened);
+    this.remember(opened);
+  }
+
+  // adds the squares just queued in this.board.opened to this.history as
+  // one move
+  void remember(int opened) {
+    if (opened > 0) {
+      this.history.begin(MoveHistory.OPEN);
+      for (int i = 0; i < opened; i++) {
+        this.history.push(this.board.opened[i]);
       }
     }
-    else {
-      this.grid.get(rowIdx).set(colIdx, new Cell(c.neighbors, c.mineNum, true));
+  }
+
+  // takes back the last move that changed the board, if there is one
+  void undo() {
+    int entry = this.history.undo();
+    if (entry >= 0) {
+      this.flip(entry);
+    }
+  }
+
+  // makes the last move taken back again, if no other move came since
+  void redo() {
+    int entry = this.history.redo();
+    if (entry >= 0) {
+      this.flip(entry);
+      this.checkWin();
+    }
+  }
+
+  // flips every square that the given entry of this.history changed
+  // an entry only holds squares that the move flipped one way, so flipping
+  // them again both takes the move back and makes it again
+  void flip(int entry) {
+    boolean open = this.history.kinds[entry] == MoveHistory.OPEN;
+    int end = this.history.end(entry);
+    for (int i = this.history.start[entry]; i < end; i++) {
+      int idx = this.history.cells[i];
+      if (open && this.board.isRevealed(idx)) {
+        this.board.hide(idx);
+      }
+      else if (open) {
+        this.board.setRevealed(idx);
+      }
+      else {
+        this.board.toggleFlag(idx);
+        this.flagNum += this.board.isFlagged(idx) ? 1 : -1;
+      }
+      this.markDirty(idx);
+    }
+  }
+
+  // ends the game once it is won
+  void checkWin() {
+    if (!this.isGameOver && this.isWon()) {
+      this.isGameOver = true;
+      this.endOfWorld("win");
+    }
+  }
+
+  // returns whether every safe square has been opened, or every mine and
+  // nothing else has been flagged, from the counters of this.board alone
+  boolean isWon() {
+    if (this.deferred) {
+      return false;
+    }
+    return this.board.safeLeft() == 0
+        || (this.board.rightFlags == this.board.numMines
+            && this.board.flags == this.board.numMines);
+  }
+
+  // returns the number of mines minus the flags placed, as shown to the
+  // player, counting the mines still to be dealt
+  int minesLeft() {
+    return (this.deferred ? this.numMines : this.board.numMines) - this.board.flags;
+  }
+
+  // returns the number of safe squares still to be opened, counting the
+  // mines still to be dealt
+  int cellsLeft() {
+    if (this.deferred) {
+      return this.board.size() - this.numMines - this.board.safeOpened;
+    }
+    return this.board.safeLeft();
+  }
+
+  // shows or hides the counters in a strip below the board, which the
+  // board gives up one row of tiles for
+  void toggleHud() {
+    this.hud = !this.hud;
+    this.resize(this.view.width,
+        this.view.height + (this.hud ? -Viewport.TILE : Viewport.TILE));
+  }
+    
+  // achieves the flood-fill effect, returning the number of cells opened
+  int floodFill(int rowIdx, int colIdx) {
+    FloodFillEvent event = FloodFillEvent.start();
+    long start = System.nanoTime();
+    int opened = this.board.floodFill(this.board.index(rowIdx, colIdx));
+    for (int i = 0; i < opened; i++) {
+      this.markDirty(this.board.opened[i]);
+    }
+    this.filled(start, event, opened);
+    return opened;
+  }
+
+  // records in Metrics and JFR the given number of squares opened by a
+  // cascade since the given nanoTime
+  void filled(long start, FloodFillEvent event, int opened) {
+    Metrics.FLOOD_NANOS.record(System.nanoTime() - start);
+    Metrics.FLOOD_CELLS.record(opened);
+    Metrics.FLOOD_DEPTH.record(this.board.depth);
+    if (event != null) {
+      event.cells = opened;
+      event.depth = this.board.depth;
+      event.commit();
     }
   }
   
@@ -235,280 +881,6558 @@ class GameWorld extends World {
   }
 }
 
-// represents a component of the game
-interface IGamePiece {
-  // adds an IGamePiece into an ArrayList of IGamePieces
-  void addNeighbor(IGamePiece piece);
-  
-  // determines whether this IGamePiece is a Cell or not
-  boolean isCell();
-
-  // determines whether this IGamePiece is a Mine or not
-  boolean isMine();
-  
-  // determines whether this IGamePiece is a Flag or not
-  boolean isFlag();
-
-  // updates the number of mines of this IGamePiece
-  void countNeighbor();
-
-  // draws this IGamePiece onto the background
-  WorldImage drawAt(int row, int col, WorldImage background);
-}
-
-// represents a safe cell
-class Cell implements IGamePiece {
-  ArrayList<IGamePiece> neighbors;
-  int mineNum;
-  Color color;
-  boolean isClicked;
+// represents the part of a board shown in a window of width by height
+// pixels: the square at (top, left) is drawn in the top left corner, and
+// each tile drawn covers span by span squares
+// at zoom 0 a tile is one square, 20 pixels wide; at zoom 1 it is one
+// square at half size; from zoom OVERVIEW on, a tile is a 10 pixel block of
+// 2^zoom by 2^zoom squares, drawn from an Overview
+class Viewport {
+  static final int TILE = 20;
+  static final int SMALL = 10;
+  static final int OVERVIEW = 2;
+  int rows;
+  int cols;
+  int width;
+  int height;
+  int zoom;
+  int top;
+  int left;
 
   // default constructor
-  Cell() {
-    this.neighbors = new ArrayList<IGamePiece>();
-    this.mineNum = 0;
-    this.color = Color.CYAN;
-    this.isClicked = false;
+  Viewport(int rows, int cols, int width, int height) {
+    this.rows = rows;
+    this.cols = cols;
+    this.width = width;
+    this.height = height;
+    this.zoom = 0;
+    this.top = 0;
+    this.left = 0;
   }
 
-  // convenience constructor
-  Cell(ArrayList<IGamePiece> neighbors, int mineNum, boolean isClicked) {
-    this.neighbors = neighbors;
-    this.mineNum = mineNum;
-    this.color = Color.CYAN;
-    this.isClicked = isClicked;
-  }
-  
   /* TEMPLATE
    * Fields:
-   * ... this.neighbors ...                                         --ArrayList<IGamePiece>
-   * ... this.mineNum ...                                           --int
-   * ... this.color ...                                             --Color
-   * ... this.isClicked ...                                         --boolean
+   * ... Viewport.TILE ...                                       --int
+   * ... Viewport.SMALL ...                                      --int
+   * ... Viewport.OVERVIEW ...                                   --int
+   * ... this.rows ...                                           --int
+   * ... this.cols ...                                           --int
+   * ... this.width ...                                          --int
+   * ... this.height ...                                         --int
+   * ... this.zoom ...                                           --int
+   * ... this.top ...                                            --int
+   * ... this.left ...                                           --int
    * Methods:
-   * ... this.addNeighbor(IGamePiece piece) ...                     --void
-   * ... this.isCell() ...                                          --boolean
-   * ... this.isMine() ...                                          --boolean
-   * ... this.isFlag() ...                                          --boolean
-   * ... this.countNeighbor() ...                                   --void
-   * ... this.drawAt(int row, int col, WorldImage background) ...   --WorldImage       
-   * ... this.diffColorNums(Integer n) ...                          --WorldImage
+   * ... this.tile() ...                                         --int
+   * ... this.span() ...                                         --int
+   * ... this.tilesDown() ...                                    --int
+   * ... this.tilesAcross() ...                                  --int
+   * ... this.bottom() ...                                       --int
+   * ... this.right() ...                                        --int
+   * ... this.shows(int row, int col) ...                        --boolean
+   * ... this.maxZoom() ...                                      --int
+   * ... this.pan(int dRows, int dCols) ...                      --void
+   * ... this.zoomTo(int zoom, int row, int col) ...             --void
+   * ... this.clamp() ...                                        --void
    */
 
-  // adds this IGamePiece to this Cell's list of neighbors
-  public void addNeighbor(IGamePiece piece) {
-    this.neighbors.add(piece);
+  // returns the size in pixels of a tile at this zoom
+  int tile() {
+    return this.zoom == 0 ? Viewport.TILE : Viewport.SMALL;
   }
-  
-  // returns true because this is a Cell
-  public boolean isCell() {
-    return true;
+
+  // returns the number of squares along each side of a tile at this zoom
+  int span() {
+    return this.zoom < Viewport.OVERVIEW ? 1 : 1 << this.zoom;
   }
 
-  // returns false because this Cell is not a Mine
-  public boolean isMine() {
-    return false;
+  // returns the number of tiles that fit down the window, counting one cut
+  // off at the bottom
+  int tilesDown() {
+    return (this.height + this.tile() - 1) / this.tile();
   }
-  
-  // returns false because this Cell is not a Flag
-  public boolean isFlag() {
-    return false;
+
+  // returns the number of tiles that fit across the window, counting one
+  // cut off at the right
+  int tilesAcross() {
+    return (this.width + this.tile() - 1) / this.tile();
+  }
+
+  // returns the row just below the last one in view
+  int bottom() {
+    return Math.min(this.rows, this.top + this.tilesDown() * this.span());
+  }
+
+  // returns the column just right of the last one in view
+  int right() {
+    return Math.min(this.cols, this.left + this.tilesAcross() * this.span());
+  }
+
+  // returns whether the square at the given row and column is in view
+  boolean shows(int row, int col) {
+    return row >= this.top && row < this.bottom() && col >= this.left && col < this.right();
   }
 
-  // adds 1 to this cell's number of Mines if a respective element
-  // in this Cell's list of neighbors is a Mine
-  public void countNeighbor() {
-    for (IGamePiece g : neighbors) {
-      if (g.isMine()) {
-        this.mineNum = this.mineNum + 1;
+  // returns the zoom at which the whole board first fits in the window
+  int maxZoom() {
+    int zoom = 0;
+    while (zoom < 30) {
+      int tile = zoom == 0 ? Viewport.TILE : Viewport.SMALL;
+      int span = zoom < Viewport.OVERVIEW ? 1 : 1 << zoom;
+      if ((long) this.width / tile * span >= this.cols
+          && (long) this.height / tile * span >= this.rows) {
+        return zoom;
       }
+      zoom++;
     }
+    return zoom;
   }
 
-  // draws this Cell onto the given background
-  public WorldImage drawAt(int row, int col, WorldImage background) {
-    if (!isClicked) {
+  // moves the view by the given number of tiles
+  void pan(int dRows, int dCols) {
+    this.top += dRows * this.span();
+    this.left += dCols * this.span();
+    this.clamp();
+  }
+
+  // changes to the given zoom, as far as it goes, keeping the square at the
+  // given row and column in the middle of the window
+  void zoomTo(int zoom, int row, int col) {
+    this.zoom = Math.max(0, Math.min(zoom, this.maxZoom()));
+    this.top = row - this.tilesDown() * this.span() / 2;
+    this.left = col - this.tilesAcross() * this.span() / 2;
+    this.clamp();
+  }
+
+  // keeps the view on the board, and on whole blocks in the overview
+  void clamp() {
+    int span = this.span();
+    this.top = Math.max(0, Math.min(this.top, this.rows - this.height / this.tile() * span));
+    this.left = Math.max(0, Math.min(this.left, this.cols - this.width / this.tile() * span));
+    this.top -= this.top % span;
+    this.left -= this.left % span;
+  }
+}
+
+// maps points of the window, and points of the board at full size, to the
+// index of the square under them, or -1 off the board
+// the offsets and scale of this.view are cached, and worked out again only
+// once it pans or zooms, so a hit costs two divisions and a few compares,
+// and never allocates, however fast the mouse events come
+class HitTester {
+  Viewport view;
+  int zoom;
+  int top;
+  int left;
+  int tile;
+  int span;
+  int originX;
+  int originY;
+
+  // default constructor
+  HitTester(Viewport view) {
+    this.view = view;
+    this.zoom = -1;
+    this.sync();
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.view ...                                           --Viewport
+   * ... this.zoom ...                                           --int
+   * ... this.top ...                                            --int
+   * ... this.left ...                                           --int
+   * ... this.tile ...                                           --int
+   * ... this.span ...                                           --int
+   * ... this.originX ...                                        --int
+   * ... this.originY ...                                        --int
+   * Methods:
+   * ... this.sync() ...                                         --void
+   * ... this.cellAt(int x, int y) ...                           --int
+   * ... this.boardX(int x) ...                                  --int
+   * ... this.boardY(int y) ...                                  --int
+   * ... this.cellOnBoard(int x, int y) ...                      --int
+   */
+
+  // works out the transform again if this.view moved since it was cached
+  void sync() {
+    if (this.zoom == this.view.zoom && this.top == this.view.top
+        && this.left == this.view.left) {
+      return;
+    }
+    this.zoom = this.view.zoom;
+    this.top = this.view.top;
+    this.left = this.view.left;
+    this.tile = this.view.tile();
+    this.span = this.view.span();
+    this.originX = Viewport.TILE * this.left;
+    this.originY = Viewport.TILE * this.top;
+  }
+
+  // returns the index of the square under the given point of the window,
+  // which is the top left square of the block under it in the overview
+  int cellAt(int x, int y) {
+    this.sync();
+    if (x < 0 || y < 0 || x >= this.view.width || y >= this.view.height) {
+      return -1;
+    }
+    int row = this.top + y / this.tile * this.span;
+    int col = this.left + x / this.tile * this.span;
+    if (row >= this.view.rows || col >= this.view.cols) {
+      return -1;
+    }
+    return row * this.view.cols + col;
+  }
+
+  // returns the x coordinate on the board at full size of the given x
+  // coordinate of the window, outside the overview
+  int boardX(int x) {
+    this.sync();
+    return this.originX + x * Viewport.TILE / this.tile;
+  }
+
+  // returns the y coordinate on the board at full size of the given y
+  // coordinate of the window, outside the overview
+  int boardY(int y) {
+    this.sync();
+    return this.originY + y * Viewport.TILE / this.tile;
+  }
+
+  // returns the index of the square under the given point of the board at
+  // full size, whatever the view
+  int cellOnBoard(int x, int y) {
+    if (x < 0 || y < 0) {
+      return -1;
+    }
+    int row = y / Viewport.TILE;
+    int col = x / Viewport.TILE;
+    if (row >= this.view.rows || col >= this.view.cols) {
+      return -1;
+    }
+    return row * this.view.cols + col;
+  }
+}
+
+// represents a board shrunk for drawing it zoomed out: level z counts the
+// opened squares in each block of 2^z by 2^z squares, from level
+// Viewport.OVERVIEW up to this.levels
+// a block of the lowest level is counted from the board, and each higher
+// block is the sum of the four below it, so bringing a changed square up to
+// date costs O(levels), and drawing a level costs one lookup per block on
+// screen, whatever the size of the board
+class Overview {
+  Board board;
+  int levels;
+  int[][] opened;
+  int[] pending;
+  int pendingCount;
+  boolean stale;
+
+  // default constructor
+  Overview(Board board, int levels) {
+    this.board = board;
+    this.levels = Math.max(levels, Viewport.OVERVIEW);
+    this.opened = new int[this.levels + 1][];
+    for (int z = Viewport.OVERVIEW; z <= this.levels; z++) {
+      this.opened[z] = new int[this.blocksDown(z) * this.blocksAcross(z)];
+    }
+    this.pending = new int[64];
+    this.pendingCount = 0;
+    this.stale = true;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.board ...                                          --Board
+   * ... this.levels ...                                         --int
+   * ... this.opened ...                                         --int[][]
+   * ... this.pending ...                                        --int[]
+   * ... this.pendingCount ...                                   --int
+   * ... this.stale ...                                          --boolean
+   * Methods:
+   * ... this.blocksDown(int z) ...                              --int
+   * ... this.blocksAcross(int z) ...                            --int
+   * ... this.touch(int idx) ...                                 --void
+   * ... this.refresh() ...                                      --void
+   * ... this.countBlock(int br, int bc) ...                     --int
+   * ... this.sumBlock(int z, int br, int bc) ...                --int
+   * ... this.fraction(int z, int br, int bc) ...                --double
+   */
+
+  // returns the number of rows of blocks at level z
+  int blocksDown(int z) {
+    return (this.board.length + (1 << z) - 1) >> z;
+  }
+
+  // returns the number of columns of blocks at level z
+  int blocksAcross(int z) {
+    return (this.board.width + (1 << z) - 1) >> z;
+  }
+
+  // records that the square at the given index changed
+  // once more squares changed than there are blocks at the lowest level,
+  // counting everything again is cheaper, so the changes are dropped
+  void touch(int idx) {
+    if (this.stale) {
+      return;
+    }
+    if (this.pendingCount == this.opened[Viewport.OVERVIEW].length) {
+      this.stale = true;
+      this.pendingCount = 0;
+      return;
+    }
+    if (this.pendingCount == this.pending.length) {
+      this.pending = Arrays.copyOf(this.pending, this.pendingCount * 2);
+    }
+    this.pending[this.pendingCount] = idx;
+    this.pendingCount++;
+  }
+
+  // brings every level up to date with the squares changed since the last
+  // refresh, or with the whole board when it is stale
+  void refresh() {
+    int low = Viewport.OVERVIEW;
+    if (this.stale) {
+      for (int br = 0; br < this.blocksDown(low); br++) {
+        for (int bc = 0; bc < this.blocksAcross(low); bc++) {
+          this.opened[low][br * this.blocksAcross(low) + bc] = this.countBlock(br, bc);
+        }
+      }
+      for (int z = low + 1; z <= this.levels; z++) {
+        for (int br = 0; br < this.blocksDown(z); br++) {
+          for (int bc = 0; bc < this.blocksAcross(z); bc++) {
+            this.opened[z][br * this.blocksAcross(z) + bc] = this.sumBlock(z, br, bc);
+          }
+        }
+      }
+      this.stale = false;
+      this.pendingCount = 0;
+      return;
+    }
+    for (int i = 0; i < this.pendingCount; i++) {
+      int row = this.board.rowOf(this.pending[i]);
+      int col = this.board.colOf(this.pending[i]);
+      this.opened[low][(row >> low) * this.blocksAcross(low) + (col >> low)] =
+          this.countBlock(row >> low, col >> low);
+      for (int z = low + 1; z <= this.levels; z++) {
+        this.opened[z][(row >> z) * this.blocksAcross(z) + (col >> z)] =
+            this.sumBlock(z, row >> z, col >> z);
+      }
+    }
+    this.pendingCount = 0;
+  }
+
+  // counts the opened squares of the given block of the lowest level
+  int countBlock(int br, int bc) {
+    int side = 1 << Viewport.OVERVIEW;
+    int endRow = Math.min(this.board.length, (br + 1) * side);
+    int endCol = Math.min(this.board.width, (bc + 1) * side);
+    int count = 0;
+    for (int row = br * side; row < endRow; row++) {
+      for (int col = bc * side; col < endCol; col++) {
+        if (this.board.isRevealed(row * this.board.width + col)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  // adds up the four blocks of level z - 1 that make the given block of level z
+  int sumBlock(int z, int br, int bc) {
+    int[] below = this.opened[z - 1];
+    int across = this.blocksAcross(z - 1);
+    int endRow = Math.min(this.blocksDown(z - 1), 2 * br + 2);
+    int endCol = Math.min(across, 2 * bc + 2);
+    int sum = 0;
+    for (int row = 2 * br; row < endRow; row++) {
+      for (int col = 2 * bc; col < endCol; col++) {
+        sum += below[row * across + col];
+      }
+    }
+    return sum;
+  }
+
+  // returns the share of the squares of the given block of level z that are
+  // opened, counting only the squares on the board
+  double fraction(int z, int br, int bc) {
+    int side = 1 << z;
+    int high = Math.min(this.board.length, (br + 1) * side) - br * side;
+    int wide = Math.min(this.board.width, (bc + 1) * side) - bc * side;
+    if (high <= 0 || wide <= 0) {
+      return 0;
+    }
+    return (double) this.opened[z][br * this.blocksAcross(z) + bc] / (high * wide);
+  }
+}
+
+// represents how the squares of a board touch: which squares are around a
+// given one, worked out from its row and column whenever they are asked for,
+// so no square keeps a list of its neighbors
+// a square has at most ITopology.MAX neighbors in any topology, so an array
+// of that size holds the neighbors of any square
+interface ITopology {
+  int MAX = 8;
+
+  // fills out with the indices of the distinct squares around the given one,
+  // not counting itself, on a board of the given size, and returns how many
+  // there are
+  int neighbors(int length, int width, int idx, int[] out);
+
+  // determines whether squares touch as on a plain grid, the 8 around each
+  // cut off at the edges, which Board counts and fills with row arithmetic
+  boolean isSquare();
+}
+
+// represents a plain grid, where the squares around one are the 8 next to it
+// and the edges of the board cut them off
+class SquareTopology implements ITopology {
+  /* TEMPLATE
+   * Methods:
+   * ... this.neighbors(int length, int width, int idx, int[] out) ... --int
+   * ... this.isSquare() ...                                     --boolean
+   */
+
+  // fills out with the squares around the given one, in increasing order,
+  // from 3 in a corner to 8
+  public int neighbors(int length, int width, int idx, int[] out) {
+    int r = idx / width;
+    int c = idx - r * width;
+    int endRow = Math.min(r + 1, length - 1);
+    int endCol = Math.min(c + 1, width - 1);
+    int n = 0;
+    for (int row = Math.max(r - 1, 0); row <= endRow; row++) {
+      for (int col = Math.max(c - 1, 0); col <= endCol; col++) {
+        int next = row * width + col;
+        if (next != idx) {
+          out[n] = next;
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  // returns true because this is the plain grid
+  public boolean isSquare() {
+    return true;
+  }
+}
+
+// represents a grid whose edges wrap around to the opposite side, so every
+// square has the 8 around it; on a board less than 3 squares long or wide,
+// the same square is reached from two sides and only counted once
+class TorusTopology implements ITopology {
+  static final int[] ROWS = new int[] {-1, -1, -1, 0, 0, 1, 1, 1};
+  static final int[] COLS = new int[] {-1, 0, 1, -1, 1, -1, 0, 1};
+
+  /* TEMPLATE
+   * Fields:
+   * ... TorusTopology.ROWS ...                                  --int[]
+   * ... TorusTopology.COLS ...                                  --int[]
+   * Methods:
+   * ... this.neighbors(int length, int width, int idx, int[] out) ... --int
+   * ... this.isSquare() ...                                     --boolean
+   */
+
+  // fills out with the squares around the given one, wrapping at the edges
+  public int neighbors(int length, int width, int idx, int[] out) {
+    int r = idx / width;
+    int c = idx - r * width;
+    int n = 0;
+    for (int k = 0; k < TorusTopology.ROWS.length; k++) {
+      int row = (r + TorusTopology.ROWS[k] + length) % length;
+      int col = (c + TorusTopology.COLS[k] + width) % width;
+      int next = row * width + col;
+      boolean seen = next == idx;
+      for (int i = 0; i < n && !seen; i++) {
+        seen = out[i] == next;
+      }
+      if (!seen) {
+        out[n] = next;
+        n++;
+      }
+    }
+    return n;
+  }
+
+  // returns false because the edges wrap
+  public boolean isSquare() {
+    return false;
+  }
+}
+
+// represents a grid of hexagons laid out in rows, with every odd row pushed
+// half a square to the right: a square touches the two beside it and two in
+// each of the rows above and below, which lean left on even rows and right
+// on odd ones
+class HexTopology implements ITopology {
+  static final int[] ROWS = new int[] {-1, -1, 0, 0, 1, 1};
+  static final int[] EVEN = new int[] {-1, 0, -1, 1, -1, 0};
+  static final int[] ODD = new int[] {0, 1, -1, 1, 0, 1};
+
+  /* TEMPLATE
+   * Fields:
+   * ... HexTopology.ROWS ...                                    --int[]
+   * ... HexTopology.EVEN ...                                    --int[]
+   * ... HexTopology.ODD ...                                     --int[]
+   * Methods:
+   * ... this.neighbors(int length, int width, int idx, int[] out) ... --int
+   * ... this.isSquare() ...                                     --boolean
+   */
+
+  // fills out with the squares around the given one, in increasing order,
+  // from 2 in a corner to 6
+  public int neighbors(int length, int width, int idx, int[] out) {
+    int r = idx / width;
+    int c = idx - r * width;
+    int[] cols = (r & 1) == 0 ? HexTopology.EVEN : HexTopology.ODD;
+    int n = 0;
+    for (int k = 0; k < HexTopology.ROWS.length; k++) {
+      int row = r + HexTopology.ROWS[k];
+      int col = c + cols[k];
+      if (row >= 0 && row < length && col >= 0 && col < width) {
+        out[n] = row * width + col;
+        n++;
+      }
+    }
+    return n;
+  }
+
+  // returns false because hexagons touch 6 others
+  public boolean isSquare() {
+    return false;
+  }
+}
+
+// represents the state of every square of the game, packed into flat arrays
+// the square at (row, col) lives at index row * width + col, and each of the
+// mine, revealed and flagged states takes a single bit of a long[] bitset
+// the opened safe squares, the flags and the flags on mines are counted as
+// the bits change, so the state of the game is known without a scan
+// which squares are around which is up to this.topology; the counts and the
+// flood fill of a plain grid are worked out with row arithmetic instead
+class Board {
+  int length;
+  int width;
+  ITopology topology;
+  long[] mines;
+  long[] revealed;
+  long[] flagged;
+  byte[] counts;
+  int numMines;
+  long seed;
+  int[] opened;
+  int openedCount;
+  int[] around;
+  int depth;
+  int safeOpened;
+  int flags;
+  int rightFlags;
+
+  // default constructor
+  Board(int length, int width) {
+    this(length, width, new SquareTopology());
+  }
+
+  // convenience constructor
+  Board(int length, int width, ITopology topology) {
+    this.length = length;
+    this.width = width;
+    this.topology = topology;
+    int words = Board.wordsFor(length * width);
+    this.mines = new long[words];
+    this.revealed = new long[words];
+    this.flagged = new long[words];
+    this.counts = new byte[length * width];
+    this.numMines = 0;
+    this.seed = 0;
+    this.opened = new int[64];
+    this.openedCount = 0;
+    this.around = new int[ITopology.MAX];
+    this.depth = 0;
+    this.safeOpened = 0;
+    this.flags = 0;
+    this.rightFlags = 0;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.length ...                                         --int
+   * ... this.width ...                                          --int
+   * ... this.topology ...                                       --ITopology
+   * ... this.mines ...                                          --long[]
+   * ... this.revealed ...                                       --long[]
+   * ... this.flagged ...                                        --long[]
+   * ... this.counts ...                                         --byte[]
+   * ... this.numMines ...                                       --int
+   * ... this.seed ...                                           --long
+   * ... this.opened ...                                         --int[]
+   * ... this.openedCount ...                                    --int
+   * ... this.around ...                                         --int[]
+   * ... this.depth ...                                          --int
+   * ... this.safeOpened ...                                     --int
+   * ... this.flags ...                                          --int
+   * ... this.rightFlags ...                                     --int
+   * Methods:
+   * ... this.size() ...                                         --int
+   * ... this.index(int row, int col) ...                        --int
+   * ... this.rowOf(int idx) ...                                 --int
+   * ... this.colOf(int idx) ...                                 --int
+   * ... this.isMine(int idx) ...                                --boolean
+   * ... this.setMine(int idx) ...                               --void
+   * ... this.isRevealed(int idx) ...                            --boolean
+   * ... this.setRevealed(int idx) ...                           --void
+   * ... this.hide(int idx) ...                                  --void
+   * ... this.isFlagged(int idx) ...                             --boolean
+   * ... this.toggleFlag(int idx) ...                            --void
+   * ... this.safeLeft() ...                                     --int
+   * ... this.recount() ...                                      --void
+   * ... this.mineNum(int idx) ...                               --int
+   * ... this.placeMines(int numMines, Random rand) ...          --void
+   * ... this.placeMines(int numMines, Random rand, int safe) ... --void
+   * ... this.moveMine(int from, int to) ...                     --void
+   * ... this.addAround(int idx, int delta) ...                  --void
+   * ... this.countNeighbors() ...                               --void
+   * ... this.countRows(int from, int to) ...                    --void
+   * ... this.rowSums(int row, byte[] bits, byte[] sums) ...     --void
+   * ... this.countAroundMines() ...                             --void
+   * ... this.floodFill(int idx) ...                             --int
+   * ... this.spread() ...                                       --int
+   * ... this.neighbors(int idx, int[] out) ...                  --int
+   * ... this.chord(int idx) ...                                 --int
+   * ... this.canOpen(int idx) ...                               --boolean
+   * ... this.open(int idx) ...                                  --void
+   * ... this.pieceAt(int idx) ...                               --IGamePiece
+   */
+
+  // returns the number of long words needed to hold the given number of bits
+  static int wordsFor(int bits) {
+    return (bits + 63) >>> 6;
+  }
+
+  // returns whether the given bit is set in the bitset
+  static boolean get(long[] bits, int idx) {
+    return (bits[idx >>> 6] & (1L << idx)) != 0;
+  }
+
+  // sets the given bit in the bitset
+  static void set(long[] bits, int idx) {
+    bits[idx >>> 6] |= 1L << idx;
+  }
+
+  // flips the given bit in the bitset
+  static void flip(long[] bits, int idx) {
+    bits[idx >>> 6] ^= 1L << idx;
+  }
+
+  // returns the number of squares on this board
+  int size() {
+    return this.length * this.width;
+  }
+
+  // returns the index of the square at the given row and column
+  int index(int row, int col) {
+    return row * this.width + col;
+  }
+
+  // returns the row of the square at the given index
+  int rowOf(int idx) {
+    return idx / this.width;
+  }
+
+  // returns the column of the square at the given index
+  int colOf(int idx) {
+    return idx % this.width;
+  }
+
+  // returns whether the square at the given index holds a mine
+  boolean isMine(int idx) {
+    return Board.get(this.mines, idx);
+  }
+
+  // places a mine on the square at the given index
+  void setMine(int idx) {
+    if (!this.isMine(idx)) {
+      Board.set(this.mines, idx);
+      this.numMines++;
+      if (this.isFlagged(idx)) {
+        this.rightFlags++;
+      }
+      if (this.isRevealed(idx)) {
+        this.safeOpened--;
+      }
+    }
+  }
+
+  // returns whether the square at the given index has been clicked open
+  boolean isRevealed(int idx) {
+    return Board.get(this.revealed, idx);
+  }
+
+  // marks the square at the given index as clicked open
+  void setRevealed(int idx) {
+    if (!this.isRevealed(idx)) {
+      Board.set(this.revealed, idx);
+      if (!this.isMine(idx)) {
+        this.safeOpened++;
+      }
+    }
+  }
+
+  // closes the square at the given index again
+  void hide(int idx) {
+    if (this.isRevealed(idx)) {
+      Board.flip(this.revealed, idx);
+      if (!this.isMine(idx)) {
+        this.safeOpened--;
+      }
+    }
+  }
+
+  // returns whether the square at the given index carries a flag
+  boolean isFlagged(int idx) {
+    return Board.get(this.flagged, idx);
+  }
+
+  // puts a flag on the square at the given index, or takes it off
+  void toggleFlag(int idx) {
+    Board.flip(this.flagged, idx);
+    int sign = this.isFlagged(idx) ? 1 : -1;
+    this.flags += sign;
+    if (this.isMine(idx)) {
+      this.rightFlags += sign;
+    }
+  }
+
+  // returns the number of safe squares still to be opened
+  int safeLeft() {
+    return this.size() - this.numMines - this.safeOpened;
+  }
+
+  // counts the opened safe squares, the flags and the flags on mines again
+  // from the bitsets, after they were written without setRevealed,
+  // toggleFlag or setMine; this costs a word of each bitset per 64 squares
+  void recount() {
+    this.safeOpened = 0;
+    this.flags = 0;
+    this.rightFlags = 0;
+    for (int w = 0; w < this.mines.length; w++) {
+      this.safeOpened += Long.bitCount(this.revealed[w] & ~this.mines[w]);
+      this.flags += Long.bitCount(this.flagged[w]);
+      this.rightFlags += Long.bitCount(this.flagged[w] & this.mines[w]);
+    }
+  }
+
+  // returns the number of mines around the square at the given index
+  int mineNum(int idx) {
+    return this.counts[idx];
+  }
+
+  // places the given number of mines on distinct random squares
+  // uses Floyd's sampling algorithm: each step draws one square out of the
+  // first j + 1, and falls back to square j if the drawn one is already taken,
+  // so every square is equally likely and only numMines draws are made
+  // the draws come from a SplittableRandom seeded by rand, which keeps the
+  // board reproducible from rand's seed without paying for its locking; that
+  // seed is kept in this.seed
+  void placeMines(int numMines, Random rand) {
+    this.seed = rand.nextLong();
+    SplittableRandom draws = new SplittableRandom(this.seed);
+    int n = this.size();
+    for (int j = n - Math.min(numMines, n); j < n; j++) {
+      int idx = draws.nextInt(j + 1);
+      if (this.isMine(idx)) {
+        idx = j;
+      }
+      this.setMine(idx);
+    }
+  }
+
+  // places mines like placeMines, but never on the given square or its
+  // neighbors; the draws are made over the squares that are left, and each
+  // one is shifted past the skipped squares at or below it
+  void placeMines(int numMines, Random rand, int safe) {
+    int[] skipped = new int[ITopology.MAX + 1];
+    int k = this.neighbors(safe, skipped);
+    skipped[k] = safe;
+    k++;
+    Arrays.sort(skipped, 0, k);
+    this.seed = rand.nextLong();
+    SplittableRandom draws = new SplittableRandom(this.seed);
+    int n = this.size() - k;
+    for (int j = n - Math.min(numMines, n); j < n; j++) {
+      int pick = draws.nextInt(j + 1);
+      int idx = pick;
+      for (int s = 0; s < k && skipped[s] <= idx; s++) {
+        idx++;
+      }
+      if (this.isMine(idx)) {
+        idx = j;
+        for (int s = 0; s < k && skipped[s] <= idx; s++) {
+          idx++;
+        }
+      }
+      this.setMine(idx);
+    }
+  }
+
+  // moves the mine on square from to the empty square to, and fixes the
+  // counts of the squares around both
+  void moveMine(int from, int to) {
+    Board.flip(this.mines, from);
+    Board.flip(this.mines, to);
+    this.rightFlags += (this.isFlagged(to) ? 1 : 0) - (this.isFlagged(from) ? 1 : 0);
+    this.safeOpened += (this.isRevealed(from) ? 1 : 0) - (this.isRevealed(to) ? 1 : 0);
+    this.addAround(from, -1);
+    this.addAround(to, 1);
+    this.counts[to] = 0;
+    int count = 0;
+    int n = this.neighbors(from, this.around);
+    for (int i = 0; i < n; i++) {
+      if (this.isMine(this.around[i])) {
+        count++;
+      }
+    }
+    this.counts[from] = (byte) count;
+  }
+
+  // adds delta to the count of every safe square around the given square
+  void addAround(int idx, int delta) {
+    int n = this.neighbors(idx, this.around);
+    for (int i = 0; i < n; i++) {
+      int next = this.around[i];
+      if (!this.isMine(next)) {
+        this.counts[next] += delta;
+      }
+    }
+  }
+
+  // counts the mines around every safe square of a board whose counts are
+  // all still 0, by adding one around each mine in turn
+  // this only touches the squares next to a mine, where countNeighbors
+  // looks at every square, which is much less on a large sparse board
+  void countAroundMines() {
+    for (int w = 0; w < this.mines.length; w++) {
+      long word = this.mines[w];
+      while (word != 0) {
+        this.addAround((w << 6) + Long.numberOfTrailingZeros(word), 1);
+        word &= word - 1;
+      }
+    }
+  }
+
+  // counts the mines around every safe square of this board
+  // a board of more than CountTask.PARALLEL squares is counted in strips of
+  // rows across the common pool; the strips only read the mines and each
+  // writes its own rows of this.counts, so they need no locks
+  // a board of any other topology adds one around each mine instead
+  void countNeighbors() {
+    if (!this.topology.isSquare()) {
+      Arrays.fill(this.counts, (byte) 0);
+      this.countAroundMines();
+    }
+    else if (this.size() < CountTask.PARALLEL) {
+      this.countRows(0, this.length);
+    }
+    else {
+      ForkJoinPool.commonPool().invoke(new CountTask(this, 0, this.length));
+    }
+  }
+
+  // counts the mines around every safe square of the rows from from up to to
+  // each row is spread out to a byte per square and summed across once,
+  // three squares at a time; a square's count is then the sum of those sums
+  // of the rows above, on and below it, so a mine is read three times in all
+  // rather than nine, and the loops over a row are plain array arithmetic
+  // that the JIT can turn into vector instructions
+  void countRows(int from, int to) {
+    byte[] bits = new byte[this.width + 2];
+    byte[] mine = new byte[this.width + 2];
+    byte[] above = new byte[this.width];
+    byte[] on = new byte[this.width];
+    byte[] below = new byte[this.width];
+    if (from > 0) {
+      this.rowSums(from - 1, bits, above);
+    }
+    if (from < to) {
+      this.rowSums(from, mine, on);
+    }
+    for (int r = from; r < to; r++) {
+      if (r + 1 < this.length) {
+        this.rowSums(r + 1, bits, below);
+      }
+      else {
+        Arrays.fill(below, (byte) 0);
+      }
+      int base = r * this.width;
+      for (int c = 0; c < this.width; c++) {
+        this.counts[base + c] = (byte) ((above[c] + on[c] + below[c]) & (mine[c + 1] - 1));
+      }
+      byte[] done = above;
+      above = on;
+      on = below;
+      below = done;
+      byte[] spread = mine;
+      mine = bits;
+      bits = spread;
+    }
+  }
+
+  // spreads the mines of the given row out to a byte per square in bits,
+  // shifted one to the right with a 0 at each end, and puts the number of
+  // mines on each square and the squares left and right of it into sums
+  void rowSums(int row, byte[] bits, byte[] sums) {
+    int base = row * this.width;
+    for (int c = 0; c < this.width; c++) {
+      int idx = base + c;
+      bits[c + 1] = (byte) (this.mines[idx >>> 6] >>> idx & 1);
+    }
+    for (int c = 0; c < this.width; c++) {
+      sums[c] = (byte) (bits[c] + bits[c + 1] + bits[c + 2]);
+    }
+  }
+
+  // opens the square at the given index, and keeps opening its neighbors for as
+  // long as the opened squares have no mines around them
+  // the opened squares are queued in this.opened, which doubles as the work
+  // queue of the fill, so no recursion happens and nothing is allocated per
+  // square; returns the number of squares that were opened
+  int floodFill(int idx) {
+    this.openedCount = 0;
+    this.depth = 0;
+    if (!this.canOpen(idx)) {
+      return 0;
+    }
+    this.open(idx);
+    return this.spread();
+  }
+
+  // opens the neighbors of every square queued in this.opened that has no
+  // mines around it, queueing them in turn, and returns the number of
+  // squares in this.opened once the cascade stops
+  // this.depth is left as the number of steps the cascade took outwards
+  int spread() {
+    this.depth = this.openedCount > 0 ? 1 : 0;
+    int layerEnd = this.openedCount;
+    for (int head = 0; head < this.openedCount; head++) {
+      if (head == layerEnd) {
+        this.depth++;
+        layerEnd = this.openedCount;
+      }
+      int cur = this.opened[head];
+      if (this.counts[cur] != 0) {
+        continue;
+      }
+      if (!this.topology.isSquare()) {
+        int n = this.neighbors(cur, this.around);
+        for (int i = 0; i < n; i++) {
+          if (this.canOpen(this.around[i])) {
+            this.open(this.around[i]);
+          }
+        }
+        continue;
+      }
+      int r = cur / this.width;
+      int c = cur - r * this.width;
+      int startRow = Math.max(r - 1, 0);
+      int endRow = Math.min(r + 1, this.length - 1);
+      int startCol = Math.max(c - 1, 0);
+      int endCol = Math.min(c + 1, this.width - 1);
+      for (int row = startRow; row <= endRow; row++) {
+        for (int col = startCol; col <= endCol; col++) {
+          int next = row * this.width + col;
+          if (this.canOpen(next)) {
+            this.open(next);
+          }
+        }
+      }
+    }
+    return this.openedCount;
+  }
+
+  // fills out with the indices of the squares around the given one in
+  // this.topology, and returns how many there are
+  int neighbors(int idx, int[] out) {
+    return this.topology.neighbors(this.length, this.width, idx, out);
+  }
+
+  // opens the hidden squares around the opened number at the given index,
+  // with their cascades, if exactly that many flags are around it
+  // returns the number of squares opened, queued in this.opened, or -1 if
+  // a wrong flag left a mine among them, in which case nothing is opened
+  int chord(int idx) {
+    this.openedCount = 0;
+    this.depth = 0;
+    if (!this.isRevealed(idx) || this.counts[idx] == 0) {
+      return 0;
+    }
+    int n = this.neighbors(idx, this.around);
+    int flags = 0;
+    for (int i = 0; i < n; i++) {
+      if (this.isFlagged(this.around[i])) {
+        flags++;
+      }
+    }
+    if (flags != this.counts[idx]) {
+      return 0;
+    }
+    for (int i = 0; i < n; i++) {
+      int next = this.around[i];
+      if (this.isMine(next) && !this.isFlagged(next)) {
+        return -1;
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      if (this.canOpen(this.around[i])) {
+        this.open(this.around[i]);
+      }
+    }
+    return this.spread();
+  }
+
+  // returns whether the flood fill may open the square at the given index
+  boolean canOpen(int idx) {
+    return !this.isRevealed(idx) && !this.isFlagged(idx) && !this.isMine(idx);
+  }
+
+  // opens the square at the given index and queues it in this.opened
+  // only squares that canOpen are opened, so the square is hidden and safe
+  void open(int idx) {
+    Board.set(this.revealed, idx);
+    this.safeOpened++;
+    if (this.openedCount == this.opened.length) {
+      this.opened = Arrays.copyOf(this.opened, this.opened.length * 2);
+    }
+    this.opened[this.openedCount] = idx;
+    this.openedCount++;
+  }
+
+  // produces the IGamePiece that shows the square at the given index
+  IGamePiece pieceAt(int idx) {
+    if (this.isFlagged(idx)) {
+      if (this.isMine(idx)) {
+        return new Flag(true);
+      }
+      return new Flag(this.counts[idx]);
+    }
+    else if (this.isMine(idx)) {
+      return new Mine(this.rowOf(idx), this.colOf(idx), this.isRevealed(idx));
+    }
+    return new Cell(this.counts[idx], this.isRevealed(idx));
+  }
+}
+
+// represents the counting of the mines around the squares of a strip of rows
+// of a Board, which splits itself across the pool
+class CountTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+  static final int PARALLEL = 1 << 18;
+  static final int STRIP = 1 << 16;
+  Board board;
+  int from;
+  int to;
+
+  // default constructor
+  CountTask(Board board, int from, int to) {
+    this.board = board;
+    this.from = from;
+    this.to = to;
+  }
+
+  // counts strips of about STRIP squares directly, and splits larger ones in
+  // half
+  protected void compute() {
+    if ((long) (this.to - this.from) * this.board.width <= CountTask.STRIP
+        || this.to - this.from < 2) {
+      this.board.countRows(this.from, this.to);
+      return;
+    }
+    int half = (this.from + this.to) >>> 1;
+    CountTask top = new CountTask(this.board, this.from, half);
+    top.fork();
+    new CountTask(this.board, half, this.to).compute();
+    top.join();
+  }
+}
+
+// represents the binary save format of a game, read and written through a
+// memory-mapped FileChannel
+// all numbers are little-endian; the file is a 64-byte header followed by the
+// mine, revealed and flagged bitsets of the Board, words long each:
+//   0  int  magic "MSWP"          20  int  number of flags
+//   4  int  version               24  long seed of the mine layout
+//   8  int  length (rows)         32  int  words per bitset
+//   12 int  width (columns)       36  int  mines to deal on the first click
+//   16 int  number of mines       40  reserved up to byte 64
+// the counts are not saved, since they follow from the mines
+// a game saved before its first click has no mines yet, and keeps how many
+// it will deal at byte 36; version 1 saves leave it 0, and load as dealt
+class SaveFile {
+  static final int MAGIC = 0x4D535750;
+  static final int VERSION = 2;
+  static final int HEADER = 64;
+
+  /* TEMPLATE
+   * Fields:
+   * ... SaveFile.MAGIC ...                                      --int
+   * ... SaveFile.VERSION ...                                    --int
+   * ... SaveFile.HEADER ...                                     --int
+   * Methods:
+   * ... SaveFile.save(Board board, Path path) ...               --void
+   * ... SaveFile.save(Board board, int toDeal, Path path) ...   --void
+   * ... SaveFile.load(Path path) ...                            --Board
+   * ... SaveFile.toDeal(Path path) ...                          --int
+   * ... SaveFile.loadSlice(Path path, int row, int col,
+   *                        int length, int width) ...           --Board
+   * ... SaveFile.map(FileChannel channel) ...                   --MappedByteBuffer
+   * ... SaveFile.bitAt(LongBuffer words, int base, int idx) ... --boolean
+   */
+
+  // writes the given board, with all its mines dealt, to the file at the
+  // given path, replacing it
+  static void save(Board board, Path path) throws IOException {
+    SaveFile.save(board, 0, path);
+  }
+
+  // writes the given board to the file at the given path, replacing it, with
+  // the given number of mines left to deal on the first click
+  // the bitsets are copied into the mapping in bulk, so saving costs about as
+  // much as copying them
+  static void save(Board board, int toDeal, Path path) throws IOException {
+    int words = board.mines.length;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          SaveFile.HEADER + 24L * words);
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      int flags = 0;
+      for (long word : board.flagged) {
+        flags += Long.bitCount(word);
+      }
+      map.putInt(0, SaveFile.MAGIC);
+      map.putInt(4, SaveFile.VERSION);
+      map.putInt(8, board.length);
+      map.putInt(12, board.width);
+      map.putInt(16, board.numMines);
+      map.putInt(20, flags);
+      map.putLong(24, board.seed);
+      map.putInt(32, words);
+      map.putInt(36, toDeal);
+      map.position(SaveFile.HEADER);
+      LongBuffer longs = map.asLongBuffer();
+      longs.put(board.mines);
+      longs.put(board.revealed);
+      longs.put(board.flagged);
+    }
+  }
+
+  // reads back the whole board saved at the given path, and counts its mines
+  static Board load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer map = SaveFile.map(channel);
+      Board board = new Board(map.getInt(8), map.getInt(12));
+      board.numMines = map.getInt(16);
+      board.seed = map.getLong(24);
+      map.position(SaveFile.HEADER);
+      LongBuffer longs = map.asLongBuffer();
+      longs.get(board.mines);
+      longs.get(board.revealed);
+      longs.get(board.flagged);
+      board.countNeighbors();
+      board.recount();
+      return board;
+    }
+  }
+
+  // reads the number of mines the game saved at the given path deals on its
+  // first click, or 0 if its mines are already on the board
+  static int toDeal(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return SaveFile.map(channel).getInt(36);
+    }
+  }
+
+  // reads the rectangle of length rows and width columns whose top left square
+  // is at (row, col) of the board saved at the given path, cut down to the part
+  // that lies on the board; only the words under the rectangle and the rows
+  // around it are touched, so the rest of the file is never read in
+  // the squares on the edge of the slice still count the mines outside it
+  static Board loadSlice(Path path, int row, int col, int length, int width)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer map = SaveFile.map(channel);
+      int fullLength = map.getInt(8);
+      int fullWidth = map.getInt(12);
+      int words = map.getInt(32);
+      int top = Math.max(row, 0);
+      int left = Math.max(col, 0);
+      int bottom = Math.min(row + length, fullLength);
+      int right = Math.min(col + width, fullWidth);
+      Board slice = new Board(Math.max(bottom - top, 0), Math.max(right - left, 0));
+      slice.seed = map.getLong(24);
+      map.position(SaveFile.HEADER);
+      LongBuffer longs = map.asLongBuffer();
+      for (int r = top; r < bottom; r++) {
+        for (int c = left; c < right; c++) {
+          int g = r * fullWidth + c;
+          int idx = slice.index(r - top, c - left);
+          if (SaveFile.bitAt(longs, words, g)) {
+            slice.setRevealed(idx);
+          }
+          if (SaveFile.bitAt(longs, 2 * words, g)) {
+            Board.set(slice.flagged, idx);
+          }
+          if (SaveFile.bitAt(longs, 0, g)) {
+            slice.setMine(idx);
+            continue;
+          }
+          int count = 0;
+          for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, fullLength - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, fullWidth - 1); nc++) {
+              if (SaveFile.bitAt(longs, 0, nr * fullWidth + nc)) {
+                count++;
+              }
+            }
+          }
+          slice.counts[idx] = (byte) count;
+        }
+      }
+      slice.recount();
+      return slice;
+    }
+  }
+
+  // maps the whole file of the given channel for reading, and checks that it
+  // holds a save this version can read
+  static MappedByteBuffer map(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < SaveFile.HEADER) {
+      throw new IOException("not a minesweeper save: too short");
+    }
+    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    map.order(ByteOrder.LITTLE_ENDIAN);
+    if (map.getInt(0) != SaveFile.MAGIC) {
+      throw new IOException("not a minesweeper save");
+    }
+    if (map.getInt(4) < 1 || map.getInt(4) > SaveFile.VERSION) {
+      throw new IOException("unsupported save version " + map.getInt(4));
+    }
+    int words = map.getInt(32);
+    if (words != Board.wordsFor(map.getInt(8) * map.getInt(12))
+        || size < SaveFile.HEADER + 24L * words) {
+      throw new IOException("not a minesweeper save: wrong size");
+    }
+    return map;
+  }
+
+  // returns whether bit idx is set in the bitset starting at word base
+  static boolean bitAt(LongBuffer words, int base, int idx) {
+    return (words.get(base + (idx >>> 6)) & (1L << idx)) != 0;
+  }
+}
+
+// represents the moves of a game that can be taken back, as a tree of
+// deltas rather than copies of the board: each entry lists the squares that
+// one move flipped and points to the entry it was made after, so undoing or
+// redoing a move costs only the squares it changed, and every version of the
+// board shares the entries before it
+// the squares of entry e are cells[start[e]] up to end(e); entries are only
+// ever appended, and a move made after an undo starts a new branch from the
+// current entry, leaving the old one unreachable
+class MoveHistory {
+  static final byte OPEN = 0;
+  static final byte FLAG = 1;
+  int[] cells;
+  int cellCount;
+  int[] start;
+  int[] parent;
+  byte[] kinds;
+  int entries;
+  int current;
+  int[] redoStack;
+  int redoSize;
+
+  // default constructor
+  MoveHistory() {
+    this.cells = new int[64];
+    this.cellCount = 0;
+    this.start = new int[16];
+    this.parent = new int[16];
+    this.kinds = new byte[16];
+    this.entries = 0;
+    this.current = -1;
+    this.redoStack = new int[16];
+    this.redoSize = 0;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... MoveHistory.OPEN ...                                    --byte
+   * ... MoveHistory.FLAG ...                                    --byte
+   * ... this.cells ...                                          --int[]
+   * ... this.cellCount ...                                      --int
+   * ... this.start ...                                          --int[]
+   * ... this.parent ...                                         --int[]
+   * ... this.kinds ...                                          --byte[]
+   * ... this.entries ...                                        --int
+   * ... this.current ...                                        --int
+   * ... this.redoStack ...                                      --int[]
+   * ... this.redoSize ...                                       --int
+   * Methods:
+   * ... this.begin(byte kind) ...                               --void
+   * ... this.push(int idx) ...                                  --void
+   * ... this.end(int entry) ...                                 --int
+   * ... this.undo() ...                                         --int
+   * ... this.redo() ...                                         --int
+   * ... this.truncate(int entries, int cellCount) ...           --void
+   */
+
+  // starts a new entry of the given kind after the current one, dropping
+  // the moves that could have been redone
+  void begin(byte kind) {
+    if (this.entries == this.start.length) {
+      this.start = Arrays.copyOf(this.start, this.entries * 2);
+      this.parent = Arrays.copyOf(this.parent, this.entries * 2);
+      this.kinds = Arrays.copyOf(this.kinds, this.entries * 2);
+    }
+    this.start[this.entries] = this.cellCount;
+    this.parent[this.entries] = this.current;
+    this.kinds[this.entries] = kind;
+    this.current = this.entries;
+    this.entries++;
+    this.redoSize = 0;
+  }
+
+  // adds a square to the entry begun last
+  void push(int idx) {
+    if (this.cellCount == this.cells.length) {
+      this.cells = Arrays.copyOf(this.cells, this.cellCount * 2);
+    }
+    this.cells[this.cellCount] = idx;
+    this.cellCount++;
+  }
+
+  // produces the index in this.cells just past the squares of the given entry
+  int end(int entry) {
+    if (entry + 1 < this.entries) {
+      return this.start[entry + 1];
+    }
+    return this.cellCount;
+  }
+
+  // steps back past the current entry, and produces it so that its squares
+  // can be flipped, or -1 if there is nothing to undo
+  int undo() {
+    int entry = this.current;
+    if (entry < 0) {
+      return -1;
+    }
+    if (this.redoSize == this.redoStack.length) {
+      this.redoStack = Arrays.copyOf(this.redoStack, Math.max(16, this.redoSize * 2));
+    }
+    this.redoStack[this.redoSize] = entry;
+    this.redoSize++;
+    this.current = this.parent[entry];
+    return entry;
+  }
+
+  // steps forward to the entry undone last, and produces it so that its
+  // squares can be flipped, or -1 if there is nothing to redo
+  int redo() {
+    if (this.redoSize == 0) {
+      return -1;
+    }
+    this.redoSize--;
+    this.current = this.redoStack[this.redoSize];
+    return this.current;
+  }
+
+  // forgets every entry from the given one on, which must not be reachable
+  // from this.current or this.redoStack
+  void truncate(int entries, int cellCount) {
+    this.entries = entries;
+    this.cellCount = cellCount;
+  }
+}
+
+// represents the append-only record of a game: how it was dealt, and the
+// position and button of every click in order
+// button names are kept as a byte index into this.names, so a move costs
+// nine bytes; a log of the clicks alone is enough to play the game again,
+// since dealing it from the same seed gives the same board
+class MoveLog {
+  static final int MAGIC = 0x4D534C47;
+  static final int VERSION = 2;
+  int length;
+  int width;
+  int numMines;
+  int seed;
+  boolean noGuess;
+  boolean deferred;
+  int[] xs;
+  int[] ys;
+  byte[] buttons;
+  int size;
+  ArrayList<String> names;
+
+  // default constructor
+  MoveLog(int length, int width, int numMines, int seed, boolean noGuess) {
+    this.length = length;
+    this.width = width;
+    this.numMines = numMines;
+    this.seed = seed;
+    this.noGuess = noGuess;
+    this.deferred = false;
+    this.xs = new int[64];
+    this.ys = new int[64];
+    this.buttons = new byte[64];
+    this.size = 0;
+    this.names = new ArrayList<String>(Arrays.asList("LeftButton", "RightButton",
+        "MiddleButton"));
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... MoveLog.MAGIC ...                                       --int
+   * ... MoveLog.VERSION ...                                     --int
+   * ... this.length ...                                         --int
+   * ... this.width ...                                          --int
+   * ... this.numMines ...                                       --int
+   * ... this.seed ...                                           --int
+   * ... this.noGuess ...                                        --boolean
+   * ... this.deferred ...                                       --boolean
+   * ... this.xs ...                                             --int[]
+   * ... this.ys ...                                             --int[]
+   * ... this.buttons ...                                        --byte[]
+   * ... this.size ...                                           --int
+   * ... this.names ...                                          --ArrayList<String>
+   * Methods:
+   * ... this.add(Posn pos, String buttonName) ...               --void
+   * ... this.add(int x, int y, String buttonName) ...           --void
+   * ... this.posnAt(int move) ...                               --Posn
+   * ... this.buttonAt(int move) ...                             --String
+   * ... this.save(Path path) ...                                --void
+   * ... MoveLog.load(Path path) ...                             --MoveLog
+   */
+
+  // appends a click at the given position with the given button
+  void add(Posn pos, String buttonName) {
+    this.add(pos.x, pos.y, buttonName);
+  }
+
+  // appends a click at (x, y) with the given button
+  void add(int x, int y, String buttonName) {
+    int code = this.names.indexOf(buttonName);
+    if (code < 0) {
+      code = this.names.size();
+      this.names.add(buttonName);
+    }
+    if (this.size == this.xs.length) {
+      this.xs = Arrays.copyOf(this.xs, this.size * 2);
+      this.ys = Arrays.copyOf(this.ys, this.size * 2);
+      this.buttons = Arrays.copyOf(this.buttons, this.size * 2);
+    }
+    this.xs[this.size] = x;
+    this.ys[this.size] = y;
+    this.buttons[this.size] = (byte) code;
+    this.size++;
+  }
+
+  // returns the position of the given move
+  Posn posnAt(int move) {
+    return new Posn(this.xs[move], this.ys[move]);
+  }
+
+  // returns the name of the button of the given move
+  String buttonAt(int move) {
+    return this.names.get(this.buttons[move]);
+  }
+
+  // writes this log to the file at the given path, replacing it: a header of
+  // magic, version, length, width, mines, seed, flags and number of moves,
+  // then the button names as a count and length-prefixed UTF-8 strings, then
+  // each move as its x, y and button code
+  void save(Path path) throws IOException {
+    byte[][] encoded = new byte[this.names.size()][];
+    long size = 36L + 9L * this.size;
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = this.names.get(i).getBytes(StandardCharsets.UTF_8);
+      size += 4 + encoded[i].length;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      map.putInt(MoveLog.MAGIC).putInt(MoveLog.VERSION);
+      map.putInt(this.length).putInt(this.width).putInt(this.numMines).putInt(this.seed);
+      map.putInt((this.noGuess ? 1 : 0) | (this.deferred ? 2 : 0));
+      map.putInt(this.size).putInt(encoded.length);
+      for (byte[] name : encoded) {
+        map.putInt(name.length).put(name);
+      }
+      for (int i = 0; i < this.size; i++) {
+        map.putInt(this.xs[i]).putInt(this.ys[i]).put(this.buttons[i]);
+      }
+    }
+  }
+
+  // reads back a log written by save
+  // the flags hold noGuess in bit 0 and, from version 2 on, deferred in
+  // bit 1; the games of version 1 logs were all dealt before the first click
+  static MoveLog load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      if (channel.size() < 36 || map.getInt() != MoveLog.MAGIC) {
+        throw new IOException("not a minesweeper move log");
+      }
+      int version = map.getInt();
+      if (version < 1 || version > MoveLog.VERSION) {
+        throw new IOException("unsupported move log version " + version);
+      }
+      MoveLog log = new MoveLog(map.getInt(), map.getInt(), map.getInt(), map.getInt(), false);
+      int flags = map.getInt();
+      log.noGuess = (flags & 1) != 0;
+      log.deferred = version >= 2 && (flags & 2) != 0;
+      int moves = map.getInt();
+      int names = map.getInt();
+      log.names.clear();
+      for (int i = 0; i < names; i++) {
+        byte[] name = new byte[map.getInt()];
+        map.get(name);
+        log.names.add(new String(name, StandardCharsets.UTF_8));
+      }
+      log.xs = new int[Math.max(moves, 64)];
+      log.ys = new int[log.xs.length];
+      log.buttons = new byte[log.xs.length];
+      for (int i = 0; i < moves; i++) {
+        log.xs[i] = map.getInt();
+        log.ys[i] = map.getInt();
+        log.buttons[i] = map.get();
+      }
+      log.size = moves;
+      return log;
+    }
+  }
+}
+
+// represents the part of a GameWorld that its moves change, copied out so
+// that it can be put back later
+// the mines are left out since no move moves them, except the first left
+// click of a game dealt on it, which places them all
+class Snapshot {
+  boolean deferred;
+  long[] revealed;
+  long[] flagged;
+  int numMines;
+  int flagNum;
+  boolean isGameOver;
+  int entries;
+  int cellCount;
+  int current;
+  int[] redoStack;
+
+  // default constructor
+  // the entries of game.history are only ever appended, so the ones made so
+  // far are kept by their count alone
+  Snapshot(GameWorld game) {
+    this.deferred = game.deferred;
+    this.revealed = game.board.revealed.clone();
+    this.flagged = game.board.flagged.clone();
+    this.numMines = game.numMines;
+    this.flagNum = game.flagNum;
+    this.isGameOver = game.isGameOver;
+    this.entries = game.history.entries;
+    this.cellCount = game.history.cellCount;
+    this.current = game.history.current;
+    this.redoStack = Arrays.copyOf(game.history.redoStack, game.history.redoSize);
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.deferred ...                                       --boolean
+   * ... this.revealed ...                                       --long[]
+   * ... this.flagged ...                                        --long[]
+   * ... this.numMines ...                                       --int
+   * ... this.flagNum ...                                        --int
+   * ... this.isGameOver ...                                     --boolean
+   * ... this.entries ...                                        --int
+   * ... this.cellCount ...                                      --int
+   * ... this.current ...                                        --int
+   * ... this.redoStack ...                                      --int[]
+   * Methods:
+   * ... this.restore(GameWorld game) ...                        --void
+   */
+
+  // puts the copied state back into the given game, which must have been
+  // dealt the same board, and have had its mines placed just when this
+  // snapshot did
+  void restore(GameWorld game) {
+    System.arraycopy(this.revealed, 0, game.board.revealed, 0, this.revealed.length);
+    System.arraycopy(this.flagged, 0, game.board.flagged, 0, this.flagged.length);
+    game.board.recount();
+    game.numMines = this.numMines;
+    game.flagNum = this.flagNum;
+    game.isGameOver = this.isGameOver;
+    game.history.truncate(this.entries, this.cellCount);
+    game.history.current = this.current;
+    game.history.redoStack = this.redoStack.clone();
+    game.history.redoSize = this.redoStack.length;
+    game.scene = null;
+    game.overview = null;
+  }
+}
+
+// represents a recorded game that can be wound to any move
+// the game is played through once when the replay is made, keeping a
+// Snapshot every interval moves; seeking then puts back the snapshot at or
+// before the wanted move and plays fewer than interval moves from there,
+// through the same GameWorld.click that the live game used
+class Replay {
+  MoveLog log;
+  int interval;
+  GameWorld game;
+  ArrayList<Snapshot> snapshots;
+  int position;
+
+  // default constructor
+  Replay(MoveLog log, int interval) {
+    this.log = log;
+    this.interval = interval;
+    this.game = this.deal();
+    this.snapshots = new ArrayList<Snapshot>();
+    this.snapshots.add(new Snapshot(this.game));
+    this.position = 0;
+    while (this.position < log.size) {
+      this.step();
+      if (this.position % interval == 0) {
+        this.snapshots.add(new Snapshot(this.game));
+      }
+    }
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.log ...                                            --MoveLog
+   * ... this.interval ...                                       --int
+   * ... this.game ...                                           --GameWorld
+   * ... this.snapshots ...                                      --ArrayList<Snapshot>
+   * ... this.position ...                                       --int
+   * Methods:
+   * ... this.deal() ...                                         --GameWorld
+   * ... this.seek(int move) ...                                 --GameWorld
+   * ... this.step() ...                                         --void
+   */
+
+  // deals the game of this.log again, before any move was made
+  GameWorld deal() {
+    GameWorld dealt;
+    if (this.log.noGuess) {
+      dealt = new GameWorld(new NoGuessGenerator(this.log.length, this.log.width,
+          this.log.numMines), this.log.seed);
+    }
+    else if (this.log.deferred) {
+      dealt = new GameWorld(this.log.length, this.log.width, this.log.numMines, this.log.seed);
+      dealt.defer();
+    }
+    else {
+      dealt = new GameWorld(this.log.length, this.log.width, this.log.numMines, this.log.seed);
+      dealt.initCells();
+      dealt.placeMines();
+      dealt.updateNeighbors();
+    }
+    dealt.log = null;
+    return dealt;
+  }
+
+  // winds the game to just after the first move moves have been made, and
+  // returns it
+  // a snapshot can't place or take back the mines of a deferred first click,
+  // so crossing that click deals the game again, plays it up to the click
+  // if the snapshot is past it, and only then puts the snapshot back
+  // the new game keeps the history of the old one, whose entries the same
+  // moves always make the same, so the snapshots' counts of them still hold
+  GameWorld seek(int move) {
+    int target = Math.max(0, Math.min(move, this.log.size));
+    if (target < this.position || target / this.interval > this.position / this.interval) {
+      Snapshot snapshot = this.snapshots.get(target / this.interval);
+      if (snapshot.deferred != this.game.deferred) {
+        MoveHistory history = this.game.history;
+        this.game = this.deal();
+        this.game.history = history;
+        this.snapshots.get(0).restore(this.game);
+        this.position = 0;
+        while (this.game.deferred && !snapshot.deferred) {
+          this.step();
+        }
+      }
+      snapshot.restore(this.game);
+      this.position = target / this.interval * this.interval;
+    }
+    while (this.position < target) {
+      this.step();
+    }
+    return this.game;
+  }
+
+  // plays the next move of the log
+  void step() {
+    this.game.click(this.log.posnAt(this.position), this.log.buttonAt(this.position));
+    this.position++;
+  }
+}
+
+// represents one command sent to a Session, and the reply it will get
+class SessionCommand {
+  String op;
+  int row;
+  int col;
+  CompletableFuture<String> reply;
+
+  // default constructor
+  SessionCommand(String op, int row, int col) {
+    this.op = op;
+    this.row = row;
+    this.col = col;
+    this.reply = new CompletableFuture<String>();
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.op ...                                             --String
+   * ... this.row ...                                            --int
+   * ... this.col ...                                            --int
+   * ... this.reply ...                                          --CompletableFuture<String>
+   */
+}
+
+// represents one game hosted by a SessionManager
+// commands wait in this.inbox and are played by at most one pool thread at
+// a time: whoever queues a command while the session is idle schedules it,
+// and the session then drains the inbox, so the moves of one game stay in
+// order while different games run side by side without sharing a lock
+// while paged out, this.game is null and the board lives at this.path
+class Session implements Runnable {
+  static final int BATCH = 64;
+  SessionManager manager;
+  long id;
+  int length;
+  int width;
+  int numMines;
+  int seed;
+  Path path;
+  GameWorld game;
+  boolean over;
+  boolean closed;
+  ConcurrentLinkedQueue<SessionCommand> inbox;
+  AtomicBoolean scheduled;
+  volatile long lastUsed;
+
+  // default constructor
+  // sessions are not logged for replay, since paging out keeps only the board
+  Session(SessionManager manager, long id, int length, int width, int numMines, int seed) {
+    this.manager = manager;
+    this.id = id;
+    this.length = length;
+    this.width = width;
+    this.numMines = numMines;
+    this.seed = seed;
+    this.path = manager.dir.resolve("session-" + id + ".sav");
+    this.game = new GameWorld(length, width, numMines, seed);
+    this.game.initCells();
+    this.game.placeMines();
+    this.game.updateNeighbors();
+    this.game.log = null;
+    this.over = false;
+    this.closed = false;
+    this.inbox = new ConcurrentLinkedQueue<SessionCommand>();
+    this.scheduled = new AtomicBoolean(false);
+    this.lastUsed = System.nanoTime();
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... Session.BATCH ...                                       --int
+   * ... this.manager ...                                        --SessionManager
+   * ... this.id ...                                             --long
+   * ... this.length ...                                         --int
+   * ... this.width ...                                          --int
+   * ... this.numMines ...                                       --int
+   * ... this.seed ...                                           --int
+   * ... this.path ...                                           --Path
+   * ... this.game ...                                           --GameWorld
+   * ... this.over ...                                           --boolean
+   * ... this.closed ...                                         --boolean
+   * ... this.inbox ...                                          --ConcurrentLinkedQueue<SessionCommand>
+   * ... this.scheduled ...                                      --AtomicBoolean
+   * ... this.lastUsed ...                                       --long
+   * Methods:
+   * ... this.submit(SessionCommand cmd) ...                     --void
+   * ... this.run() ...                                          --void
+   * ... this.play(SessionCommand cmd) ...                       --String
+   * ... this.state() ...                                        --String
+   * ... this.show() ...                                         --String
+   * ... this.pageOut() ...                                      --void
+   * ... this.pageIn() ...                                       --boolean
+   * ... this.close() ...                                        --void
+   */
+
+  // queues the given command, scheduling this session if it was idle
+  void submit(SessionCommand cmd) {
+    this.lastUsed = System.nanoTime();
+    this.inbox.add(cmd);
+    if (this.scheduled.compareAndSet(false, true)) {
+      this.manager.pool.execute(this);
+    }
+  }
+
+  // plays up to BATCH queued commands, then gives the thread back to the
+  // pool, scheduling itself again if more commands came in meanwhile
+  // whatever a command throws becomes its error reply, and this session is
+  // left ready to be scheduled again even if the batch itself fails, so
+  // nobody waits for a reply that never comes
+  public void run() {
+    try {
+      for (int i = 0; i < Session.BATCH; i++) {
+        SessionCommand cmd = this.inbox.poll();
+        if (cmd == null) {
+          break;
+        }
+        try {
+          cmd.reply.complete(this.play(cmd));
+        }
+        catch (Throwable e) {
+          cmd.reply.complete("error " + e);
+        }
+      }
+    }
+    finally {
+      this.scheduled.set(false);
+      if (!this.inbox.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+        this.manager.pool.execute(this);
+      }
+    }
+  }
+
+  // plays one command on this game, and produces its reply
+  // open, flag, undo and redo reply with the state of the game, show with
+  // the squares a player can see, page and close with what they did
+  String play(SessionCommand cmd) {
+    if (this.closed) {
+      return "error no session " + this.id;
+    }
+    if (cmd.op.equals("page")) {
+      this.pageOut();
+      return "paged";
+    }
+    if (cmd.op.equals("close")) {
+      this.close();
+      return "closed";
+    }
+    if (this.game == null && !this.pageIn()) {
+      return "error could not page in session " + this.id;
+    }
+    if (cmd.op.equals("show")) {
+      return this.show();
+    }
+    if (cmd.op.equals("open") || cmd.op.equals("flag")) {
+      if (cmd.row < 0 || cmd.row >= this.length || cmd.col < 0 || cmd.col >= this.width) {
+        return "error out of bounds";
+      }
+      boolean open = cmd.op.equals("open");
+      int idx = this.game.board.index(cmd.row, cmd.col);
+      if (!this.game.isGameOver && !(open && this.game.board.isFlagged(idx))) {
+        this.game.clickCell(idx, open ? "LeftButton" : "RightButton");
+      }
+    }
+    else if (cmd.op.equals("undo") || cmd.op.equals("redo")) {
+      if (!this.game.isGameOver) {
+        this.game.click(-1, -1, cmd.op.equals("undo") ? "Undo" : "Redo");
+      }
+    }
+    else if (!cmd.op.equals("state")) {
+      return "error unknown command " + cmd.op;
+    }
+    return this.state();
+  }
+
+  // produces whether this game is being played, won or lost, and the
+  // number of flags placed
+  String state() {
+    String state = "playing";
+    if (this.game.isWon()) {
+      state = "won";
+    }
+    else if (this.game.isGameOver) {
+      state = "lost";
+    }
+    return state + " " + this.game.flagNum;
+  }
+
+  // produces the squares of this game row by row, as '.' for hidden, 'F'
+  // for flagged, and the number of mines around for opened
+  String show() {
+    Board board = this.game.board;
+    char[] out = new char[board.size()];
+    for (int idx = 0; idx < out.length; idx++) {
+      if (board.isFlagged(idx)) {
+        out[idx] = 'F';
+      }
+      else if (board.isRevealed(idx)) {
+        out[idx] = (char) ('0' + board.mineNum(idx));
+      }
+      else {
+        out[idx] = '.';
+      }
+    }
+    return new String(out);
+  }
+
+  // writes this game to this.path and lets it go, keeping it in memory if
+  // it can't be written
+  void pageOut() {
+    if (this.game == null) {
+      return;
+    }
+    try {
+      SaveFile.save(this.game.board, this.path);
+    }
+    catch (IOException e) {
+      return;
+    }
+    this.over = this.game.isGameOver;
+    this.game = null;
+    this.manager.resident.decrementAndGet();
+    this.manager.pagedOut.incrementAndGet();
+  }
+
+  // reads this game back from this.path, producing whether it could
+  // the history of moves is not saved, so a paged in game can't be undone
+  // past the point it was paged out
+  boolean pageIn() {
+    Board board;
+    try {
+      board = SaveFile.load(this.path);
+    }
+    catch (IOException e) {
+      return false;
+    }
+    GameWorld loaded = new GameWorld(this.length, this.width, this.numMines, this.seed);
+    loaded.resume(board);
+    loaded.isGameOver = this.over;
+    this.game = loaded;
+    this.manager.resident.incrementAndGet();
+    this.manager.pagedIn.incrementAndGet();
+    return true;
+  }
+
+  // ends this session, forgetting its game and its page file
+  void close() {
+    this.closed = true;
+    if (this.game != null) {
+      this.game = null;
+      this.manager.resident.decrementAndGet();
+    }
+    this.manager.sessions.remove(this.id, this);
+    try {
+      Files.deleteIfExists(this.path);
+    }
+    catch (IOException e) {
+      System.out.println("Could not delete " + this.path + ": " + e.getMessage());
+    }
+  }
+}
+
+// represents a headless server hosting many independent games, each keyed
+// by a session id
+// commands come in through submit and command, or as lines of text through
+// a socket on the loopback address opened by listen:
+//   new <length> <width> <mines> [seed]   replies with the new session id
+//   open|flag <id> <row> <col>            replies with the state of the game
+//   undo|redo|state|show|page|close <id>
+// every Session runs its own commands in order on the shared pool, and
+// games left idle can be paged out to their save files with pageOut
+class SessionManager {
+  Path dir;
+  ForkJoinPool pool;
+  ConcurrentHashMap<Long, Session> sessions;
+  AtomicLong nextId;
+  AtomicInteger resident;
+  AtomicLong pagedOut;
+  AtomicLong pagedIn;
+  ServerSocket server;
+
+  // default constructor
+  // the pool runs tasks first in first out, so a busy session that
+  // schedules itself again goes behind the sessions already waiting
+  SessionManager(Path dir) {
+    this(dir, new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+        ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true));
+  }
+
+  // convenience constructor
+  SessionManager(Path dir, ForkJoinPool pool) {
+    this.dir = dir;
+    this.pool = pool;
+    this.sessions = new ConcurrentHashMap<Long, Session>();
+    this.nextId = new AtomicLong(1);
+    this.resident = new AtomicInteger(0);
+    this.pagedOut = new AtomicLong(0);
+    this.pagedIn = new AtomicLong(0);
+    this.server = null;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.dir ...                                            --Path
+   * ... this.pool ...                                           --ForkJoinPool
+   * ... this.sessions ...                                       --ConcurrentHashMap<Long, Session>
+   * ... this.nextId ...                                         --AtomicLong
+   * ... this.resident ...                                       --AtomicInteger
+   * ... this.pagedOut ...                                       --AtomicLong
+   * ... this.pagedIn ...                                        --AtomicLong
+   * ... this.server ...                                         --ServerSocket
+   * Methods:
+   * ... this.open(int length, int width, int numMines, int seed) ...  --long
+   * ... this.submit(long id, String op, int row, int col) ...   --CompletableFuture<String>
+   * ... this.command(String line) ...                           --String
+   * ... this.pageOut(long idleNanos) ...                        --int
+   * ... this.listen(int port) ...                               --int
+   * ... this.serve(Socket socket) ...                           --void
+   * ... this.shutdown() ...                                     --void
+   */
+
+  // starts a new game dealt from the given seed, and produces its session id
+  long open(int length, int width, int numMines, int seed) {
+    long id = this.nextId.getAndIncrement();
+    this.sessions.put(id, new Session(this, id, length, width, numMines, seed));
+    this.resident.incrementAndGet();
+    return id;
+  }
+
+  // queues a command for the given session, producing its reply once the
+  // session has played it
+  CompletableFuture<String> submit(long id, String op, int row, int col) {
+    Session session = this.sessions.get(id);
+    if (session == null) {
+      return CompletableFuture.completedFuture("error no session " + id);
+    }
+    SessionCommand cmd = new SessionCommand(op, row, col);
+    session.submit(cmd);
+    return cmd.reply;
+  }
+
+  // plays one line of the text protocol, waiting for its reply
+  // open and flag take exactly a session id, a row and a column, and every
+  // other command exactly a session id; anything else is a bad command
+  String command(String line) {
+    String[] words = line.trim().split("\\s+");
+    try {
+      if (words[0].equals("new")) {
+        int seed = words.length > 4 ? Integer.parseInt(words[4]) : new Random().nextInt();
+        return Long.toString(this.open(Integer.parseInt(words[1]), Integer.parseInt(words[2]),
+            Integer.parseInt(words[3]), seed));
+      }
+      boolean square = words[0].equals("open") || words[0].equals("flag");
+      if (words.length != (square ? 4 : 2)) {
+        return "error bad command " + line.trim();
+      }
+      long id = Long.parseLong(words[1]);
+      int row = square ? Integer.parseInt(words[2]) : 0;
+      int col = square ? Integer.parseInt(words[3]) : 0;
+      return this.submit(id, words[0], row, col).join();
+    }
+    catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      return "error bad command " + line.trim();
+    }
+  }
+
+  // queues every session not used for idleNanos to be paged out, and
+  // produces how many were queued
+  int pageOut(long idleNanos) {
+    long now = System.nanoTime();
+    int queued = 0;
+    for (Session session : this.sessions.values()) {
+      if (session.game != null && now - session.lastUsed >= idleNanos) {
+        session.submit(new SessionCommand("page", 0, 0));
+        queued++;
+      }
+    }
+    return queued;
+  }
+
+  // starts taking connections on the given port of the loopback address,
+  // or any free port if it is 0, and produces the port
+  // each connection gets a thread that plays its lines in order
+  int listen(int port) throws IOException {
+    this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    ServerSocket server = this.server;
+    Thread acceptor = new Thread(() -> {
+      while (!server.isClosed()) {
+        try {
+          Socket socket = server.accept();
+          Thread connection = new Thread(() -> this.serve(socket));
+          connection.setDaemon(true);
+          connection.start();
+        }
+        catch (IOException e) {
+          return;
+        }
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return server.getLocalPort();
+  }
+
+  // answers the lines sent through the given socket until it is closed or
+  // sends quit
+  void serve(Socket socket) {
+    try (Socket s = socket;
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),
+            StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(),
+            StandardCharsets.UTF_8))) {
+      String line = in.readLine();
+      while (line != null && !line.trim().equals("quit")) {
+        out.print(this.command(line));
+        out.print('\n');
+        out.flush();
+        line = in.readLine();
+      }
+    }
+    catch (IOException e) {
+      System.out.println("Connection dropped: " + e.getMessage());
+    }
+  }
+
+  // stops taking connections and lets the pool's threads finish
+  void shutdown() {
+    if (this.server != null) {
+      try {
+        this.server.close();
+      }
+      catch (IOException e) {
+        System.out.println("Could not close the server: " + e.getMessage());
+      }
+    }
+    this.pool.shutdown();
+  }
+}
+
+// drives a SessionManager with synthetic players and reports the latency of
+// their commands, without opening a window; run it with
+//   java -Djava.awt.headless=true SessionLoad sessions=2000 clients=8 commands=200000
+// each client plays its own share of the sessions in a closed loop, waiting
+// for every reply, while the main thread pages out the sessions left idle
+class SessionLoad {
+
+  /* TEMPLATE
+   * Methods:
+   * ... SessionLoad.main(String[] args) ...                     --void
+   * ... SessionLoad.client(SessionManager manager, long[] ids, int commands,
+   *                        long seed, long[] latencies) ...     --void
+   * ... SessionLoad.percentile(long[] sorted, double p) ...     --double
+   */
+
+  // runs the load described on the command line and prints the report
+  public static void main(String[] args) throws Exception {
+    int sessions = 2000;
+    int clients = 8;
+    int commands = 200000;
+    long idleMillis = 1000;
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("sessions")) {
+        sessions = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("clients")) {
+        clients = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("commands")) {
+        commands = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("idle")) {
+        idleMillis = Long.parseLong(kv[1]);
+      }
+    }
+    Path dir = Files.createTempDirectory("minesweeper-sessions");
+    SessionManager manager = new SessionManager(dir);
+    long[][] ids = new long[clients][sessions / clients];
+    for (int c = 0; c < clients; c++) {
+      for (int i = 0; i < ids[c].length; i++) {
+        ids[c][i] = manager.open(16, 30, 99, c * sessions + i);
+      }
+    }
+    long[][] latencies = new long[clients][commands / clients];
+    Thread[] threads = new Thread[clients];
+    long start = System.nanoTime();
+    for (int c = 0; c < clients; c++) {
+      long[] mine = ids[c];
+      long[] times = latencies[c];
+      long seed = c;
+      threads[c] = new Thread(() -> SessionLoad.client(manager, mine, times.length, seed, times));
+      threads[c].start();
+    }
+    int paged = 0;
+    for (Thread thread : threads) {
+      while (thread.isAlive()) {
+        paged += manager.pageOut(idleMillis * 1000000L);
+        thread.join(idleMillis);
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    System.out.println(String.format("%d commands on %d sessions from %d clients: %.0f commands/s",
+        all.length, manager.sessions.size(), clients, all.length / seconds));
+    System.out.println(String.format("latency us: p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f",
+        SessionLoad.percentile(all, 0.5), SessionLoad.percentile(all, 0.99),
+        SessionLoad.percentile(all, 0.999), all[all.length - 1] / 1000.0));
+    System.out.println(String.format("paged out %d, paged in %d, %d resident at the end",
+        manager.pagedOut.get(), manager.pagedIn.get(), manager.resident.get()));
+    for (Session session : manager.sessions.values()) {
+      manager.submit(session.id, "close", 0, 0).join();
+    }
+    manager.shutdown();
+    Files.deleteIfExists(dir);
+  }
+
+  // plays the given number of commands on random sessions from ids,
+  // recording the nanoseconds each one took; mostly opens, some flags and
+  // undos, and a game that ends is closed and replaced by a new one
+  static void client(SessionManager manager, long[] ids, int commands, long seed,
+      long[] latencies) {
+    SplittableRandom rand = new SplittableRandom(seed);
+    for (int i = 0; i < commands; i++) {
+      int s = rand.nextInt(ids.length);
+      int pick = rand.nextInt(100);
+      String op = pick < 80 ? "open" : pick < 95 ? "flag" : "undo";
+      long before = System.nanoTime();
+      String reply = manager.submit(ids[s], op, rand.nextInt(16), rand.nextInt(30)).join();
+      latencies[i] = System.nanoTime() - before;
+      if (reply.startsWith("won") || reply.startsWith("lost")) {
+        manager.submit(ids[s], "close", 0, 0).join();
+        ids[s] = manager.open(16, 30, 99, rand.nextInt());
+      }
+    }
+  }
+
+  // produces the value at the given fraction of the sorted nanoseconds, in
+  // microseconds
+  static double percentile(long[] sorted, double p) {
+    int at = (int) Math.min(sorted.length - 1, Math.floor(p * sorted.length));
+    return sorted[at] / 1000.0;
+  }
+}
+
+// represents the squares one move on a SharedBoard changed, as sent to
+// every player
+class BoardChange {
+  int player;
+  int kind;
+  int[] cells;
+
+  // default constructor
+  BoardChange(int player, int kind, int[] cells) {
+    this.player = player;
+    this.kind = kind;
+    this.cells = cells;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.player ...                                         --int
+   * ... this.kind ...                                           --int
+   * ... this.cells ...                                          --int[]
+   */
+}
+
+// represents one board played by several players at once, from any threads
+// the mines and counts of this.board never change once dealt; what can
+// change is kept as two bits per square in this.state, 32 squares to a
+// word: HIDDEN, OPENED or FLAGGED
+// every change is a compare-and-set of one word from the state the player
+// saw, so cascades that meet never open a square twice and a square can't
+// be opened and flagged at once; whoever opens a square with no mines
+// around it opens its neighbors, so overlapping cascades open the same
+// squares as one player clicking them in turn would
+class SharedBoard {
+  static final int HIDDEN = 0;
+  static final int OPENED = 1;
+  static final int FLAGGED = 2;
+  Board board;
+  AtomicLongArray state;
+  AtomicInteger opened;
+  AtomicInteger flags;
+  volatile boolean lost;
+  CopyOnWriteArrayList<ConcurrentLinkedQueue<BoardChange>> feeds;
+
+  // default constructor
+  // starts from the squares already opened or flagged on the given board
+  SharedBoard(Board board) {
+    this.board = board;
+    this.state = new AtomicLongArray((board.size() + 31) >>> 5);
+    this.opened = new AtomicInteger(0);
+    this.flags = new AtomicInteger(0);
+    this.lost = false;
+    this.feeds = new CopyOnWriteArrayList<ConcurrentLinkedQueue<BoardChange>>();
+    for (int idx = 0; idx < board.size(); idx++) {
+      if (board.isRevealed(idx)) {
+        this.claim(idx, SharedBoard.HIDDEN, SharedBoard.OPENED);
+        this.opened.incrementAndGet();
+      }
+      else if (board.isFlagged(idx)) {
+        this.claim(idx, SharedBoard.HIDDEN, SharedBoard.FLAGGED);
+        this.flags.incrementAndGet();
+      }
+    }
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... SharedBoard.HIDDEN ...                                  --int
+   * ... SharedBoard.OPENED ...                                  --int
+   * ... SharedBoard.FLAGGED ...                                 --int
+   * ... this.board ...                                          --Board
+   * ... this.state ...                                          --AtomicLongArray
+   * ... this.opened ...                                         --AtomicInteger
+   * ... this.flags ...                                          --AtomicInteger
+   * ... this.lost ...                                           --boolean
+   * ... this.feeds ...                                          --CopyOnWriteArrayList<...>
+   * Methods:
+   * ... this.stateOf(int idx) ...                               --int
+   * ... this.claim(int idx, int from, int to) ...               --boolean
+   * ... this.open(int player, int idx) ...                      --int
+   * ... this.toggleFlag(int player, int idx) ...                --boolean
+   * ... this.isWon() ...                                        --boolean
+   * ... this.subscribe() ...                                    --ConcurrentLinkedQueue<BoardChange>
+   * ... this.publish(BoardChange change) ...                    --void
+   * ... this.sync(Board view, int idx) ...                      --void
+   */
+
+  // returns the state of the square at the given index
+  int stateOf(int idx) {
+    return (int) (this.state.get(idx >>> 5) >>> ((idx & 31) << 1)) & 3;
+  }
+
+  // moves the square at the given index from one state to another,
+  // returning false if it was not in the first state
+  // the word is tried again when only other squares in it changed
+  boolean claim(int idx, int from, int to) {
+    int shift = (idx & 31) << 1;
+    long mask = 3L << shift;
+    while (true) {
+      long word = this.state.get(idx >>> 5);
+      if ((word & mask) != (long) from << shift) {
+        return false;
+      }
+      if (this.state.compareAndSet(idx >>> 5, word, (word & ~mask) | (long) to << shift)) {
+        return true;
+      }
+    }
+  }
+
+  // opens the square at the given index for the given player, with the
+  // cascade around it, and returns the number of squares this move opened
+  // opening a mine loses the game for everyone and returns -1
+  int open(int player, int idx) {
+    if (this.lost || this.stateOf(idx) != SharedBoard.HIDDEN) {
+      return 0;
+    }
+    if (this.board.isMine(idx)) {
+      if (!this.claim(idx, SharedBoard.HIDDEN, SharedBoard.OPENED)) {
+        return 0;
+      }
+      this.lost = true;
+      this.publish(new BoardChange(player, SharedBoard.OPENED, new int[] { idx }));
+      return -1;
+    }
+    if (!this.claim(idx, SharedBoard.HIDDEN, SharedBoard.OPENED)) {
+      return 0;
+    }
+    int[] around = new int[ITopology.MAX];
+    int[] queue = new int[16];
+    queue[0] = idx;
+    int count = 1;
+    for (int head = 0; head < count; head++) {
+      int cur = queue[head];
+      if (this.board.counts[cur] != 0) {
+        continue;
+      }
+      int n = this.board.neighbors(cur, around);
+      for (int k = 0; k < n; k++) {
+        int next = around[k];
+        if (!this.board.isMine(next) && this.stateOf(next) == SharedBoard.HIDDEN
+            && this.claim(next, SharedBoard.HIDDEN, SharedBoard.OPENED)) {
+          if (count == queue.length) {
+            queue = Arrays.copyOf(queue, count * 2);
+          }
+          queue[count] = next;
+          count++;
+        }
+      }
+    }
+    this.opened.addAndGet(count);
+    this.publish(new BoardChange(player, SharedBoard.OPENED, Arrays.copyOf(queue, count)));
+    return count;
+  }
+
+  // flags or unflags the square at the given index for the given player,
+  // returning false if it is open or another player changed it first
+  boolean toggleFlag(int player, int idx) {
+    int from = this.stateOf(idx);
+    if (this.lost || from == SharedBoard.OPENED) {
+      return false;
+    }
+    int to = from == SharedBoard.HIDDEN ? SharedBoard.FLAGGED : SharedBoard.HIDDEN;
+    if (!this.claim(idx, from, to)) {
+      return false;
+    }
+    this.flags.addAndGet(to == SharedBoard.FLAGGED ? 1 : -1);
+    this.publish(new BoardChange(player, SharedBoard.FLAGGED, new int[] { idx }));
+    return true;
+  }
+
+  // returns whether every square without a mine has been opened
+  boolean isWon() {
+    return !this.lost && this.opened.get() == this.board.size() - this.board.numMines;
+  }
+
+  // produces a new feed that gets every change made from now on
+  ConcurrentLinkedQueue<BoardChange> subscribe() {
+    ConcurrentLinkedQueue<BoardChange> feed = new ConcurrentLinkedQueue<BoardChange>();
+    this.feeds.add(feed);
+    return feed;
+  }
+
+  // sends the given change to every feed
+  void publish(BoardChange change) {
+    for (ConcurrentLinkedQueue<BoardChange> feed : this.feeds) {
+      feed.add(change);
+    }
+  }
+
+  // copies the state of the square at the given index into the given view
+  // changes can reach a feed in a different order than they were made, so
+  // a view reads the square's latest state rather than trusting the change;
+  // once a feed is drained, its view matches the board
+  void sync(Board view, int idx) {
+    int now = this.stateOf(idx);
+    if ((now == SharedBoard.OPENED) != view.isRevealed(idx)) {
+      if (now == SharedBoard.OPENED) {
+        view.setRevealed(idx);
+      }
+      else {
+        view.hide(idx);
+      }
+    }
+    if ((now == SharedBoard.FLAGGED) != view.isFlagged(idx)) {
+      view.toggleFlag(idx);
+    }
+  }
+}
+
+// represents one player's window onto a SharedBoard
+// this.board is the player's own view, sharing the mines and counts of the
+// shared board; clicks go to the shared board, and the squares every player
+// changed come back through this.feed on the next tick
+class CoopWorld extends GameWorld {
+  SharedBoard shared;
+  int player;
+  ConcurrentLinkedQueue<BoardChange> feed;
+
+  // default constructor
+  CoopWorld(SharedBoard shared, int player) {
+    super(shared.board.length, shared.board.width, shared.board.numMines, 0);
+    this.shared = shared;
+    this.player = player;
+    this.board = new Board(shared.board.length, shared.board.width, shared.board.topology);
+    this.board.mines = shared.board.mines;
+    this.board.counts = shared.board.counts;
+    this.board.numMines = shared.board.numMines;
+    this.log = null;
+    this.feed = shared.subscribe();
+    for (int idx = 0; idx < this.board.size(); idx++) {
+      shared.sync(this.board, idx);
+    }
+    this.flagNum = shared.flags.get();
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.shared ...                                         --SharedBoard
+   * ... this.player ...                                         --int
+   * ... this.feed ...                                           --ConcurrentLinkedQueue<BoardChange>
+   * Methods:
+   * ... this.play(int x, int y, String buttonName) ...          --void
+   * ... this.onTick() ...                                       --void
+   * ... this.onKeyEvent(String key) ...                         --void
+   */
+
+  // opens or flags the clicked square on the shared board, showing the
+  // change at once rather than on the next tick
+  void play(int x, int y, String buttonName) {
+    int idx = this.hits.cellOnBoard(x, y);
+    if (idx < 0) {
+      return;
+    }
+    if (buttonName.equals("LeftButton")) {
+      this.shared.open(this.player, idx);
+    }
+    else if (buttonName.equals("RightButton")) {
+      this.shared.toggleFlag(this.player, idx);
+    }
+    this.onTick();
+  }
+
+  // brings this.board up to date with the changes of every player, and
+  // ends the game for this player once it is won or lost
+  public void onTick() {
+    BoardChange change = this.feed.poll();
+    while (change != null) {
+      for (int idx : change.cells) {
+        this.shared.sync(this.board, idx);
+        this.markDirty(idx);
+      }
+      change = this.feed.poll();
+    }
+    this.flagNum = this.shared.flags.get();
+    if (!this.isGameOver && this.shared.lost) {
+      this.isGameOver = true;
+      this.endOfWorld("lost");
+    }
+    else if (!this.isGameOver && this.shared.isWon()) {
+      this.isGameOver = true;
+      this.endOfWorld("win");
+    }
+  }
+
+  // handles keys as GameWorld does, panning and zooming this player's view
+  // of the shared board included; the keys that undo, save or load would act
+  // on this player's view alone, so they do nothing here
+  public void onKeyEvent(String key) {
+    if (!key.equals("s") && !key.equals("l") && !key.equals("u") && !key.equals("r")) {
+      super.onKeyEvent(key);
+    }
+  }
+}
+
+// hammers one SharedBoard with many players clicking at once and checks
+// that nothing was lost, without opening a window; run it with
+//   java -Djava.awt.headless=true CoopStress size=1000 players=1,2,4,8,32
+// every player opens random squares without mines and flags random mines,
+// so the game is never lost and the squares opened must be exactly those a
+// single player making the same clicks one by one would open
+class CoopStress {
+  Board board;
+  int players;
+  int clicks;
+  long seed;
+  int[][] moves;
+  SharedBoard shared;
+  ConcurrentLinkedQueue<BoardChange> feed;
+  long nanos;
+
+  // default constructor
+  CoopStress(Board board, int players, int clicks, long seed) {
+    this.board = board;
+    this.players = players;
+    this.clicks = clicks;
+    this.seed = seed;
+    this.moves = new int[players][clicks];
+    this.shared = new SharedBoard(board);
+    this.feed = this.shared.subscribe();
+    this.nanos = 0;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.board ...                                          --Board
+   * ... this.players ...                                        --int
+   * ... this.clicks ...                                         --int
+   * ... this.seed ...                                           --long
+   * ... this.moves ...                                          --int[][]
+   * ... this.shared ...                                         --SharedBoard
+   * ... this.feed ...                                           --ConcurrentLinkedQueue<BoardChange>
+   * ... this.nanos ...                                          --long
+   * Methods:
+   * ... CoopStress.main(String[] args) ...                      --void
+   * ... this.run() ...                                          --void
+   * ... this.play(int player) ...                               --void
+   * ... this.check() ...                                        --String
+   */
+
+  // runs the stress test for each number of players on the command line,
+  // after one unreported run to warm up
+  public static void main(String[] args) throws InterruptedException {
+    int size = 1000;
+    double density = 0.15;
+    int[] players = new int[] { 1, 2, 4, 8, 32 };
+    int clicks = 200000;
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("size")) {
+        size = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("density")) {
+        density = Double.parseDouble(kv[1]);
+      }
+      else if (kv[0].equals("players")) {
+        players = Arrays.stream(kv[1].split(",")).mapToInt(Integer::parseInt).toArray();
+      }
+      else if (kv[0].equals("clicks")) {
+        clicks = Integer.parseInt(kv[1]);
+      }
+    }
+    Board warm = new Board(size, size);
+    warm.placeMines((int) (size * size * density), new Random(0));
+    warm.countNeighbors();
+    new CoopStress(warm, 1, clicks, 0).run();
+    for (int n : players) {
+      Board board = new Board(size, size);
+      board.placeMines((int) (size * size * density), new Random(n));
+      board.countNeighbors();
+      CoopStress stress = new CoopStress(board, n, clicks / n, n);
+      stress.run();
+      System.out.println(String.format("%3d players: %9.0f clicks/s, %8d opened, %s", n,
+          n * (clicks / n) / (stress.nanos / 1e9), stress.shared.opened.get(), stress.check()));
+    }
+  }
+
+  // starts every player on its own thread and waits for all of them
+  void run() throws InterruptedException {
+    Thread[] threads = new Thread[this.players];
+    for (int p = 0; p < this.players; p++) {
+      int player = p;
+      threads[p] = new Thread(() -> this.play(player));
+    }
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    this.nanos = System.nanoTime() - start;
+  }
+
+  // makes the clicks of the given player, remembering the squares opened
+  // one click in ten flags or unflags a mine instead
+  void play(int player) {
+    SplittableRandom rand = new SplittableRandom(this.seed * 31 + player);
+    for (int i = 0; i < this.clicks; i++) {
+      int idx = rand.nextInt(this.board.size());
+      while (this.board.isMine(idx) == (i % 10 != 0)) {
+        idx = rand.nextInt(this.board.size());
+      }
+      if (this.board.isMine(idx)) {
+        this.shared.toggleFlag(player, idx);
+        this.moves[player][i] = -1;
+      }
+      else {
+        this.shared.open(player, idx);
+        this.moves[player][i] = idx;
+      }
+    }
+  }
+
+  // produces "ok" if the shared board opened exactly the squares the same
+  // clicks open one by one, never opened a square twice, and a view built
+  // from the feed alone matches it; or what went wrong
+  String check() {
+    Board alone = new Board(this.board.length, this.board.width, this.board.topology);
+    alone.mines = this.board.mines;
+    alone.counts = this.board.counts;
+    for (int[] clicks : this.moves) {
+      for (int idx : clicks) {
+        if (idx >= 0) {
+          alone.floodFill(idx);
+        }
+      }
+    }
+    Board view = new Board(this.board.length, this.board.width);
+    int sent = 0;
+    BoardChange change = this.feed.poll();
+    while (change != null) {
+      if (change.kind == SharedBoard.OPENED) {
+        sent += change.cells.length;
+      }
+      for (int idx : change.cells) {
+        this.shared.sync(view, idx);
+      }
+      change = this.feed.poll();
+    }
+    int flags = 0;
+    for (int idx = 0; idx < this.board.size(); idx++) {
+      int now = this.shared.stateOf(idx);
+      if ((now == SharedBoard.OPENED) != alone.isRevealed(idx)) {
+        return "square " + idx + " differs from one player";
+      }
+      if ((now == SharedBoard.OPENED) != view.isRevealed(idx)
+          || (now == SharedBoard.FLAGGED) != view.isFlagged(idx)) {
+        return "square " + idx + " differs in the view";
+      }
+      if (now == SharedBoard.FLAGGED) {
+        flags++;
+      }
+    }
+    if (sent != this.shared.opened.get()) {
+      return sent + " squares sent but " + this.shared.opened.get() + " opened";
+    }
+    if (flags != this.shared.flags.get()) {
+      return flags + " flags placed but " + this.shared.flags.get() + " counted";
+    }
+    return "ok";
+  }
+}
+
+// represents one 32x32 piece of an EndlessBoard, stored like a small Board
+// the square at (x, y) of the world lives at local index
+// floorMod(y, 32) * 32 + floorMod(x, 32) of chunk (floorDiv(x, 32), floorDiv(y, 32))
+// the mines and counts can always be made again from the seed, so only the
+// opened and flagged squares have to be kept once the chunk is evicted
+class Chunk {
+  static final int SIZE = 32;
+  static final int WORDS = Chunk.SIZE * Chunk.SIZE / 64;
+  int cx;
+  int cy;
+  long[] mines;
+  long[] revealed;
+  long[] flagged;
+  byte[] counts;
+
+  // default constructor
+  Chunk(int cx, int cy, long[] mines) {
+    this.cx = cx;
+    this.cy = cy;
+    this.mines = mines;
+    this.revealed = new long[Chunk.WORDS];
+    this.flagged = new long[Chunk.WORDS];
+    this.counts = new byte[Chunk.SIZE * Chunk.SIZE];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... Chunk.SIZE ...                                          --int
+   * ... Chunk.WORDS ...                                         --int
+   * ... this.cx ...                                             --int
+   * ... this.cy ...                                             --int
+   * ... this.mines ...                                          --long[]
+   * ... this.revealed ...                                       --long[]
+   * ... this.flagged ...                                        --long[]
+   * ... this.counts ...                                         --byte[]
+   * Methods:
+   * ... Chunk.local(int x, int y) ...                           --int
+   * ... this.isMine(int i) ...                                  --boolean
+   * ... this.isRevealed(int i) ...                              --boolean
+   * ... this.isFlagged(int i) ...                               --boolean
+   * ... this.isTouched() ...                                    --boolean
+   * ... this.encode() ...                                       --byte[]
+   * ... this.decode(byte[] packed) ...                          --void
+   */
+
+  // returns the local index of the square at (x, y) of the world
+  static int local(int x, int y) {
+    return Math.floorMod(y, Chunk.SIZE) * Chunk.SIZE + Math.floorMod(x, Chunk.SIZE);
+  }
+
+  // returns whether the square at the given local index holds a mine
+  boolean isMine(int i) {
+    return Board.get(this.mines, i);
+  }
+
+  // returns whether the square at the given local index has been opened
+  boolean isRevealed(int i) {
+    return Board.get(this.revealed, i);
+  }
+
+  // returns whether the square at the given local index has been flagged
+  boolean isFlagged(int i) {
+    return Board.get(this.flagged, i);
+  }
+
+  // returns whether any square of this chunk has been opened or flagged
+  boolean isTouched() {
+    for (int w = 0; w < Chunk.WORDS; w++) {
+      if ((this.revealed[w] | this.flagged[w]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // packs the opened and then the flagged squares of this chunk, one word at
+  // a time: a word with no bit or every bit set takes a single byte of 0 or
+  // 1, and any other word a 2 followed by its 8 bytes
+  // a chunk the flood fill has cleared right through packs into 32 bytes
+  byte[] encode() {
+    int length = 0;
+    for (int w = 0; w < 2 * Chunk.WORDS; w++) {
+      long word = w < Chunk.WORDS ? this.revealed[w] : this.flagged[w - Chunk.WORDS];
+      length += word == 0 || word == -1 ? 1 : 9;
+    }
+    byte[] packed = new byte[length];
+    int at = 0;
+    for (int w = 0; w < 2 * Chunk.WORDS; w++) {
+      long word = w < Chunk.WORDS ? this.revealed[w] : this.flagged[w - Chunk.WORDS];
+      if (word == 0 || word == -1) {
+        packed[at] = (byte) (word == 0 ? 0 : 1);
+        at++;
+      }
+      else {
+        packed[at] = 2;
+        for (int b = 0; b < 8; b++) {
+          packed[at + 1 + b] = (byte) (word >>> (8 * b));
+        }
+        at += 9;
+      }
+    }
+    return packed;
+  }
+
+  // restores the opened and flagged squares packed by encode
+  void decode(byte[] packed) {
+    int at = 0;
+    for (int w = 0; w < 2 * Chunk.WORDS; w++) {
+      long word = 0;
+      if (packed[at] == 1) {
+        word = -1;
+      }
+      else if (packed[at] == 2) {
+        for (int b = 0; b < 8; b++) {
+          word |= (packed[at + 1 + b] & 0xFFL) << (8 * b);
+        }
+        at += 8;
+      }
+      at++;
+      if (w < Chunk.WORDS) {
+        this.revealed[w] = word;
+      }
+      else {
+        this.flagged[w - Chunk.WORDS] = word;
+      }
+    }
+  }
+}
+
+// represents a board with no edges, made of Chunks that are only created once
+// a click or a flood fill reaches them
+// the mines of each chunk are drawn from a SplittableRandom seeded by a hash
+// of the seed and the chunk's coordinates, so any chunk can be made again at
+// any time; the loaded chunks are kept in least recently used order, and those
+// away from the viewport are evicted once more than capacity are loaded, with
+// only their opened and flagged squares kept in packed form
+class EndlessBoard {
+  static final int MAX_FLOOD = 1 << 16;
+  long seed;
+  int minesPerChunk;
+  int capacity;
+  LinkedHashMap<Long, Chunk> chunks;
+  HashMap<Long, byte[]> stored;
+  int viewX;
+  int viewY;
+  int viewRadius;
+  long[] opened;
+  int openedCount;
+  long[][] block;
+
+  // default constructor
+  EndlessBoard(long seed, int minesPerChunk, int capacity) {
+    this.seed = seed;
+    this.minesPerChunk = minesPerChunk;
+    this.capacity = capacity;
+    this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true);
+    this.stored = new HashMap<Long, byte[]>();
+    this.viewX = 0;
+    this.viewY = 0;
+    this.viewRadius = 1;
+    this.opened = new long[64];
+    this.openedCount = 0;
+    this.block = new long[9][];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... EndlessBoard.MAX_FLOOD ...                              --int
+   * ... this.seed ...                                           --long
+   * ... this.minesPerChunk ...                                  --int
+   * ... this.capacity ...                                       --int
+   * ... this.chunks ...                                         --LinkedHashMap<Long, Chunk>
+   * ... this.stored ...                                         --HashMap<Long, byte[]>
+   * ... this.viewX ...                                          --int
+   * ... this.viewY ...                                          --int
+   * ... this.viewRadius ...                                     --int
+   * ... this.opened ...                                         --long[]
+   * ... this.openedCount ...                                    --int
+   * ... this.block ...                                          --long[][]
+   * Methods:
+   * ... EndlessBoard.pack(int a, int b) ...                     --long
+   * ... this.peek(int x, int y) ...                             --Chunk
+   * ... this.chunkAt(int x, int y) ...                          --Chunk
+   * ... this.makeChunk(int cx, int cy) ...                      --Chunk
+   * ... this.minesOf(int cx, int cy) ...                        --long[]
+   * ... EndlessBoard.mineIn(long[][] block, int lx, int ly) ... --boolean
+   * ... this.isMine(int x, int y) ...                           --boolean
+   * ... this.isRevealed(int x, int y) ...                       --boolean
+   * ... this.isFlagged(int x, int y) ...                        --boolean
+   * ... this.mineNum(int x, int y) ...                          --int
+   * ... this.toggleFlag(int x, int y) ...                       --void
+   * ... this.floodFill(int x, int y) ...                        --int
+   * ... this.setViewport(int x, int y) ...                      --void
+   * ... this.trim() ...                                         --void
+   */
+
+  // packs two ints into a long, the first in the high half
+  static long pack(int a, int b) {
+    return ((long) a << 32) | (b & 0xFFFFFFFFL);
+  }
+
+  // returns the chunk holding the square at (x, y) if it has been created and
+  // is still loaded or stored, without creating it otherwise
+  Chunk peek(int x, int y) {
+    long key = EndlessBoard.pack(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE));
+    if (!this.chunks.containsKey(key) && !this.stored.containsKey(key)) {
+      return null;
+    }
+    return this.chunkAt(x, y);
+  }
+
+  // returns the chunk holding the square at (x, y), creating it if needed
+  Chunk chunkAt(int x, int y) {
+    int cx = Math.floorDiv(x, Chunk.SIZE);
+    int cy = Math.floorDiv(y, Chunk.SIZE);
+    Chunk chunk = this.chunks.get(EndlessBoard.pack(cx, cy));
+    if (chunk == null) {
+      chunk = this.makeChunk(cx, cy);
+    }
+    return chunk;
+  }
+
+  // creates the chunk at the given chunk coordinates, counting the mines
+  // around its edge squares from the mines of the chunks next to it, and
+  // restores what the player did to it if it was evicted before; room is
+  // made for it first, so at most capacity chunks away from the viewport
+  // are ever loaded
+  Chunk makeChunk(int cx, int cy) {
+    for (int by = 0; by < 3; by++) {
+      for (int bx = 0; bx < 3; bx++) {
+        this.block[by * 3 + bx] = this.minesOf(cx + bx - 1, cy + by - 1);
+      }
+    }
+    Chunk chunk = new Chunk(cx, cy, this.block[4]);
+    for (int ly = 0; ly < Chunk.SIZE; ly++) {
+      for (int lx = 0; lx < Chunk.SIZE; lx++) {
+        if (EndlessBoard.mineIn(this.block, lx, ly)) {
+          continue;
+        }
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            if (EndlessBoard.mineIn(this.block, lx + dx, ly + dy)) {
+              count++;
+            }
+          }
+        }
+        chunk.counts[ly * Chunk.SIZE + lx] = (byte) count;
+      }
+    }
+    long key = EndlessBoard.pack(cx, cy);
+    byte[] packed = this.stored.remove(key);
+    if (packed != null) {
+      chunk.decode(packed);
+    }
+    this.trim();
+    this.chunks.put(key, chunk);
+    return chunk;
+  }
+
+  // draws the mines of the chunk at the given chunk coordinates, like
+  // Board.placeMines, leaving the squares around the origin empty so that
+  // the first click always opens
+  long[] minesOf(int cx, int cy) {
+    long[] mines = new long[Chunk.WORDS];
+    SplittableRandom draws = new SplittableRandom(this.seed * 0x9E3779B97F4A7C15L
+        ^ cx * 0xC2B2AE3D27D4EB4FL ^ cy * 0x165667B19E3779F9L);
+    int n = Chunk.SIZE * Chunk.SIZE;
+    for (int j = n - Math.min(this.minesPerChunk, n); j < n; j++) {
+      int idx = draws.nextInt(j + 1);
+      if (Board.get(mines, idx)) {
+        idx = j;
+      }
+      Board.set(mines, idx);
+    }
+    for (int y = -1; y <= 1; y++) {
+      for (int x = -1; x <= 1; x++) {
+        if (Math.floorDiv(x, Chunk.SIZE) == cx && Math.floorDiv(y, Chunk.SIZE) == cy
+            && Board.get(mines, Chunk.local(x, y))) {
+          Board.flip(mines, Chunk.local(x, y));
+        }
+      }
+    }
+    return mines;
+  }
+
+  // returns whether the square at (lx, ly), counted from the top left of the
+  // middle chunk of the given 3x3 block of mine bitsets, holds a mine
+  static boolean mineIn(long[][] block, int lx, int ly) {
+    int bx = lx < 0 ? 0 : lx < Chunk.SIZE ? 1 : 2;
+    int by = ly < 0 ? 0 : ly < Chunk.SIZE ? 1 : 2;
+    int x = lx - (bx - 1) * Chunk.SIZE;
+    int y = ly - (by - 1) * Chunk.SIZE;
+    return Board.get(block[by * 3 + bx], y * Chunk.SIZE + x);
+  }
+
+  // returns whether the square at (x, y) holds a mine
+  boolean isMine(int x, int y) {
+    return this.chunkAt(x, y).isMine(Chunk.local(x, y));
+  }
+
+  // returns whether the square at (x, y) has been opened
+  boolean isRevealed(int x, int y) {
+    return this.chunkAt(x, y).isRevealed(Chunk.local(x, y));
+  }
+
+  // returns whether the square at (x, y) has been flagged
+  boolean isFlagged(int x, int y) {
+    return this.chunkAt(x, y).isFlagged(Chunk.local(x, y));
+  }
+
+  // returns the number of mines around the square at (x, y)
+  int mineNum(int x, int y) {
+    return this.chunkAt(x, y).counts[Chunk.local(x, y)];
+  }
+
+  // flags the square at (x, y), or takes its flag away
+  void toggleFlag(int x, int y) {
+    Board.flip(this.chunkAt(x, y).flagged, Chunk.local(x, y));
+  }
+
+  // opens the square at (x, y) like Board.floodFill, queueing the packed
+  // coordinates of the opened squares in this.opened; an opening could in
+  // principle go on forever, so the fill stops after MAX_FLOOD squares and
+  // the squares at its edge are left for the player to click
+  int floodFill(int x, int y) {
+    this.openedCount = 0;
+    Chunk chunk = this.chunkAt(x, y);
+    int i = Chunk.local(x, y);
+    if (chunk.isRevealed(i) || chunk.isFlagged(i) || chunk.isMine(i)) {
+      return 0;
+    }
+    Board.set(chunk.revealed, i);
+    this.opened[0] = EndlessBoard.pack(x, y);
+    this.openedCount = 1;
+    for (int head = 0; head < this.openedCount; head++) {
+      int cx = (int) (this.opened[head] >> 32);
+      int cy = (int) this.opened[head];
+      if (this.mineNum(cx, cy) > 0) {
+        continue;
+      }
+      for (int ny = cy - 1; ny <= cy + 1; ny++) {
+        for (int nx = cx - 1; nx <= cx + 1; nx++) {
+          chunk = this.chunkAt(nx, ny);
+          i = Chunk.local(nx, ny);
+          if (chunk.isRevealed(i) || chunk.isFlagged(i)
+              || this.openedCount == EndlessBoard.MAX_FLOOD) {
+            continue;
+          }
+          Board.set(chunk.revealed, i);
+          if (this.openedCount == this.opened.length) {
+            this.opened = Arrays.copyOf(this.opened, this.openedCount * 2);
+          }
+          this.opened[this.openedCount] = EndlessBoard.pack(nx, ny);
+          this.openedCount++;
+        }
+      }
+    }
+    return this.openedCount;
+  }
+
+  // moves the viewport so that it is centered on the square at (x, y), and
+  // evicts the chunks it has left behind if too many are loaded
+  void setViewport(int x, int y) {
+    this.viewX = Math.floorDiv(x, Chunk.SIZE);
+    this.viewY = Math.floorDiv(y, Chunk.SIZE);
+    this.trim();
+  }
+
+  // evicts loaded chunks, least recently used first, until no more than
+  // capacity are loaded, skipping those within viewRadius chunks of the
+  // viewport; a chunk the player has opened or flagged squares in is packed
+  // into this.stored, and any other is dropped since it can be made again
+  // every square is looked up through chunkAt, so a chunk evicted in the
+  // middle of a flood fill is simply made again if the fill comes back to it
+  void trim() {
+    Iterator<Chunk> it = this.chunks.values().iterator();
+    while (this.chunks.size() > this.capacity && it.hasNext()) {
+      Chunk chunk = it.next();
+      if (Math.abs(chunk.cx - this.viewX) > this.viewRadius
+          || Math.abs(chunk.cy - this.viewY) > this.viewRadius) {
+        if (chunk.isTouched()) {
+          this.stored.put(EndlessBoard.pack(chunk.cx, chunk.cy), chunk.encode());
+        }
+        it.remove();
+      }
+    }
+  }
+}
+
+// represents a game on an EndlessBoard, seen through a window of cols by rows
+// tiles whose top left square is at (left, top) of the world
+class EndlessWorld extends World {
+  EndlessBoard board;
+  int cols;
+  int rows;
+  int left;
+  int top;
+  int openedTotal;
+  WorldScene scene;
+
+  // default constructor
+  EndlessWorld(EndlessBoard board, int cols, int rows) {
+    this.board = board;
+    this.cols = cols;
+    this.rows = rows;
+    this.left = -cols / 2;
+    this.top = -rows / 2;
+    this.openedTotal = 0;
+    this.scene = null;
+    this.board.viewRadius = Math.max(cols, rows) / Chunk.SIZE / 2 + 1;
+    this.board.setViewport(0, 0);
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.board ...                                          --EndlessBoard
+   * ... this.cols ...                                           --int
+   * ... this.rows ...                                           --int
+   * ... this.left ...                                           --int
+   * ... this.top ...                                            --int
+   * ... this.openedTotal ...                                    --int
+   * ... this.scene ...                                          --WorldScene
+   * Methods:
+   * ... this.makeScene() ...                                    --WorldScene
+   * ... this.onKeyEvent(String key) ...                         --void
+   * ... this.onMouseClicked(Posn pos, String buttonName) ...    --void
+   * ... this.lastScene(String msg) ...                          --WorldScene
+   */
+
+  // draws the tiles inside the window, and keeps the scene until something
+  // changes; chunks no click has reached are drawn hidden without being made
+  public WorldScene makeScene() {
+    if (this.scene == null) {
+      this.scene = this.getEmptyScene();
+      for (int row = 0; row < this.rows; row++) {
+        for (int col = 0; col < this.cols; col++) {
+          this.scene.placeImageXY(TileAtlas.tileAt(this.board, this.left + col, this.top + row),
+              20 * col + 10, 20 * row + 10);
+        }
+      }
+    }
+    return this.scene;
+  }
+
+  // moves the window by eight squares with the arrow keys
+  public void onKeyEvent(String key) {
+    if (key.equals("left")) {
+      this.left -= 8;
+    }
+    else if (key.equals("right")) {
+      this.left += 8;
+    }
+    else if (key.equals("up")) {
+      this.top -= 8;
+    }
+    else if (key.equals("down")) {
+      this.top += 8;
+    }
+    else {
+      return;
+    }
+    this.board.setViewport(this.left + this.cols / 2, this.top + this.rows / 2);
+    this.scene = null;
+  }
+
+  // opens the clicked square with the left button, and flags it with the right
+  public void onMouseClicked(Posn pos, String buttonName) {
+    int x = this.left + pos.x / 20;
+    int y = this.top + pos.y / 20;
+    if (buttonName.equals("LeftButton") && !this.board.isFlagged(x, y)) {
+      if (this.board.isMine(x, y)) {
+        this.endOfWorld("lost");
+      }
+      else {
+        this.openedTotal += this.board.floodFill(x, y);
+      }
+    }
+    else if (buttonName.equals("RightButton") && !this.board.isRevealed(x, y)) {
+      this.board.toggleFlag(x, y);
+    }
+    this.scene = null;
+  }
+
+  // shows how far the player got once a mine is opened
+  public WorldScene lastScene(String msg) {
+    WorldScene background = this.getEmptyScene();
+    background.placeImageXY(new TextImage("You Lost :(", 24, FontStyle.BOLD, Color.RED),
+        10 * this.cols, 10 * this.rows - 15);
+    background.placeImageXY(new TextImage(this.openedTotal + " squares opened", 16,
+        FontStyle.REGULAR, Color.BLACK), 10 * this.cols, 10 * this.rows + 15);
+    return background;
+  }
+}
+
+// represents a component of the game
+interface IGamePiece {
+  // determines whether this IGamePiece is a Cell or not
+  boolean isCell();
+
+  // determines whether this IGamePiece is a Mine or not
+  boolean isMine();
+  
+  // determines whether this IGamePiece is a Flag or not
+  boolean isFlag();
+
+  // draws this IGamePiece onto the background
+  WorldImage drawAt(int row, int col, WorldImage background);
+}
+
+// represents a player that works out where the mines are from the numbers
+// shown on opened cells, without ever looking at the mines themselves
+interface ISolver extends IPlayer {
+  // returns the index of a hidden cell that is certainly safe, or -1 if
+  // the numbers shown so far don't prove any hidden cell safe
+  int nextSafe(Board board);
+
+  // returns whether the cell at the given index is proved to hold a mine
+  boolean isKnownMine(int idx);
+}
+
+// represents a safe cell
+// the squares around it are the Board's to work out, so a Cell only keeps
+// the number of mines among them
+class Cell implements IGamePiece {
+  int mineNum;
+  Color color;
+  boolean isClicked;
+
+  // default constructor
+  Cell() {
+    this.mineNum = 0;
+    this.color = Color.CYAN;
+    this.isClicked = false;
+  }
+
+  // convenience constructor
+  Cell(int mineNum, boolean isClicked) {
+    this.mineNum = mineNum;
+    this.color = Color.CYAN;
+    this.isClicked = isClicked;
+  }
+  
+  /* TEMPLATE
+   * Fields:
+   * ... this.mineNum ...                                           --int
+   * ... this.color ...                                             --Color
+   * ... this.isClicked ...                                         --boolean
+   * Methods:
+   * ... this.isCell() ...                                          --boolean
+   * ... this.isMine() ...                                          --boolean
+   * ... this.isFlag() ...                                          --boolean
+   * ... this.drawAt(int row, int col, WorldImage background) ...   --WorldImage       
+   * ... this.diffColorNums(Integer n) ...                          --WorldImage
+   */
+
+  // returns true because this is a Cell
+  public boolean isCell() {
+    return true;
+  }
+
+  // returns false because this Cell is not a Mine
+  public boolean isMine() {
+    return false;
+  }
+  
+  // returns false because this Cell is not a Flag
+  public boolean isFlag() {
+    return false;
+  }
+
+  // draws this Cell onto the given background
+  // tiles drawn without an offset come from the shared TileAtlas
+  public WorldImage drawAt(int row, int col, WorldImage background) {
+    if (row == 0 && col == 0 && this.color.equals(Color.CYAN)) {
+      if (!isClicked) {
+        return TileAtlas.HIDDEN;
+      }
+      return TileAtlas.REVEALED[Math.min(Math.max(this.mineNum, 0), 8)];
+    }
+    if (!isClicked) {
       background = new OverlayOffsetImage(
-          new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK), row, col,
+          TileAtlas.OUTLINE, row, col,
           new RectangleImage(20, 20, OutlineMode.SOLID, this.color));
       return background;
     }
-    else {
-      Integer num = this.mineNum;
-      if (num != 0) {
-        background = new OverlayOffsetImage(this.diffColorNums(num), row, col,
-            new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
-                new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray)));
+    else {
+      Integer num = this.mineNum;
+      if (num != 0) {
+        background = new OverlayOffsetImage(this.diffColorNums(num), row, col, TileAtlas.OPENED);
+      }
+      else {
+        background = TileAtlas.OPENED;
+      }
+      return background;
+    }
+  }
+
+  // produce different colored text images based on the number of mines
+  WorldImage diffColorNums(Integer n) {
+    if (n >= 1 && n <= 8) {
+      return TileAtlas.NUMBERS[n];
+    }
+    return new TextImage(n.toString(), TileAtlas.numberColor(n));
+  }
+}
+
+// represents a mine
+class Mine implements IGamePiece {
+  int rowNum;
+  int colNum;
+  boolean isClicked;
+
+  // default constructor
+  Mine(int rowNum, int colNum) {
+    this.rowNum = rowNum;
+    this.colNum = colNum;
+    this.isClicked = false;
+  }
+
+  // Convenience constructor
+  Mine(int rowNum, int colNum, boolean isClicked) {
+    this.rowNum = rowNum;
+    this.colNum = colNum;
+    this.isClicked = isClicked;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.rowNum ...                                                  --int
+   * ... this.colNum ...                                                  --int
+   * ... this.isClicked ...                                               --boolean
+   * Methods:
+   * ... this.isCell() ...                                                --boolean
+   * ... this.isMine() ...                                                --boolean
+   * ... this.isFlag() ...                                                --boolean
+   * ... this.drawAt(int row, int col, WorldImage background) ...         --WorldImage
+   * ... this.sameMine(Mine m) ...                                        --boolean
+   */
+  
+  // returns false because this is not a Cell
+  public boolean isCell() {
+    return false;
+  }
+
+  // returns true because this is a Mine
+  public boolean isMine() {
+    return true;
+  }
+  
+  // returns false because this is not a Flag
+  public boolean isFlag() {
+    return false;
+  }
+
+  // draws this Mine onto the given background
+  // tiles drawn without an offset come from the shared TileAtlas
+  public WorldImage drawAt(int row, int col, WorldImage background) {
+    if (!isClicked) {
+      if (row == 0 && col == 0) {
+        return TileAtlas.HIDDEN;
+      }
+      background = new OverlayOffsetImage(
+          TileAtlas.OUTLINE, row, col,
+          new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN));
+      return background;
+    }
+    else {
+      if (row == 0 && col == 0) {
+        return TileAtlas.MINE;
+      }
+      background = new OverlayOffsetImage(new CircleImage(5, OutlineMode.SOLID, Color.RED), row,
+          col, new OverlayImage(TileAtlas.OUTLINE,
+              new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
+      return background;
+    }
+  }
+
+  // returns if this Mine is same as that Mine
+  boolean sameMine(Mine m) {
+    return this.rowNum == m.rowNum && this.colNum == m.colNum;
+  }
+}
+
+// represents a flag
+class Flag implements IGamePiece {
+  int mineNum;
+  boolean isMine;
+
+  // default constructor
+  Flag(boolean isMine) {
+    this.isMine = isMine;
+  }
+  
+  // convenience constructor
+  Flag(int mineNum) {
+    this.mineNum = mineNum;
+    this.isMine = false;
+  }
+  
+  /* TEMPLATE
+   * Fields:
+   * ... this.isMine ...                                                       --boolean
+   * Methods:
+   * ... this.isCell() ...                                                     --boolean
+   * ... this.isMine() ...                                                     --boolean
+   * ... this.isFlag() ...                                                     --boolean
+   * ... this.WorldImage drawAt(int row, int col, WorldImage background) ...   --WorldImage
+   */
+
+  // returns false because this is not a Cell
+  public boolean isCell() {
+    return false;
+  }
+
+  // returns if this flag is sitting on a Mine or not
+  public boolean isMine() {
+    return this.isMine;
+  }
+  
+  // returns true because this is a Flag
+  public boolean isFlag() {
+    return true;
+  }
+
+  // draws this Flag onto the given background
+  // tiles drawn without an offset come from the shared TileAtlas
+  public WorldImage drawAt(int row, int col, WorldImage background) {
+    if (row == 0 && col == 0) {
+      return TileAtlas.FLAG;
+    }
+    background = new OverlayOffsetImage(
+        new EquilateralTriangleImage(10, OutlineMode.SOLID, Color.YELLOW), row, col,
+        new OverlayImage(TileAtlas.OUTLINE,
+            new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
+    return background;
+  }
+}
+
+// represents the shared images of every way a tile can look
+// a tile is hidden, flagged, a revealed mine, or revealed with 0 to 8 mines
+// around it, so all of them are built once and shared by every IGamePiece
+class TileAtlas {
+  static final WorldImage OUTLINE = new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK);
+  static final WorldImage HIDDEN = new OverlayOffsetImage(TileAtlas.OUTLINE, 0, 0,
+      new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN));
+  static final WorldImage OPENED = new OverlayImage(TileAtlas.OUTLINE,
+      new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray));
+  static final WorldImage FLAG = new OverlayOffsetImage(
+      new EquilateralTriangleImage(10, OutlineMode.SOLID, Color.YELLOW), 0, 0,
+      new OverlayImage(TileAtlas.OUTLINE, new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
+  static final WorldImage MINE = new OverlayOffsetImage(
+      new CircleImage(5, OutlineMode.SOLID, Color.RED), 0, 0,
+      new OverlayImage(TileAtlas.OUTLINE, new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
+  static final WorldImage[] NUMBERS = TileAtlas.makeNumbers();
+  static final WorldImage[] REVEALED = TileAtlas.makeRevealed();
+  static final WorldImage[] HINTS = TileAtlas.makeHints();
+  static final WorldImage[] SHADES = TileAtlas.makeShades();
+  static final IdentityHashMap<WorldImage, WorldImage> SMALL = new IdentityHashMap<WorldImage, WorldImage>();
+
+  /* TEMPLATE
+   * Fields:
+   * ... TileAtlas.OUTLINE ...                                   --WorldImage
+   * ... TileAtlas.HIDDEN ...                                    --WorldImage
+   * ... TileAtlas.OPENED ...                                    --WorldImage
+   * ... TileAtlas.FLAG ...                                      --WorldImage
+   * ... TileAtlas.MINE ...                                      --WorldImage
+   * ... TileAtlas.NUMBERS ...                                   --WorldImage[]
+   * ... TileAtlas.REVEALED ...                                  --WorldImage[]
+   * ... TileAtlas.HINTS ...                                     --WorldImage[]
+   * ... TileAtlas.SHADES ...                                    --WorldImage[]
+   * ... TileAtlas.SMALL ...                                     --IdentityHashMap<WorldImage, WorldImage>
+   * Methods:
+   * ... TileAtlas.makeNumbers() ...                             --WorldImage[]
+   * ... TileAtlas.makeRevealed() ...                            --WorldImage[]
+   * ... TileAtlas.makeHints() ...                               --WorldImage[]
+   * ... TileAtlas.hintAt(double probability) ...                --WorldImage
+   * ... TileAtlas.makeShades() ...                              --WorldImage[]
+   * ... TileAtlas.shadeAt(double fraction) ...                  --WorldImage
+   * ... TileAtlas.small(WorldImage tile) ...                    --WorldImage
+   * ... TileAtlas.numberColor(int n) ...                        --Color
+   * ... TileAtlas.tileAt(Board board, int idx) ...              --WorldImage
+   * ... TileAtlas.tileAt(EndlessBoard board, int x, int y) ...  --WorldImage
+   */
+
+  // produces the number shown on a revealed cell for 0 to 8 mines around it
+  static WorldImage[] makeNumbers() {
+    WorldImage[] numbers = new WorldImage[9];
+    for (Integer n = 1; n <= 8; n++) {
+      numbers[n] = new TextImage(n.toString(), TileAtlas.numberColor(n));
+    }
+    return numbers;
+  }
+
+  // produces the tile of a revealed cell for 0 to 8 mines around it
+  static WorldImage[] makeRevealed() {
+    WorldImage[] revealed = new WorldImage[9];
+    revealed[0] = TileAtlas.OPENED;
+    for (int n = 1; n <= 8; n++) {
+      revealed[n] = new OverlayOffsetImage(TileAtlas.NUMBERS[n], 0, 0, TileAtlas.OPENED);
+    }
+    return revealed;
+  }
+
+  // produces the tiles of hidden cells shaded from green to red by their
+  // chance of being a mine, in steps of a tenth
+  static WorldImage[] makeHints() {
+    WorldImage[] hints = new WorldImage[11];
+    for (int i = 0; i <= 10; i++) {
+      Color shade = new Color(55 + 20 * i, 255 - 20 * i, 55);
+      hints[i] = new OverlayImage(TileAtlas.OUTLINE,
+          new RectangleImage(20, 20, OutlineMode.SOLID, shade));
+    }
+    return hints;
+  }
+
+  // produces the hint tile of a hidden cell with the given chance of being a mine
+  static WorldImage hintAt(double probability) {
+    return TileAtlas.HINTS[(int) Math.round(Math.min(Math.max(probability, 0), 1) * 10)];
+  }
+
+  // produces the half size tiles of blocks of the overview, shaded from cyan
+  // to gray by the share of their squares that are open, in steps of a
+  // sixteenth
+  static WorldImage[] makeShades() {
+    WorldImage[] shades = new WorldImage[17];
+    for (int i = 0; i <= 16; i++) {
+      Color shade = new Color(192 * i / 16, 255 - 63 * i / 16, 255 - 63 * i / 16);
+      shades[i] = new RectangleImage(Viewport.SMALL, Viewport.SMALL, OutlineMode.SOLID, shade);
+    }
+    return shades;
+  }
+
+  // produces the tile of a block of the overview with the given share of
+  // its squares open
+  static WorldImage shadeAt(double fraction) {
+    return TileAtlas.SHADES[(int) Math.round(Math.min(Math.max(fraction, 0), 1) * 16)];
+  }
+
+  // produces the given tile at half size, scaling each tile only once
+  // the tiles are only ever drawn from the world's thread, so the cache
+  // needs no lock
+  static WorldImage small(WorldImage tile) {
+    WorldImage small = TileAtlas.SMALL.get(tile);
+    if (small == null) {
+      small = new ScaleImage(tile, 0.5);
+      TileAtlas.SMALL.put(tile, small);
+    }
+    return small;
+  }
+
+  // produces the color of the number shown for n mines around a cell
+  static Color numberColor(int n) {
+    if (n == 1) {
+      return Color.BLUE;
+    }
+    else if (n == 2) {
+      return Color.GREEN;
+    }
+    else if (n == 3) {
+      return Color.ORANGE;
+    }
+    return Color.RED;
+  }
+
+  // produces the tile showing the square at the given index of the board,
+  // without building an IGamePiece for it
+  static WorldImage tileAt(Board board, int idx) {
+    if (board.isFlagged(idx)) {
+      return TileAtlas.FLAG;
+    }
+    else if (!board.isRevealed(idx)) {
+      return TileAtlas.HIDDEN;
+    }
+    else if (board.isMine(idx)) {
+      return TileAtlas.MINE;
+    }
+    return TileAtlas.REVEALED[board.mineNum(idx)];
+  }
+
+  // produces the tile showing the square at (x, y) of the endless board,
+  // which is hidden if its chunk hasn't been made yet
+  static WorldImage tileAt(EndlessBoard board, int x, int y) {
+    Chunk chunk = board.peek(x, y);
+    if (chunk == null) {
+      return TileAtlas.HIDDEN;
+    }
+    int i = Chunk.local(x, y);
+    if (chunk.isFlagged(i)) {
+      return TileAtlas.FLAG;
+    }
+    else if (!chunk.isRevealed(i)) {
+      return TileAtlas.HIDDEN;
+    }
+    else if (chunk.isMine(i)) {
+      return TileAtlas.MINE;
+    }
+    return TileAtlas.REVEALED[chunk.counts[i]];
+  }
+}
+
+// represents a strategy that plays the game by choosing which cells to open
+interface IPlayer {
+  // starts a new game on the given board
+  void start(Board board, long seed);
+
+  // returns the index of the next cell to open on the given board,
+  // or -1 to give up
+  int nextMove(Board board);
+
+  // tells this player that the last move opened the first count cells of opened
+  void opened(Board board, int[] opened, int count);
+}
+
+// represents a player that opens hidden cells in a random order
+class RandomPlayer implements IPlayer {
+  int[] order;
+  int next;
+  SplittableRandom rand;
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.order ...                                                  --int[]
+   * ... this.next ...                                                   --int
+   * ... this.rand ...                                                   --SplittableRandom
+   * Methods:
+   * ... this.start(Board board, long seed) ...                          --void
+   * ... this.nextMove(Board board) ...                                  --int
+   * ... this.opened(Board board, int[] opened, int count) ...           --void
+   */
+
+  // starts a new game with every cell of the board still to be tried
+  public void start(Board board, long seed) {
+    if (this.order == null || this.order.length != board.size()) {
+      this.order = new int[board.size()];
+    }
+    for (int i = 0; i < this.order.length; i++) {
+      this.order[i] = i;
+    }
+    this.next = 0;
+    this.rand = new SplittableRandom(seed);
+  }
+
+  // draws the next untried cell, shuffling the order one step at a time and
+  // skipping cells that a flood fill has already opened
+  public int nextMove(Board board) {
+    while (this.next < this.order.length) {
+      int pick = this.next + this.rand.nextInt(this.order.length - this.next);
+      int idx = this.order[pick];
+      this.order[pick] = this.order[this.next];
+      this.order[this.next] = idx;
+      this.next++;
+      if (!board.isRevealed(idx)) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  // doesn't do anything because opened cells are skipped when drawn
+  public void opened(Board board, int[] opened, int count) {
+    return;
+  }
+}
+
+// represents a set of cell indices that hands them back in last-in first-out
+// order, and ignores an index that is already in the set
+class IndexQueue {
+  int[] items;
+  int size;
+  long[] members;
+
+  // default constructor
+  IndexQueue(int cells) {
+    this.items = new int[16];
+    this.size = 0;
+    this.members = new long[Board.wordsFor(cells)];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.items ...                                                  --int[]
+   * ... this.size ...                                                   --int
+   * ... this.members ...                                                --long[]
+   * Methods:
+   * ... this.push(int idx) ...                                          --void
+   * ... this.pop() ...                                                  --int
+   * ... this.isEmpty() ...                                              --boolean
+   * ... this.contains(int idx) ...                                      --boolean
+   * ... this.clear() ...                                                --void
+   */
+
+  // adds the given index unless it is already waiting
+  void push(int idx) {
+    if (Board.get(this.members, idx)) {
+      return;
+    }
+    Board.set(this.members, idx);
+    if (this.size == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.size * 2);
+    }
+    this.items[this.size] = idx;
+    this.size++;
+  }
+
+  // removes and returns the index added last
+  int pop() {
+    this.size--;
+    int idx = this.items[this.size];
+    Board.flip(this.members, idx);
+    return idx;
+  }
+
+  // returns whether no index is waiting
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // returns whether the given index is waiting
+  boolean contains(int idx) {
+    return Board.get(this.members, idx);
+  }
+
+  // removes every waiting index
+  void clear() {
+    while (this.size > 0) {
+      this.pop();
+    }
+  }
+}
+
+// represents a solver that reads the numbers of opened cells as constraints
+// a number n on a cell says that n of its hidden neighbors are mines; the
+// solver first applies each constraint on its own, then compares pairs of
+// nearby constraints whose hidden cells are subsets of one another, and
+// only when neither proves anything does it guess the least risky cell
+// the constraints to look at are kept in work queues that are fed only by the
+// cells each move opens and by the cells each deduction settles
+class ConstraintSolver implements ISolver {
+  boolean exactGuesses;
+  MineProbability odds;
+  Board board;
+  long[] knownMines;
+  int knownMineCount;
+  long[] knownSafe;
+  IndexQueue safe;
+  IndexQueue single;
+  IndexQueue pairs;
+  int[] frontier;
+  int frontierSize;
+  long[] onFrontier;
+  int hidden;
+  int scan;
+  double[] risk;
+  int[] touched;
+  int[] unknownA;
+  int[] unknownB;
+  int[] around;
+  int[] near;
+  int[] others;
+
+  // default constructor
+  ConstraintSolver() {
+    this(false);
+  }
+
+  // convenience constructor
+  // with exactGuesses, guesses pick the cell with the lowest exact chance of
+  // being a mine instead of the lowest local estimate
+  ConstraintSolver(boolean exactGuesses) {
+    this.exactGuesses = exactGuesses;
+    this.odds = new MineProbability();
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.exactGuesses ...                                           --boolean
+   * ... this.odds ...                                                   --MineProbability
+   * ... this.board ...                                                  --Board
+   * ... this.knownMines ...                                             --long[]
+   * ... this.knownMineCount ...                                         --int
+   * ... this.knownSafe ...                                              --long[]
+   * ... this.safe ...                                                   --IndexQueue
+   * ... this.single ...                                                 --IndexQueue
+   * ... this.pairs ...                                                  --IndexQueue
+   * ... this.frontier ...                                               --int[]
+   * ... this.frontierSize ...                                           --int
+   * ... this.onFrontier ...                                             --long[]
+   * ... this.hidden ...                                                 --int
+   * ... this.scan ...                                                   --int
+   * ... this.risk ...                                                   --double[]
+   * ... this.touched ...                                                --int[]
+   * ... this.unknownA ...                                               --int[]
+   * ... this.unknownB ...                                               --int[]
+   * ... this.around ...                                                 --int[]
+   * ... this.near ...                                                   --int[]
+   * ... this.others ...                                                 --int[]
+   * Methods:
+   * ... this.start(Board board, long seed) ...                          --void
+   * ... this.nextMove(Board board) ...                                  --int
+   * ... this.opened(Board board, int[] opened, int count) ...           --void
+   * ... this.nextSafe(Board board) ...                                  --int
+   * ... this.isKnownMine(int idx) ...                                   --boolean
+   * ... this.isUnknown(int idx) ...                                     --boolean
+   * ... this.neighbors(int idx, int[] out) ...                          --int
+   * ... this.unknownsOf(int idx, int[] out) ...                         --int
+   * ... this.minesLeft(int idx) ...                                     --int
+   * ... this.markMine(int idx) ...                                      --void
+   * ... this.markSafe(int idx) ...                                      --void
+   * ... this.touchAround(int idx) ...                                   --void
+   * ... this.touch(int idx) ...                                         --void
+   * ... this.recount(int idx) ...                                       --void
+   * ... this.applySingle(int idx) ...                                   --void
+   * ... this.applyPairs(int idx) ...                                    --boolean
+   * ... this.applySubset(int a, int[] cellsA, int na,
+   *                      int b, int[] cellsB, int nb) ...               --boolean
+   * ... ConstraintSolver.contains(int[] cells, int n, int cell) ...     --boolean
+   * ... this.guess() ...                                                --int
+   * ... this.nextInterior() ...                                         --int
+   */
+
+  // starts a new game on the given board with nothing known yet
+  public void start(Board board, long seed) {
+    int cells = board.size();
+    if (this.board == null || this.board.size() != cells) {
+      this.knownMines = new long[Board.wordsFor(cells)];
+      this.knownSafe = new long[Board.wordsFor(cells)];
+      this.safe = new IndexQueue(cells);
+      this.single = new IndexQueue(cells);
+      this.pairs = new IndexQueue(cells);
+      this.frontier = new int[16];
+      this.onFrontier = new long[Board.wordsFor(cells)];
+      this.risk = new double[cells];
+      this.touched = new int[16];
+      this.unknownA = new int[ITopology.MAX];
+      this.unknownB = new int[ITopology.MAX];
+      this.around = new int[ITopology.MAX];
+      this.near = new int[ITopology.MAX];
+      this.others = new int[ITopology.MAX];
+    }
+    else {
+      Arrays.fill(this.knownMines, 0);
+      Arrays.fill(this.knownSafe, 0);
+      Arrays.fill(this.onFrontier, 0);
+      this.safe.clear();
+      this.single.clear();
+      this.pairs.clear();
+    }
+    this.board = board;
+    this.knownMineCount = 0;
+    this.frontierSize = 0;
+    this.hidden = cells;
+    this.scan = 0;
+  }
+
+  // opens a cell that is proved safe, or else guesses
+  public int nextMove(Board board) {
+    int idx = this.nextSafe(board);
+    if (idx >= 0) {
+      return idx;
+    }
+    return this.guess();
+  }
+
+  // queues the constraints changed by the opened cells: each opened number is
+  // a new constraint, and each opened neighbor of a number shrinks it
+  public void opened(Board board, int[] opened, int count) {
+    this.hidden -= count;
+    for (int i = 0; i < count; i++) {
+      int idx = opened[i];
+      if (board.mineNum(idx) > 0) {
+        this.touch(idx);
+        if (!Board.get(this.onFrontier, idx)) {
+          Board.set(this.onFrontier, idx);
+          if (this.frontierSize == this.frontier.length) {
+            this.frontier = Arrays.copyOf(this.frontier, this.frontierSize * 2);
+          }
+          this.frontier[this.frontierSize] = idx;
+          this.frontierSize++;
+        }
+      }
+      int n = this.neighbors(idx, this.around);
+      for (int k = 0; k < n; k++) {
+        this.touch(this.around[k]);
+      }
+    }
+  }
+
+  // works through the queued constraints until a hidden cell is proved safe
+  public int nextSafe(Board board) {
+    while (true) {
+      while (!this.safe.isEmpty()) {
+        int idx = this.safe.pop();
+        if (!board.isRevealed(idx)) {
+          return idx;
+        }
+      }
+      if (!this.single.isEmpty()) {
+        this.applySingle(this.single.pop());
+      }
+      else if (!this.pairs.isEmpty()) {
+        this.applyPairs(this.pairs.pop());
+      }
+      else {
+        return -1;
+      }
+    }
+  }
+
+  // returns whether the cell at the given index is proved to hold a mine
+  public boolean isKnownMine(int idx) {
+    return Board.get(this.knownMines, idx);
+  }
+
+  // returns whether nothing is known yet about the cell at the given index
+  boolean isUnknown(int idx) {
+    return !this.board.isRevealed(idx) && !this.isKnownMine(idx)
+        && !Board.get(this.knownSafe, idx);
+  }
+
+  // puts the indices of the neighbors of the given cell into out, and returns
+  // how many there are
+  int neighbors(int idx, int[] out) {
+    return this.board.neighbors(idx, out);
+  }
+
+  // puts the unknown neighbors of the given cell into out, and returns how many
+  int unknownsOf(int idx, int[] out) {
+    int n = this.neighbors(idx, this.around);
+    int unknown = 0;
+    for (int k = 0; k < n; k++) {
+      if (this.isUnknown(this.around[k])) {
+        out[unknown] = this.around[k];
+        unknown++;
+      }
+    }
+    return unknown;
+  }
+
+  // returns how many mines around the given opened cell are not yet known
+  int minesLeft(int idx) {
+    int n = this.neighbors(idx, this.around);
+    int left = this.board.mineNum(idx);
+    for (int k = 0; k < n; k++) {
+      if (this.isKnownMine(this.around[k])) {
+        left--;
+      }
+    }
+    return left;
+  }
+
+  // records that the given cell holds a mine, and requeues the numbers around it
+  void markMine(int idx) {
+    if (this.isUnknown(idx)) {
+      Board.set(this.knownMines, idx);
+      this.knownMineCount++;
+      this.touchAround(idx);
+    }
+  }
+
+  // records that the given cell is safe, and requeues the numbers around it
+  void markSafe(int idx) {
+    if (this.isUnknown(idx)) {
+      Board.set(this.knownSafe, idx);
+      this.safe.push(idx);
+      this.touchAround(idx);
+    }
+  }
+
+  // requeues the numbers around the given cell
+  void touchAround(int idx) {
+    int n = this.neighbors(idx, this.near);
+    for (int k = 0; k < n; k++) {
+      this.touch(this.near[k]);
+    }
+  }
+
+  // queues the given cell for both rules if it is an opened number
+  void touch(int idx) {
+    if (this.board.isRevealed(idx) && this.board.mineNum(idx) > 0) {
+      this.single.push(idx);
+      this.pairs.push(idx);
+    }
+  }
+
+  // requeues every opened cell around the given cell after the number of mines
+  // around them has changed, including those that are down to no mines at all
+  void recount(int idx) {
+    int n = this.neighbors(idx, this.near);
+    for (int k = 0; k < n; k++) {
+      if (this.board.isRevealed(this.near[k])) {
+        this.single.push(this.near[k]);
+        this.pairs.push(this.near[k]);
+      }
+    }
+  }
+
+  // applies the constraint of the given cell on its own: if no mines are left
+  // around it its unknown neighbors are safe, and if as many mines are left as
+  // there are unknown neighbors they are all mines
+  void applySingle(int idx) {
+    int unknown = this.unknownsOf(idx, this.unknownA);
+    if (unknown == 0) {
+      return;
+    }
+    int left = this.minesLeft(idx);
+    if (left == 0) {
+      for (int k = 0; k < unknown; k++) {
+        this.markSafe(this.unknownA[k]);
+      }
+    }
+    else if (left == unknown) {
+      for (int k = 0; k < unknown; k++) {
+        this.markMine(this.unknownA[k]);
+      }
+    }
+  }
+
+  // compares the constraint of the given cell with every opened number that
+  // shares an unknown cell with it, found among the neighbors of its unknown
+  // cells in the board's topology, and returns whether anything was proved
+  // a number next to several of those cells is compared once for each
+  boolean applyPairs(int idx) {
+    int na = this.unknownsOf(idx, this.unknownA);
+    if (na == 0) {
+      return false;
+    }
+    for (int i = 0; i < na; i++) {
+      int n = this.board.neighbors(this.unknownA[i], this.others);
+      for (int k = 0; k < n; k++) {
+        int other = this.others[k];
+        if (other == idx || !this.board.isRevealed(other) || this.board.mineNum(other) == 0) {
+          continue;
+        }
+        int nb = this.unknownsOf(other, this.unknownB);
+        if (nb > 0 && (this.applySubset(idx, this.unknownA, na, other, this.unknownB, nb)
+            || this.applySubset(other, this.unknownB, nb, idx, this.unknownA, na))) {
+          this.pairs.push(idx);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // if the unknown cells of a are a strict subset of those of b, the cells only
+  // b sees hold exactly the difference of their mines left; when that difference
+  // is 0 they are safe, and when it equals their count they are all mines
+  // returns whether anything was proved
+  boolean applySubset(int a, int[] cellsA, int na, int b, int[] cellsB, int nb) {
+    if (na >= nb) {
+      return false;
+    }
+    for (int i = 0; i < na; i++) {
+      if (!ConstraintSolver.contains(cellsB, nb, cellsA[i])) {
+        return false;
+      }
+    }
+    int diff = this.minesLeft(b) - this.minesLeft(a);
+    if (diff != 0 && diff != nb - na) {
+      return false;
+    }
+    for (int j = 0; j < nb; j++) {
+      if (!ConstraintSolver.contains(cellsA, na, cellsB[j])) {
+        if (diff == 0) {
+          this.markSafe(cellsB[j]);
+        }
+        else {
+          this.markMine(cellsB[j]);
+        }
+      }
+    }
+    return true;
+  }
+
+  // returns whether the first n items of cells include the given cell
+  static boolean contains(int[] cells, int n, int cell) {
+    for (int i = 0; i < n; i++) {
+      if (cells[i] == cell) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // picks the unknown cell least likely to be a mine: a frontier cell is given
+  // the highest share of mines left over unknown cells among the numbers next
+  // to it, and a cell away from the frontier the share of all mines left over
+  // all unknown cells; returns -1 if there is no unknown cell left
+  int guess() {
+    if (this.exactGuesses) {
+      return this.odds.compute(this.board).safest();
+    }
+    int kept = 0;
+    int touched = 0;
+    for (int i = 0; i < this.frontierSize; i++) {
+      int idx = this.frontier[i];
+      int unknown = this.unknownsOf(idx, this.unknownA);
+      if (unknown == 0) {
+        continue;
+      }
+      this.frontier[kept] = idx;
+      kept++;
+      double share = (double) this.minesLeft(idx) / unknown;
+      for (int k = 0; k < unknown; k++) {
+        int cell = this.unknownA[k];
+        if (this.risk[cell] == 0) {
+          if (touched == this.touched.length) {
+            this.touched = Arrays.copyOf(this.touched, touched * 2);
+          }
+          this.touched[touched] = cell;
+          touched++;
+        }
+        // risks are stored plus one so that 0 can mean not seen yet
+        this.risk[cell] = Math.max(this.risk[cell], 1 + share);
+      }
+    }
+    this.frontierSize = kept;
+    int best = -1;
+    double bestRisk = 2;
+    for (int i = 0; i < touched; i++) {
+      int cell = this.touched[i];
+      if (this.risk[cell] - 1 < bestRisk) {
+        bestRisk = this.risk[cell] - 1;
+        best = cell;
+      }
+      this.risk[cell] = 0;
+    }
+    int unknownLeft = this.hidden - this.knownMineCount;
+    if (unknownLeft > touched) {
+      double interiorRisk = (double) (this.board.numMines - this.knownMineCount) / unknownLeft;
+      if (interiorRisk < bestRisk) {
+        int interior = this.nextInterior();
+        if (interior >= 0) {
+          return interior;
+        }
+      }
+    }
+    return best;
+  }
+
+  // returns the next unknown cell with no opened neighbor, or -1 if none is left
+  // such cells only ever stop being interior, so the scan never goes back
+  int nextInterior() {
+    for (; this.scan < this.board.size(); this.scan++) {
+      if (this.isUnknown(this.scan)) {
+        int n = this.neighbors(this.scan, this.around);
+        boolean interior = true;
+        for (int k = 0; k < n && interior; k++) {
+          interior = !this.board.isRevealed(this.around[k]);
+        }
+        if (interior) {
+          return this.scan;
+        }
+      }
+    }
+    return -1;
+  }
+}
+
+// represents the exact chance of each hidden cell being a mine, given only the
+// numbers shown on the opened cells and the total number of mines
+// the hidden cells next to an opened number form the frontier; it is split
+// into components that share no number, and each component is counted on its
+// own by walking its cells in order while remembering only the mines still
+// needed by the numbers that are part way through (so equal partial
+// assignments are counted once); the components are then combined with the
+// cells away from the frontier, which take the mines left over in any of
+// C(cells, mines) ways
+class MineProbability {
+  static final int MAX_STATES = 1 << 16;
+  Board board;
+  int[] cellId;
+  int[] cells;
+  int cellCount;
+  int[] cons;
+  int conCount;
+  int[] conCells;
+  int[] conSize;
+  int[] cellCons;
+  int[] cellConSize;
+  int[] conNeed;
+  int settled;
+  int settledMines;
+  int[] parent;
+  int[] at;
+  int[] local;
+  double[] cellProb;
+  boolean[] cellExact;
+  double interior;
+  int interiorCells;
+  boolean exact;
+  int components;
+
+  // default constructor
+  MineProbability() {
+    this.cellId = new int[0];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.board ...                                                  --Board
+   * ... this.cellId ...                                                 --int[]
+   * ... this.cells ...                                                  --int[]
+   * ... this.cellCount ...                                              --int
+   * ... this.cons ...                                                   --int[]
+   * ... this.conCount ...                                               --int
+   * ... this.conCells ...                                               --int[]
+   * ... this.conSize ...                                                --int[]
+   * ... this.cellCons ...                                               --int[]
+   * ... this.cellConSize ...                                            --int[]
+   * ... this.conNeed ...                                                --int[]
+   * ... this.settled ...                                                --int
+   * ... this.settledMines ...                                           --int
+   * ... this.parent ...                                                 --int[]
+   * ... this.at ...                                                     --int[]
+   * ... this.local ...                                                  --int[]
+   * ... this.cellProb ...                                               --double[]
+   * ... this.cellExact ...                                              --boolean[]
+   * ... this.interior ...                                               --double
+   * ... this.interiorCells ...                                          --int
+   * ... this.exact ...                                                  --boolean
+   * ... this.components ...                                             --int
+   * Methods:
+   * ... this.compute(Board board) ...                                   --MineProbability
+   * ... this.probabilityOf(int idx) ...                                 --double
+   * ... this.safest() ...                                               --int
+   * ... this.collect() ...                                              --void
+   * ... this.settle() ...                                               --void
+   * ... this.join() ...                                                 --void
+   * ... this.find(int f) ...                                            --int
+   * ... this.solve(ArrayList<int[]> comps, int hidden) ...              --void
+   * ... this.logWeights(int m0, int m1, int free) ...                   --double[]
+   */
+
+  // works out the chance of every hidden cell of the given board being a mine
+  MineProbability compute(Board board) {
+    this.board = board;
+    if (this.cellId.length != board.size()) {
+      this.cellId = new int[board.size()];
+      Arrays.fill(this.cellId, -1);
+    }
+    else {
+      for (int i = 0; i < this.cellCount; i++) {
+        this.cellId[this.cells[i]] = -1;
+      }
+    }
+    this.collect();
+    this.settle();
+    this.join();
+    int hidden = 0;
+    for (int w = 0; w < board.revealed.length; w++) {
+      hidden += Long.bitCount(~board.revealed[w]);
+    }
+    hidden -= board.revealed.length * 64 - board.size();
+    // group the frontier cells of each component, rooted by union-find
+    ArrayList<int[]> comps = new ArrayList<int[]>();
+    int[] compOf = new int[this.cellCount];
+    int[] compSize = new int[this.cellCount];
+    Arrays.fill(compOf, -1);
+    for (int f = 0; f < this.cellCount; f++) {
+      if (!this.cellExact[f]) {
+        compSize[this.find(f)]++;
+      }
+    }
+    for (int f = 0; f < this.cellCount; f++) {
+      if (this.cellExact[f]) {
+        continue;
+      }
+      int root = this.find(f);
+      if (compOf[root] < 0) {
+        compOf[root] = comps.size();
+        comps.add(new int[compSize[root]]);
+        compSize[root] = 0;
+      }
+      comps.get(compOf[root])[compSize[root]] = f;
+      compSize[root]++;
+    }
+    this.components = comps.size();
+    this.solve(comps, hidden);
+    return this;
+  }
+
+  // returns the chance that the cell at the given index is a mine
+  double probabilityOf(int idx) {
+    if (this.board.isRevealed(idx)) {
+      return 0;
+    }
+    int f = this.cellId[idx];
+    return f >= 0 && this.cellExact[f] ? this.cellProb[f] : this.interior;
+  }
+
+  // returns the hidden cell least likely to be a mine, preferring a frontier
+  // cell on ties, or -1 if every cell is opened
+  int safest() {
+    int best = -1;
+    double bestProb = 2;
+    for (int f = 0; f < this.cellCount; f++) {
+      double p = this.probabilityOf(this.cells[f]);
+      if (p < bestProb) {
+        bestProb = p;
+        best = this.cells[f];
+      }
+    }
+    if (this.interiorCells > 0 && this.interior < bestProb) {
+      for (int idx = 0; idx < this.board.size(); idx++) {
+        if (!this.board.isRevealed(idx) && this.cellId[idx] < 0) {
+          return idx;
+        }
+      }
+    }
+    return best;
+  }
+
+  // finds the opened numbers that still touch hidden cells and the hidden
+  // cells they touch
+  void collect() {
+    Board b = this.board;
+    this.cells = new int[64];
+    this.cellCount = 0;
+    this.cons = new int[64];
+    this.conCount = 0;
+    this.conCells = new int[64 * 8];
+    this.conSize = new int[64];
+    this.cellCons = new int[64 * 8];
+    this.cellConSize = new int[64];
+    int[] around = new int[ITopology.MAX];
+    for (int idx = 0; idx < b.size(); idx++) {
+      if (!b.isRevealed(idx) || b.mineNum(idx) == 0) {
+        continue;
+      }
+      int con = -1;
+      int n = b.neighbors(idx, around);
+      for (int k = 0; k < n; k++) {
+        int next = around[k];
+        if (b.isRevealed(next)) {
+          continue;
+        }
+        if (con < 0) {
+          con = this.conCount;
+          if (con == this.cons.length) {
+            this.cons = Arrays.copyOf(this.cons, con * 2);
+            this.conSize = Arrays.copyOf(this.conSize, con * 2);
+            this.conCells = Arrays.copyOf(this.conCells, con * 16);
+          }
+          this.cons[con] = idx;
+          this.conSize[con] = 0;
+          this.conCount++;
+        }
+        int f = this.cellId[next];
+        if (f < 0) {
+          f = this.cellCount;
+          if (f == this.cells.length) {
+            this.cells = Arrays.copyOf(this.cells, f * 2);
+            this.cellConSize = Arrays.copyOf(this.cellConSize, f * 2);
+            this.cellCons = Arrays.copyOf(this.cellCons, f * 16);
+          }
+          this.cells[f] = next;
+          this.cellConSize[f] = 0;
+          this.cellId[next] = f;
+          this.cellCount++;
+        }
+        this.conCells[con * 8 + this.conSize[con]] = f;
+        this.conSize[con]++;
+        this.cellCons[f * 8 + this.cellConSize[f]] = con;
+        this.cellConSize[f]++;
+      }
+    }
+  }
+
+  // settles the cells that a single number forces: a number with no mines left
+  // to place makes its cells safe, and one with a mine left for every cell makes
+  // them all mines; settled cells leave the numbers they are in, so known mines
+  // stop chaining the whole frontier into one component
+  void settle() {
+    this.conNeed = new int[this.conCount];
+    this.cellProb = new double[this.cellCount];
+    this.cellExact = new boolean[this.cellCount];
+    this.settled = 0;
+    this.settledMines = 0;
+    int[] work = new int[this.conCount];
+    boolean[] queued = new boolean[this.conCount];
+    int top = 0;
+    for (int con = 0; con < this.conCount; con++) {
+      this.conNeed[con] = this.board.mineNum(this.cons[con]);
+      work[top] = con;
+      queued[con] = true;
+      top++;
+    }
+    while (top > 0) {
+      top--;
+      int con = work[top];
+      queued[con] = false;
+      int need = this.conNeed[con];
+      if (need != 0 && need != this.conSize[con]) {
+        continue;
+      }
+      int mine = need == 0 ? 0 : 1;
+      while (this.conSize[con] > 0) {
+        int f = this.conCells[con * 8];
+        this.cellExact[f] = true;
+        this.cellProb[f] = mine;
+        this.settled++;
+        this.settledMines += mine;
+        for (int j = 0; j < this.cellConSize[f]; j++) {
+          int other = this.cellCons[f * 8 + j];
+          int size = this.conSize[other] - 1;
+          for (int k = 0; k < size; k++) {
+            if (this.conCells[other * 8 + k] == f) {
+              this.conCells[other * 8 + k] = this.conCells[other * 8 + size];
+            }
+          }
+          this.conSize[other] = size;
+          this.conNeed[other] -= mine;
+          if (!queued[other]) {
+            work[top] = other;
+            queued[other] = true;
+            top++;
+          }
+        }
+      }
+    }
+  }
+
+  // joins the unsettled cells that share a number into one component
+  void join() {
+    this.parent = new int[this.cellCount];
+    for (int f = 0; f < this.cellCount; f++) {
+      this.parent[f] = f;
+    }
+    // the position of each cell and local index of each number in its component
+    this.at = new int[this.cellCount];
+    Arrays.fill(this.at, -1);
+    this.local = new int[this.conCount];
+    Arrays.fill(this.local, -1);
+    for (int con = 0; con < this.conCount; con++) {
+      if (this.conSize[con] == 0) {
+        continue;
+      }
+      int first = this.find(this.conCells[con * 8]);
+      for (int j = 1; j < this.conSize[con]; j++) {
+        this.parent[this.find(this.conCells[con * 8 + j])] = first;
+      }
+    }
+  }
+
+  // returns the root of the component of frontier cell f, halving paths
+  int find(int f) {
+    while (this.parent[f] != f) {
+      this.parent[f] = this.parent[this.parent[f]];
+      f = this.parent[f];
+    }
+    return f;
+  }
+
+  // counts every component, combines them with the cells away from the
+  // frontier, and fills in cellProb and interior
+  void solve(ArrayList<int[]> comps, int hidden) {
+    this.exact = true;
+    ArrayList<ComponentCount> counted = new ArrayList<ComponentCount>();
+    int free = hidden - this.settled;
+    for (int[] comp : comps) {
+      ComponentCount count = new ComponentCount(this, comp);
+      if (count.countForward()) {
+        counted.add(count);
+        free -= comp.length;
+      }
+      else {
+        this.exact = false;
+      }
+    }
+    int mines = this.board.numMines - this.settledMines;
+    int n = counted.size();
+    // prefix sums of the lowest and highest mine counts of the components
+    int[] lo = new int[n + 1];
+    int[] hi = new int[n + 1];
+    for (int c = 0; c < n; c++) {
+      lo[c + 1] = lo[c] + counted.get(c).lo;
+      hi[c + 1] = hi[c] + counted.get(c).hi;
+    }
+    // weights[m - m0] is proportional to C(free, m), the ways to put m mines
+    // on the cells away from the frontier
+    int m0 = Math.max(mines - hi[n], 0);
+    int m1 = Math.min(mines - lo[n], free);
+    boolean ignoreTotal = m0 > m1;
+    if (ignoreTotal) {
+      m0 = Math.max(mines - hi[n], 0);
+      m1 = m0;
+    }
+    double[] weights = this.logWeights(m0, m1, free);
+    // after[c][K - lo[c]] weighs the components after c for K mines before them
+    double[][] after = new double[n + 1][];
+    after[n] = new double[hi[n] - lo[n] + 1];
+    for (int k = lo[n]; k <= hi[n]; k++) {
+      int m = mines - k;
+      after[n][k - lo[n]] = ignoreTotal ? 1 : m < m0 || m > m1 ? 0 : weights[m - m0];
+    }
+    for (int c = n - 1; c >= 0; c--) {
+      ComponentCount count = counted.get(c);
+      after[c] = new double[hi[c] - lo[c] + 1];
+      for (int k = lo[c]; k <= hi[c]; k++) {
+        double sum = 0;
+        for (int j = count.lo; j <= count.hi; j++) {
+          sum += count.ways[j] * after[c + 1][k + j - lo[c + 1]];
+        }
+        after[c][k - lo[c]] = sum;
+      }
+      MineProbability.normalize(after[c]);
+    }
+    // before[K - lo[c]] weighs the components before c holding K mines
+    double[] before = new double[] { 1 };
+    for (int c = 0; c < n; c++) {
+      ComponentCount count = counted.get(c);
+      double[] weight = new double[count.cells.length + 1];
+      for (int k = count.lo; k <= count.hi; k++) {
+        double sum = 0;
+        for (int j = lo[c]; j <= hi[c]; j++) {
+          sum += before[j - lo[c]] * after[c + 1][j + k - lo[c + 1]];
+        }
+        weight[k] = sum;
+      }
+      count.countBackward(weight);
+      double[] next = new double[hi[c + 1] - lo[c + 1] + 1];
+      for (int j = lo[c]; j <= hi[c]; j++) {
+        for (int k = count.lo; k <= count.hi; k++) {
+          next[j + k - lo[c + 1]] += before[j - lo[c]] * count.ways[k];
+        }
+      }
+      MineProbability.normalize(next);
+      before = next;
+    }
+    // the cells away from the frontier share the mines left over equally
+    this.interiorCells = free;
+    double num = 0;
+    double den = 0;
+    for (int k = lo[n]; k <= hi[n]; k++) {
+      int m = mines - k;
+      double w = before[k - lo[n]] * after[n][k - lo[n]];
+      den += w;
+      num += w * Math.max(Math.min(m, free), 0);
+    }
+    this.interior = free == 0 || den == 0 ? 0 : num / den / free;
+  }
+
+  // produces weights proportional to C(free, m) for m from m0 to m1, scaled
+  // so that the largest is 1
+  double[] logWeights(int m0, int m1, int free) {
+    double[] weights = new double[m1 - m0 + 1];
+    double max = 0;
+    for (int m = m0 + 1; m <= m1; m++) {
+      // C(free, m) / C(free, m - 1) = (free - m + 1) / m
+      weights[m - m0] = weights[m - m0 - 1] + Math.log(free - m + 1) - Math.log(m);
+      max = Math.max(max, weights[m - m0]);
+    }
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = Math.exp(weights[i] - max);
+    }
+    return weights;
+  }
+
+  // scales the given weights so that the largest is 1
+  static void normalize(double[] weights) {
+    double max = 0;
+    for (double w : weights) {
+      max = Math.max(max, w);
+    }
+    if (max > 0) {
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] /= max;
+      }
+    }
+  }
+}
+
+// represents the counting of the mine layouts of one frontier component
+// the cells are walked in breadth-first order, and the state after each cell
+// is the number of mines still needed by each number that has some cells
+// before and some after it, packed 4 bits per number into a long; layers.get(i)
+// maps each state reached before cell i to the number of ways to reach it
+// with a given number of mines so far
+class ComponentCount {
+  MineProbability prob;
+  int[] cells;
+  int[] cons;
+  int[] first;
+  int[][] conAt;
+  int[][] cellCons;
+  int[][] active;
+  int[] need;
+  ArrayList<HashMap<Long, double[]>> layers;
+  double[] ways;
+  int lo;
+  int hi;
+
+  // default constructor
+  ComponentCount(MineProbability prob, int[] comp) {
+    this.prob = prob;
+    this.order(comp);
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.prob ...                                                   --MineProbability
+   * ... this.cells ...                                                  --int[]
+   * ... this.cons ...                                                   --int[]
+   * ... this.first ...                                                  --int[]
+   * ... this.conAt ...                                                  --int[][]
+   * ... this.cellCons ...                                               --int[][]
+   * ... this.active ...                                                 --int[][]
+   * ... this.need ...                                                   --int[]
+   * ... this.layers ...                                       --ArrayList<HashMap<Long, double[]>>
+   * ... this.ways ...                                                   --double[]
+   * ... this.lo ...                                                     --int
+   * ... this.hi ...                                                     --int
+   * Methods:
+   * ... this.order(int[] comp) ...                                      --void
+   * ... this.step(int i, long state, int mine) ...                      --long
+   * ... this.countForward() ...                                         --boolean
+   * ... this.countBackward(double[] weight) ...                         --void
+   */
+
+  // puts the cells of the component in breadth-first order, starting from the
+  // cell in the fewest numbers, and works out which numbers are part way
+  // through before each cell
+  void order(int[] comp) {
+    MineProbability p = this.prob;
+    int start = comp[0];
+    for (int f : comp) {
+      if (p.cellConSize[f] < p.cellConSize[start]) {
+        start = f;
+      }
+    }
+    int n = comp.length;
+    this.cells = new int[n];
+    this.cells[0] = start;
+    p.at[start] = 0;
+    int found = 1;
+    int[] conList = new int[16];
+    int conFound = 0;
+    for (int head = 0; head < found; head++) {
+      int f = this.cells[head];
+      for (int j = 0; j < p.cellConSize[f]; j++) {
+        int con = p.cellCons[f * 8 + j];
+        if (p.local[con] >= 0) {
+          continue;
+        }
+        if (conFound == conList.length) {
+          conList = Arrays.copyOf(conList, conFound * 2);
+        }
+        p.local[con] = conFound;
+        conList[conFound] = con;
+        conFound++;
+        for (int k = 0; k < p.conSize[con]; k++) {
+          int g = p.conCells[con * 8 + k];
+          if (p.at[g] < 0) {
+            p.at[g] = found;
+            this.cells[found] = g;
+            found++;
+          }
+        }
+      }
+    }
+    this.cons = Arrays.copyOf(conList, conFound);
+    this.first = new int[conFound];
+    this.conAt = new int[conFound][];
+    this.need = new int[conFound];
+    int[] last = new int[conFound];
+    for (int c = 0; c < conFound; c++) {
+      int con = this.cons[c];
+      this.conAt[c] = new int[p.conSize[con]];
+      for (int k = 0; k < p.conSize[con]; k++) {
+        this.conAt[c][k] = p.at[p.conCells[con * 8 + k]];
+      }
+      Arrays.sort(this.conAt[c]);
+      this.first[c] = this.conAt[c][0];
+      last[c] = this.conAt[c][this.conAt[c].length - 1];
+    }
+    // cellCons[i] lists the local numbers that contain cell i
+    this.cellCons = new int[n][];
+    for (int i = 0; i < n; i++) {
+      int f = this.cells[i];
+      this.cellCons[i] = new int[p.cellConSize[f]];
+      for (int j = 0; j < p.cellConSize[f]; j++) {
+        this.cellCons[i][j] = p.local[p.cellCons[f * 8 + j]];
+      }
+    }
+    // active[i] lists the numbers part way through before cell i
+    int[] opened = new int[n + 1];
+    int[] closed = new int[n + 1];
+    for (int c = 0; c < conFound; c++) {
+      if (last[c] > this.first[c]) {
+        opened[this.first[c] + 1]++;
+        closed[last[c] + 1]++;
+      }
+    }
+    this.active = new int[n + 1][];
+    int size = 0;
+    for (int i = 0; i <= n; i++) {
+      size += opened[i] - closed[i];
+      this.active[i] = new int[size];
+    }
+    int[] filled = new int[n + 1];
+    for (int c = 0; c < conFound; c++) {
+      for (int i = this.first[c] + 1; i <= last[c]; i++) {
+        this.active[i][filled[i]] = c;
+        filled[i]++;
+      }
+    }
+  }
+
+  // returns the state after deciding whether cell i is a mine, from the given
+  // state before it, or -1 if that breaks one of the numbers
+  long step(int i, long state, int mine) {
+    int[] before = this.active[i];
+    for (int s = 0; s < before.length; s++) {
+      this.need[before[s]] = (int) (state >>> (4 * s)) & 15;
+    }
+    for (int c : this.cellCons[i]) {
+      if (this.first[c] == i) {
+        this.need[c] = this.prob.conNeed[this.cons[c]];
+      }
+      this.need[c] -= mine;
+      int later = 0;
+      for (int at : this.conAt[c]) {
+        if (at > i) {
+          later++;
+        }
+      }
+      if (this.need[c] < 0 || this.need[c] > later) {
+        return -1;
+      }
+    }
+    int[] after = this.active[i + 1];
+    long next = 0;
+    for (int s = 0; s < after.length; s++) {
+      next |= (long) this.need[after[s]] << (4 * s);
+    }
+    return next;
+  }
+  // counts the layouts by walking the cells forwards, filling in ways[k] with
+  // the number of layouts with k mines; returns false if the component has too
+  // many states to count, or no layout at all
+  boolean countForward() {
+    int n = this.cells.length;
+    for (int[] a : this.active) {
+      if (a.length > 16) {
+        return false;
+      }
+    }
+    this.layers = new ArrayList<HashMap<Long, double[]>>();
+    HashMap<Long, double[]> layer = new HashMap<Long, double[]>();
+    layer.put(0L, new double[] { 1 });
+    for (int i = 0; i < n; i++) {
+      this.layers.add(layer);
+      HashMap<Long, double[]> next = new HashMap<Long, double[]>();
+      for (Map.Entry<Long, double[]> entry : layer.entrySet()) {
+        double[] ways = entry.getValue();
+        for (int mine = 0; mine <= 1; mine++) {
+          long state = this.step(i, entry.getKey(), mine);
+          if (state < 0) {
+            continue;
+          }
+          double[] sum = next.get(state);
+          if (sum == null) {
+            sum = new double[i + 2];
+            next.put(state, sum);
+          }
+          for (int k = 0; k < ways.length; k++) {
+            sum[k + mine] += ways[k];
+          }
+        }
+      }
+      if (next.size() > MineProbability.MAX_STATES) {
+        return false;
+      }
+      layer = next;
+    }
+    this.layers.add(layer);
+    this.ways = layer.get(0L);
+    if (this.ways == null) {
+      return false;
+    }
+    this.lo = 0;
+    while (this.lo < n && this.ways[this.lo] == 0) {
+      this.lo++;
+    }
+    this.hi = n;
+    while (this.hi > this.lo && this.ways[this.hi] == 0) {
+      this.hi--;
+    }
+    return true;
+  }
+
+  // walks the cells backwards carrying weight[k], the weight of this component
+  // holding k mines in total, and fills in the chance of each of its cells
+  // being a mine; after[state][a] sums the weight of every way to finish the
+  // walk from that state with a mines so far
+  void countBackward(double[] weight) {
+    int n = this.cells.length;
+    HashMap<Long, double[]> after = new HashMap<Long, double[]>();
+    after.put(0L, weight);
+    double[] mineWeight = new double[n];
+    for (int i = n - 1; i >= 0; i--) {
+      HashMap<Long, double[]> now = new HashMap<Long, double[]>();
+      for (Map.Entry<Long, double[]> entry : this.layers.get(i).entrySet()) {
+        double[] ways = entry.getValue();
+        double[] rest = new double[i + 1];
+        for (int mine = 0; mine <= 1; mine++) {
+          long state = this.step(i, entry.getKey(), mine);
+          if (state < 0) {
+            continue;
+          }
+          double[] later = after.get(state);
+          for (int a = 0; a <= i; a++) {
+            rest[a] += later[a + mine];
+            if (mine == 1) {
+              mineWeight[i] += ways[a] * later[a + 1];
+            }
+          }
+        }
+        now.put(entry.getKey(), rest);
+      }
+      after = now;
+    }
+    double total = after.get(0L)[0];
+    for (int i = 0; i < n; i++) {
+      this.prob.cellProb[this.cells[i]] = total == 0 ? 0 : mineWeight[i] / total;
+      this.prob.cellExact[this.cells[i]] = true;
+    }
+    this.layers = null;
+  }
+}
+
+// represents the combined outcome of a batch of simulated games
+class SimulationResult {
+  long games;
+  long wins;
+  long clicks;
+  long cascades;
+  long cascadeCells;
+  int maxCascade;
+  long[] cascadeSizes;
+
+  // default constructor
+  SimulationResult() {
+    this.games = 0;
+    this.wins = 0;
+    this.clicks = 0;
+    this.cascades = 0;
+    this.cascadeCells = 0;
+    this.maxCascade = 0;
+    this.cascadeSizes = new long[32];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.games ...                                                  --long
+   * ... this.wins ...                                                   --long
+   * ... this.clicks ...                                                 --long
+   * ... this.cascades ...                                               --long
+   * ... this.cascadeCells ...                                           --long
+   * ... this.maxCascade ...                                             --int
+   * ... this.cascadeSizes ...                                           --long[]
+   * Methods:
+   * ... this.addCascade(int cells) ...                                  --void
+   * ... this.merge(SimulationResult that) ...                           --SimulationResult
+   * ... this.winRate() ...                                              --double
+   * ... this.clicksPerGame() ...                                        --double
+   * ... this.meanCascade() ...                                          --double
+   */
+
+  // records a click that opened the given number of cells
+  // cascadeSizes[k] counts the clicks that opened between 2^k and 2^(k+1) - 1 cells
+  void addCascade(int cells) {
+    this.cascades++;
+    this.cascadeCells += cells;
+    this.maxCascade = Math.max(this.maxCascade, cells);
+    this.cascadeSizes[31 - Integer.numberOfLeadingZeros(Math.max(cells, 1))]++;
+  }
+
+  // adds that result into this one, and returns this one
+  SimulationResult merge(SimulationResult that) {
+    this.games += that.games;
+    this.wins += that.wins;
+    this.clicks += that.clicks;
+    this.cascades += that.cascades;
+    this.cascadeCells += that.cascadeCells;
+    this.maxCascade = Math.max(this.maxCascade, that.maxCascade);
+    for (int i = 0; i < this.cascadeSizes.length; i++) {
+      this.cascadeSizes[i] += that.cascadeSizes[i];
+    }
+    return this;
+  }
+
+  // returns the fraction of games that were won
+  double winRate() {
+    return this.games == 0 ? 0 : (double) this.wins / this.games;
+  }
+
+  // returns the average number of clicks made in a game
+  double clicksPerGame() {
+    return this.games == 0 ? 0 : (double) this.clicks / this.games;
+  }
+
+  // returns the average number of cells opened by one click
+  double meanCascade() {
+    return this.cascades == 0 ? 0 : (double) this.cascadeCells / this.cascades;
+  }
+
+  // produces a summary of this result
+  public String toString() {
+    return String.format("games %d, win rate %.4f, clicks/game %.2f, cascade mean %.2f max %d",
+        this.games, this.winRate(), this.clicksPerGame(), this.meanCascade(), this.maxCascade);
+  }
+}
+
+// plays many seeded games without drawing anything, spread over all cores
+// game i of a batch starting at firstSeed is played on the board generated
+// from seed firstSeed + i, so a batch gives the same result however it is split
+class Simulator {
+  int length;
+  int width;
+  int numMines;
+  Supplier<IPlayer> players;
+  ForkJoinPool pool;
+
+  // default constructor
+  Simulator(int length, int width, int numMines, Supplier<IPlayer> players) {
+    this(length, width, numMines, players, ForkJoinPool.commonPool());
+  }
+
+  // convenience constructor
+  Simulator(int length, int width, int numMines, Supplier<IPlayer> players, ForkJoinPool pool) {
+    this.length = length;
+    this.width = width;
+    this.numMines = numMines;
+    this.players = players;
+    this.pool = pool;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.length ...                                                 --int
+   * ... this.width ...                                                  --int
+   * ... this.numMines ...                                               --int
+   * ... this.players ...                                                --Supplier<IPlayer>
+   * ... this.pool ...                                                   --ForkJoinPool
+   * Methods:
+   * ... Simulator.main(String[] args) ...                               --void
+   * ... this.run(long firstSeed, int games) ...                         --SimulationResult
+   * ... this.playAll(long firstSeed, int games) ...                     --SimulationResult
+   * ... this.play(IPlayer player, long seed, SimulationResult result) ...  --void
+   */
+
+  // plays the games described on the command line and prints the result
+  public static void main(String[] args) {
+    int length = 16;
+    int width = 30;
+    int mines = 99;
+    int games = 100000;
+    long seed = 0;
+    Supplier<IPlayer> players = RandomPlayer::new;
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("player")) {
+        if (kv[1].equals("exact")) {
+          players = () -> new ConstraintSolver(true);
+        }
+        else {
+          players = kv[1].equals("solver") ? ConstraintSolver::new : RandomPlayer::new;
+        }
+      }
+      else if (kv[0].equals("length")) {
+        length = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("width")) {
+        width = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("mines")) {
+        mines = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("games")) {
+        games = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("seed")) {
+        seed = Long.parseLong(kv[1]);
+      }
+    }
+    Simulator sim = new Simulator(length, width, mines, players);
+    long start = System.nanoTime();
+    SimulationResult result = sim.run(seed, games);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(result);
+    System.out.println(String.format("%.0f games/s on %d threads", games / seconds,
+        sim.pool.getParallelism()));
+  }
+
+  // plays the given number of games in parallel, starting at the given seed
+  SimulationResult run(long firstSeed, int games) {
+    return this.pool.invoke(new SimulationTask(this, firstSeed, games));
+  }
+
+  // plays the given number of games one after another on the current thread
+  SimulationResult playAll(long firstSeed, int games) {
+    IPlayer player = this.players.get();
+    SimulationResult result = new SimulationResult();
+    for (int i = 0; i < games; i++) {
+      this.play(player, firstSeed + i, result);
+    }
+    return result;
+  }
+
+  // plays one game on the board generated from the given seed, and records it
+  // a game is lost on opening a mine, or if the player gives up or runs out
+  // of moves that open anything
+  void play(IPlayer player, long seed, SimulationResult result) {
+    Board board = new Board(this.length, this.width);
+    board.placeMines(this.numMines, new Random(seed));
+    board.countNeighbors();
+    player.start(board, seed);
+    int safeLeft = board.size() - Math.min(this.numMines, board.size());
+    boolean won = safeLeft == 0;
+    int clicks = 0;
+    while (!won && clicks < board.size()) {
+      int idx = player.nextMove(board);
+      if (idx < 0 || board.isMine(idx)) {
+        clicks++;
+        break;
+      }
+      clicks++;
+      int opened = board.floodFill(idx);
+      if (opened > 0) {
+        result.addCascade(opened);
+        player.opened(board, board.opened, opened);
+        safeLeft -= opened;
+        won = safeLeft == 0;
+      }
+    }
+    result.games++;
+    result.clicks += clicks;
+    if (won) {
+      result.wins++;
+    }
+  }
+}
+
+// represents a batch of simulated games that splits itself across the pool
+class SimulationTask extends RecursiveTask<SimulationResult> {
+  static final long serialVersionUID = 1L;
+  static final int BATCH = 64;
+  Simulator sim;
+  long firstSeed;
+  int games;
+
+  // default constructor
+  SimulationTask(Simulator sim, long firstSeed, int games) {
+    this.sim = sim;
+    this.firstSeed = firstSeed;
+    this.games = games;
+  }
+
+  // plays small batches directly, and splits larger ones in half
+  protected SimulationResult compute() {
+    if (this.games <= SimulationTask.BATCH) {
+      return this.sim.playAll(this.firstSeed, this.games);
+    }
+    int half = this.games / 2;
+    SimulationTask left = new SimulationTask(this.sim, this.firstSeed, half);
+    left.fork();
+    SimulationResult right =
+        new SimulationTask(this.sim, this.firstSeed + half, this.games - half).compute();
+    return right.merge(left.join());
+  }
+}
+
+// represents a maker of boards that can be solved by logic alone from a given
+// first click
+// each candidate board is played by a ConstraintSolver that never guesses;
+// when it gets stuck, one mine it can't place is moved somewhere away from
+// the opened squares and the numbers around the old spot are checked again,
+// so the solver carries on instead of starting over
+class NoGuessGenerator {
+  static final int MAX_CANDIDATES = 1024;
+  static final int MAX_LATE_REPAIRS = 8;
+  int length;
+  int width;
+  int numMines;
+  int maxRepairs;
+  ForkJoinPool pool;
+  AtomicInteger found;
+
+  // default constructor
+  NoGuessGenerator(int length, int width, int numMines) {
+    this(length, width, numMines, ForkJoinPool.commonPool());
+  }
+
+  // convenience constructor
+  NoGuessGenerator(int length, int width, int numMines, ForkJoinPool pool) {
+    this.length = length;
+    this.width = width;
+    this.numMines = numMines;
+    // a board that will come good rarely needs more than a few dozen repairs
+    // per 10000 squares; the rest mostly shuffle a last few mines back and
+    // forth, and another candidate is quicker
+    this.maxRepairs = 32 + length * width / 256;
+    this.pool = pool;
+    this.found = new AtomicInteger(Integer.MAX_VALUE);
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... NoGuessGenerator.MAX_CANDIDATES ...                             --int
+   * ... NoGuessGenerator.MAX_LATE_REPAIRS ...                           --int
+   * ... this.length ...                                                 --int
+   * ... this.width ...                                                  --int
+   * ... this.numMines ...                                               --int
+   * ... this.maxRepairs ...                                             --int
+   * ... this.pool ...                                                   --ForkJoinPool
+   * ... this.found ...                                                  --AtomicInteger
+   * Methods:
+   * ... NoGuessGenerator.main(String[] args) ...                        --void
+   * ... this.generate(long seed, int first) ...                         --Board
+   * ... this.attempt(long seed, int first, int candidate) ...           --Board
+   * ... this.repair(Board board, ConstraintSolver solver,
+   *                 SplittableRandom draws, boolean late) ...           --boolean
+   * ... this.farFrom(Board board, int idx) ...                          --boolean
+   */
+
+  // generates the board described on the command line from a first click in
+  // its center, and prints how long that took
+  public static void main(String[] args) {
+    int length = 100;
+    int width = 100;
+    int mines = 2000;
+    long seed = 0;
+    int boards = 10;
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("length")) {
+        length = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("width")) {
+        width = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("mines")) {
+        mines = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("seed")) {
+        seed = Long.parseLong(kv[1]);
+      }
+      else if (kv[0].equals("boards")) {
+        boards = Integer.parseInt(kv[1]);
+      }
+    }
+    NoGuessGenerator gen = new NoGuessGenerator(length, width, mines);
+    int first = (length / 2) * width + width / 2;
+    for (int i = 0; i < boards; i++) {
+      long start = System.nanoTime();
+      Board board = gen.generate(seed + i, first);
+      double millis = (System.nanoTime() - start) / 1e6;
+      System.out.println(String.format("seed %d: %s after %d candidates in %.1f ms",
+          seed + i, board == null ? "failed" : "solvable", gen.found.get() + 1, millis));
+    }
+  }
+
+  // produces a board that can be solved by logic alone from the given first
+  // click, or null if no candidate could be repaired
+  // the workers take the candidates in turns, and stop once a lower candidate
+  // has been solved, so the same seed always gives the same board
+  Board generate(long seed, int first) {
+    this.found.set(Integer.MAX_VALUE);
+    int workers = this.pool.getParallelism();
+    ArrayList<ForkJoinTask<Board>> tasks = new ArrayList<ForkJoinTask<Board>>();
+    for (int w = 0; w < workers; w++) {
+      tasks.add(this.pool.submit(new NoGuessTask(this, seed, first, w, workers)));
+    }
+    Board best = null;
+    int bestCandidate = Integer.MAX_VALUE;
+    for (int w = 0; w < workers; w++) {
+      Board board = tasks.get(w).join();
+      // each worker returns its lowest solved candidate, and only the worker
+      // holding candidate found can have solved it
+      if (board != null && Math.floorMod(this.found.get(), workers) == w) {
+        best = board;
+        bestCandidate = this.found.get();
+      }
+    }
+    if (bestCandidate == Integer.MAX_VALUE) {
+      this.found.set(-1);
+    }
+    return best;
+  }
+
+  // plays the given candidate board from the first click without guessing,
+  // repairing it whenever the solver gets stuck; a board that needed repairs
+  // is played once more from the start, so only a board solved with no help
+  // at all is returned, with every square hidden again; returns null if the
+  // repairs run out
+  Board attempt(long seed, int first, int candidate) {
+    long mix = seed * 0x9E3779B97F4A7C15L + candidate;
+    Board board = new Board(this.length, this.width);
+    board.placeMines(this.numMines, new Random(mix), first);
+    board.countNeighbors();
+    ConstraintSolver solver = new ConstraintSolver();
+    SplittableRandom draws = new SplittableRandom(mix);
+    int repairs = 0;
+    int late = 0;
+    boolean clean = false;
+    while (!clean) {
+      clean = true;
+      Arrays.fill(board.revealed, 0);
+      board.recount();
+      solver.start(board, mix);
+      int safeLeft = board.size() - board.numMines;
+      int idx = first;
+      while (true) {
+        int opened = board.floodFill(idx);
+        solver.opened(board, board.opened, opened);
+        safeLeft -= opened;
+        if (safeLeft == 0) {
+          break;
+        }
+        idx = solver.nextSafe(board);
+        while (idx < 0) {
+          if (repairs == this.maxRepairs) {
+            return null;
+          }
+          if (!this.repair(board, solver, draws, false)) {
+            // once nothing is left away from the opened squares, the last few
+            // mines tend to be swapped back and forth, so only a few such
+            // repairs are tried
+            if (late == NoGuessGenerator.MAX_LATE_REPAIRS
+                || !this.repair(board, solver, draws, true)) {
+              return null;
+            }
+            late++;
+          }
+          repairs++;
+          clean = false;
+          idx = solver.nextSafe(board);
+        }
+      }
+    }
+    Arrays.fill(board.revealed, 0);
+    board.recount();
+    return board;
+  }
+
+  // moves a mine next to the opened squares that the solver couldn't place to
+  // a random empty square away from them, or if late to any hidden empty
+  // square the solver knows nothing about, and requeues the numbers around
+  // both spots; returns false if there is no such mine or square
+  // the solver knew nothing about either spot, so everything it proved
+  // still holds
+  boolean repair(Board board, ConstraintSolver solver, SplittableRandom draws, boolean late) {
+    int from = -1;
+    int seen = 0;
+    for (int i = 0; i < solver.frontierSize; i++) {
+      int n = solver.neighbors(solver.frontier[i], solver.around);
+      for (int k = 0; k < n; k++) {
+        int cell = solver.around[k];
+        if (board.isMine(cell) && solver.isUnknown(cell)) {
+          // keeps each mine seen so far with equal chance
+          seen++;
+          if (draws.nextInt(seen) == 0) {
+            from = cell;
+          }
+        }
+      }
+    }
+    if (from < 0) {
+      return false;
+    }
+    int size = board.size();
+    int to = -1;
+    for (int tries = 0; tries < 64 && to < 0 && !late; tries++) {
+      int pick = draws.nextInt(size);
+      if (this.farFrom(board, pick)) {
+        to = pick;
+      }
+    }
+    int start = draws.nextInt(size);
+    for (int i = 0; i < size && to < 0; i++) {
+      int pick = (start + i) % size;
+      if (late ? !board.isMine(pick) && solver.isUnknown(pick) : this.farFrom(board, pick)) {
+        to = pick;
+      }
+    }
+    if (to < 0) {
+      return false;
+    }
+    board.moveMine(from, to);
+    solver.recount(from);
+    solver.recount(to);
+    return true;
+  }
+
+  // returns whether the given square is hidden, empty, and has no opened
+  // square around it
+  boolean farFrom(Board board, int idx) {
+    if (board.isMine(idx) || board.isRevealed(idx)) {
+      return false;
+    }
+    int n = board.neighbors(idx, board.around);
+    for (int k = 0; k < n; k++) {
+      if (board.isRevealed(board.around[k])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+// represents one worker of a NoGuessGenerator, which tries every stride-th
+// candidate from its own first one
+class NoGuessTask extends RecursiveTask<Board> {
+  static final long serialVersionUID = 1L;
+  NoGuessGenerator gen;
+  long seed;
+  int first;
+  int candidate;
+  int stride;
+
+  // default constructor
+  NoGuessTask(NoGuessGenerator gen, long seed, int first, int candidate, int stride) {
+    this.gen = gen;
+    this.seed = seed;
+    this.first = first;
+    this.candidate = candidate;
+    this.stride = stride;
+  }
+
+  // tries candidates until one is solved or a lower one has been solved by
+  // another worker, and returns the board of the solved one, if any
+  protected Board compute() {
+    for (int k = this.candidate; k < NoGuessGenerator.MAX_CANDIDATES
+        && k < this.gen.found.get(); k += this.stride) {
+      Board board = this.gen.attempt(this.seed, this.first, k);
+      if (board != null) {
+        this.gen.found.accumulateAndGet(k, Math::min);
+        return board;
+      }
+    }
+    return null;
+  }
+}
+
+// represents the connected groups of marked squares of a board, found one
+// row at a time so that only two rows of labels are ever held
+// the marked squares of the row above carry a label each, one per group they
+// belong to; the squares marked in the new row are joined, in a union-find
+// over those labels and the row's own squares, to their marked neighbors to
+// the left and in the row above, corners included
+// a group of the row above that no square of the new row joined is finished:
+// its size is added up, and its label is free for the next row
+class StripLabeler {
+  int width;
+  int[] above;
+  int labels;
+  boolean[] marked;
+  int[] parent;
+  long[] size;
+  long[] nextSize;
+  int[] relabel;
+  boolean[] live;
+  long groups;
+  long cells;
+  long largest;
+
+  // default constructor
+  StripLabeler(int width) {
+    this.width = width;
+    this.above = new int[width];
+    Arrays.fill(this.above, -1);
+    this.labels = 0;
+    this.marked = new boolean[width];
+    this.parent = new int[2 * width];
+    this.size = new long[2 * width];
+    this.nextSize = new long[2 * width];
+    this.relabel = new int[2 * width];
+    Arrays.fill(this.relabel, -1);
+    this.live = new boolean[2 * width];
+    this.groups = 0;
+    this.cells = 0;
+    this.largest = 0;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.width ...                                          --int
+   * ... this.above ...                                          --int[]
+   * ... this.labels ...                                         --int
+   * ... this.marked ...                                         --boolean[]
+   * ... this.parent ...                                         --int[]
+   * ... this.size ...                                           --long[]
+   * ... this.nextSize ...                                       --long[]
+   * ... this.relabel ...                                        --int[]
+   * ... this.live ...                                           --boolean[]
+   * ... this.groups ...                                         --long
+   * ... this.cells ...                                          --long
+   * ... this.largest ...                                        --long
+   * Methods:
+   * ... this.mark(int col) ...                                  --void
+   * ... this.endRow() ...                                       --void
+   * ... this.finish() ...                                       --void
+   * ... this.find(int node) ...                                 --int
+   * ... this.union(int a, int b) ...                            --void
+   * ... this.close(long groupSize) ...                          --void
+   */
+
+  // marks the square in the given column of the current row, which must be
+  // marked from left to right
+  // nodes below this.width are the labels of the row above, and node
+  // this.width + col is the square in column col of the current row
+  void mark(int col) {
+    int node = this.width + col;
+    this.parent[node] = node;
+    this.size[node] = 1;
+    this.marked[col] = true;
+    if (col > 0 && this.marked[col - 1]) {
+      this.union(node, node - 1);
+    }
+    for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, this.width - 1); c++) {
+      if (this.above[c] >= 0) {
+        this.union(node, this.above[c]);
+      }
+    }
+  }
+
+  // finishes the current row: closes the groups of the row above that it
+  // didn't reach, and labels the groups it reached afresh for the next row
+  void endRow() {
+    for (int col = 0; col < this.width; col++) {
+      if (this.marked[col]) {
+        this.live[this.find(this.width + col)] = true;
+      }
+    }
+    for (int label = 0; label < this.labels; label++) {
+      if (this.parent[label] == label && !this.live[label]) {
+        this.close(this.size[label]);
+      }
+    }
+    int next = 0;
+    for (int col = 0; col < this.width; col++) {
+      if (!this.marked[col]) {
+        this.above[col] = -1;
+        continue;
+      }
+      int root = this.find(this.width + col);
+      if (this.relabel[root] < 0) {
+        this.relabel[root] = next;
+        this.nextSize[next] = this.size[root];
+        next++;
+      }
+      this.above[col] = this.relabel[root];
+    }
+    for (int node = 0; node < 2 * this.width; node++) {
+      this.relabel[node] = -1;
+      this.live[node] = false;
+    }
+    long[] swap = this.size;
+    this.size = this.nextSize;
+    this.nextSize = swap;
+    for (int label = 0; label < next; label++) {
+      this.parent[label] = label;
+    }
+    this.labels = next;
+    Arrays.fill(this.marked, false);
+  }
+
+  // closes every group still open, once the last row has ended
+  void finish() {
+    for (int label = 0; label < this.labels; label++) {
+      this.close(this.size[label]);
+    }
+    this.labels = 0;
+    Arrays.fill(this.above, -1);
+  }
+
+  // returns the root of the given node, halving the path to it on the way
+  int find(int node) {
+    while (this.parent[node] != node) {
+      this.parent[node] = this.parent[this.parent[node]];
+      node = this.parent[node];
+    }
+    return node;
+  }
+
+  // joins the groups of the two given nodes, under the larger one
+  void union(int a, int b) {
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra == rb) {
+      return;
+    }
+    if (this.size[ra] < this.size[rb]) {
+      int swap = ra;
+      ra = rb;
+      rb = swap;
+    }
+    this.parent[rb] = ra;
+    this.size[ra] += this.size[rb];
+  }
+
+  // counts a finished group of the given number of squares
+  void close(long groupSize) {
+    this.groups++;
+    this.cells += groupSize;
+    this.largest = Math.max(this.largest, groupSize);
+  }
+}
+
+// represents how hard a board is, measured in one pass down its rows:
+//   3BV      the fewest clicks that clear it, one per opening plus one per
+//            number that no opening reaches
+//   openings the groups of touching squares with no mines around, each
+//            opened by a single click; openingCells counts those squares,
+//            not the numbers around them
+//   islands  the groups of touching numbers that no opening reaches
+// the counts are worked out from the mines three rows at a time, and the
+// groups are found by a StripLabeler each, so the pass needs O(width) memory
+// on top of the board, and the board needs no counts of its own
+class BoardStats {
+  static final int WORK = 1 << 16;
+  long seed;
+  int length;
+  int width;
+  int mines;
+  int bbbv;
+  int openings;
+  int openingCells;
+  int largestOpening;
+  int islands;
+  int islandCells;
+  int largestIsland;
+  int[] counts;
+
+  // default constructor
+  BoardStats(long seed, int length, int width) {
+    this.seed = seed;
+    this.length = length;
+    this.width = width;
+    this.mines = 0;
+    this.bbbv = 0;
+    this.openings = 0;
+    this.openingCells = 0;
+    this.largestOpening = 0;
+    this.islands = 0;
+    this.islandCells = 0;
+    this.largestIsland = 0;
+    this.counts = new int[9];
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... BoardStats.WORK ...                                     --int
+   * ... this.seed ...                                           --long
+   * ... this.length ...                                         --int
+   * ... this.width ...                                          --int
+   * ... this.mines ...                                          --int
+   * ... this.bbbv ...                                           --int
+   * ... this.openings ...                                       --int
+   * ... this.openingCells ...                                   --int
+   * ... this.largestOpening ...                                 --int
+   * ... this.islands ...                                        --int
+   * ... this.islandCells ...                                    --int
+   * ... this.largestIsland ...                                  --int
+   * ... this.counts ...                                         --int[]
+   * Methods:
+   * ... BoardStats.main(String[] args) ...                      --void
+   * ... BoardStats.of(Board board, long seed) ...               --BoardStats
+   * ... BoardStats.run(int length, int width, int numMines,
+   *                    long firstSeed, int boards,
+   *                    ForkJoinPool pool) ...                   --BoardStats[]
+   * ... BoardStats.countRow(Board board, int row, byte[] bits,
+   *                         byte[][] sums, byte[] out) ...      --void
+   * ... BoardStats.nearZero(byte[] row, int col) ...            --boolean
+   * ... this.toString() ...                                     --String
+   */
+
+  // measures boards dealt from a run of seeds, writes them to a file, and
+  // prints the averages; run it with
+  //   java -Djava.awt.headless=true BoardStats length=16 width=30 mines=99
+  //       boards=100000 seed=0 out=stats.msst
+  public static void main(String[] args) throws IOException {
+    int length = 16;
+    int width = 30;
+    int mines = 99;
+    int boards = 100000;
+    long seed = 0;
+    Path out = Paths.get("stats.msst");
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("length")) {
+        length = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("width")) {
+        width = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("mines")) {
+        mines = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("boards")) {
+        boards = Integer.parseInt(kv[1]);
+      }
+      else if (kv[0].equals("seed")) {
+        seed = Long.parseLong(kv[1]);
+      }
+      else if (kv[0].equals("out")) {
+        out = Paths.get(kv[1]);
+      }
+    }
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    long start = System.nanoTime();
+    BoardStats[] stats = BoardStats.run(length, width, mines, seed, boards, pool);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    StatsFile.save(stats, out);
+    double bbbv = 0;
+    double openings = 0;
+    double islands = 0;
+    for (BoardStats s : stats) {
+      bbbv += s.bbbv;
+      openings += s.openings;
+      islands += s.islands;
+    }
+    System.out.println(String.format("mean 3BV %.2f, openings %.2f, islands %.2f",
+        bbbv / boards, openings / boards, islands / boards));
+    System.out.println(String.format("%.0f boards/s on %d threads, written to %s",
+        boards / seconds, pool.getParallelism(), out));
+  }
+
+  // measures the given board of a plain grid from its mines alone
+  static BoardStats of(Board board, long seed) {
+    BoardStats stats = new BoardStats(seed, board.length, board.width);
+    int width = board.width;
+    StripLabeler zeros = new StripLabeler(width);
+    StripLabeler numbers = new StripLabeler(width);
+    byte[] bits = new byte[width + 2];
+    byte[][] sums = new byte[][] {new byte[width], new byte[width], new byte[width]};
+    byte[] up = new byte[width];
+    byte[] on = new byte[width];
+    byte[] down = new byte[width];
+    Arrays.fill(up, (byte) -1);
+    if (board.length > 0) {
+      board.rowSums(0, bits, sums[1]);
+      if (board.length > 1) {
+        board.rowSums(1, bits, sums[2]);
+      }
+      BoardStats.countRow(board, 0, bits, sums, on);
+    }
+    int isolated = 0;
+    for (int r = 0; r < board.length; r++) {
+      if (r + 1 < board.length) {
+        BoardStats.countRow(board, r + 1, bits, sums, down);
       }
       else {
-        background = new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
-            new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray));
+        Arrays.fill(down, (byte) -1);
       }
-      return background;
+      for (int c = 0; c < width; c++) {
+        int count = on[c];
+        if (count < 0) {
+          stats.mines++;
+          continue;
+        }
+        stats.counts[count]++;
+        if (count == 0) {
+          zeros.mark(c);
+        }
+        else if (!BoardStats.nearZero(up, c) && !BoardStats.nearZero(on, c)
+            && !BoardStats.nearZero(down, c)) {
+          isolated++;
+          numbers.mark(c);
+        }
+      }
+      zeros.endRow();
+      numbers.endRow();
+      byte[] done = up;
+      up = on;
+      on = down;
+      down = done;
     }
+    zeros.finish();
+    numbers.finish();
+    stats.openings = (int) zeros.groups;
+    stats.openingCells = (int) zeros.cells;
+    stats.largestOpening = (int) zeros.largest;
+    stats.islands = (int) numbers.groups;
+    stats.islandCells = (int) numbers.cells;
+    stats.largestIsland = (int) numbers.largest;
+    stats.bbbv = stats.openings + isolated;
+    return stats;
   }
 
-  // produce different colored text images based on the number of mines
-  WorldImage diffColorNums(Integer n) {
-    if (n == 1) {
-      return new TextImage(n.toString(), Color.BLUE);
+  // puts the counts of the given row into out, with -1 for mines, given the
+  // row sums of the rows above it, on it and below it in sums, and moves
+  // sums down a row for the next one
+  // bits is left holding the mines of the row two below, and is only
+  // scratch to the caller
+  static void countRow(Board board, int row, byte[] bits, byte[][] sums, byte[] out) {
+    if (row == 0) {
+      Arrays.fill(sums[0], (byte) 0);
     }
-    else if (n == 2) {
-      return new TextImage(n.toString(), Color.GREEN);
+    int base = row * board.width;
+    for (int c = 0; c < board.width; c++) {
+      int idx = base + c;
+      boolean mine = (board.mines[idx >>> 6] >>> idx & 1L) != 0;
+      out[c] = mine ? -1 : (byte) (sums[0][c] + sums[1][c] + sums[2][c]);
     }
-    else if (n == 3) {
-      return new TextImage(n.toString(), Color.ORANGE);
+    byte[] done = sums[0];
+    sums[0] = sums[1];
+    sums[1] = sums[2];
+    sums[2] = done;
+    if (row + 2 < board.length) {
+      board.rowSums(row + 2, bits, sums[2]);
+    }
+    else {
+      Arrays.fill(sums[2], (byte) 0);
     }
-    return new TextImage(n.toString(), Color.RED);
+  }
+
+  // returns whether the given row has a square with no mines around it in
+  // the given column or next to it
+  static boolean nearZero(byte[] row, int col) {
+    return row[col] == 0 || (col > 0 && row[col - 1] == 0)
+        || (col + 1 < row.length && row[col + 1] == 0);
+  }
+
+  // measures the boards dealt from seeds firstSeed up to firstSeed + boards,
+  // as Simulator deals them, in parallel on the given pool
+  static BoardStats[] run(int length, int width, int numMines, long firstSeed, int boards,
+      ForkJoinPool pool) {
+    BoardStats[] stats = new BoardStats[boards];
+    int batch = Math.max(1, BoardStats.WORK / Math.max(1, length * width));
+    pool.invoke(new StatsTask(stats, length, width, numMines, firstSeed, 0, boards, batch));
+    return stats;
+  }
+
+  // produces the measures of this board on one line
+  public String toString() {
+    return String.format("seed %d: 3BV %d, %d openings of %d squares (largest %d), "
+        + "%d islands of %d squares (largest %d), %d mines, counts %s", this.seed, this.bbbv,
+        this.openings, this.openingCells, this.largestOpening, this.islands,
+        this.islandCells, this.largestIsland, this.mines, Arrays.toString(this.counts));
   }
 }
 
-// represents a mine
-class Mine implements IGamePiece {
-  int rowNum;
-  int colNum;
-  boolean isClicked;
+// represents the measuring of a run of boards into slots of an array, which
+// splits itself across the pool
+class StatsTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+  BoardStats[] stats;
+  int length;
+  int width;
+  int numMines;
+  long firstSeed;
+  int from;
+  int to;
+  int batch;
 
   // default constructor
-  Mine(int rowNum, int colNum) {
-    this.rowNum = rowNum;
-    this.colNum = colNum;
-    this.isClicked = false;
+  StatsTask(BoardStats[] stats, int length, int width, int numMines, long firstSeed,
+      int from, int to, int batch) {
+    this.stats = stats;
+    this.length = length;
+    this.width = width;
+    this.numMines = numMines;
+    this.firstSeed = firstSeed;
+    this.from = from;
+    this.to = to;
+    this.batch = batch;
   }
 
-  // Convenience constructor
-  Mine(int rowNum, int colNum, boolean isClicked) {
-    this.rowNum = rowNum;
-    this.colNum = colNum;
-    this.isClicked = isClicked;
+  // measures small runs directly, and splits larger ones in half
+  protected void compute() {
+    if (this.to - this.from <= this.batch) {
+      for (int i = this.from; i < this.to; i++) {
+        long seed = this.firstSeed + i;
+        Board board = new Board(this.length, this.width);
+        board.placeMines(this.numMines, new Random(seed));
+        this.stats[i] = BoardStats.of(board, seed);
+      }
+      return;
+    }
+    int half = (this.from + this.to) >>> 1;
+    StatsTask left = new StatsTask(this.stats, this.length, this.width, this.numMines,
+        this.firstSeed, this.from, half, this.batch);
+    left.fork();
+    new StatsTask(this.stats, this.length, this.width, this.numMines, this.firstSeed, half,
+        this.to, this.batch).compute();
+    left.join();
   }
+}
+
+// represents the columnar file that BoardStats are written to for analysis
+// elsewhere: each measure is stored as one contiguous column of all the
+// boards, so a reader can map the file and scan a single measure without
+// touching the others
+// all numbers are little-endian: a header of magic "MSST", version, number
+// of boards and number of columns, then the column names as length-prefixed
+// UTF-8 strings, then the seed column of longs, then each int column in the
+// order of StatsFile.COLUMNS
+class StatsFile {
+  static final int MAGIC = 0x5453534D;
+  static final int VERSION = 1;
+  static final String[] COLUMNS = new String[] {"seed", "length", "width", "mines", "bbbv",
+      "openings", "openingCells", "largestOpening", "islands", "islandCells", "largestIsland",
+      "count0", "count1", "count2", "count3", "count4", "count5", "count6", "count7",
+      "count8"};
 
   /* TEMPLATE
    * Fields:
-   * ... this.rowNum ...                                                  --int
-   * ... this.colNum ...                                                  --int
-   * ... this.isClicked ...                                               --boolean
+   * ... StatsFile.MAGIC ...                                     --int
+   * ... StatsFile.VERSION ...                                   --int
+   * ... StatsFile.COLUMNS ...                                   --String[]
    * Methods:
-   * ... this.addNeighbor(IGamePiece piece) ...                           --void
-   * ... this.isCell() ...                                                --boolean
-   * ... this.isMine() ...                                                --boolean
-   * ... this.isFlag() ...                                                --boolean
-   * ... this.countNeighbor() ...                                         --void
-   * ... this.drawAt(int row, int col, WorldImage background) ...         --WorldImage
-   * ... this.sameMine(Mine m) ...                                        --boolean
+   * ... StatsFile.save(BoardStats[] stats, Path path) ...       --void
+   * ... StatsFile.load(Path path) ...                           --BoardStats[]
+   * ... StatsFile.get(BoardStats stats, int column) ...         --int
+   * ... StatsFile.set(BoardStats stats, int column, int value) ... --void
    */
-  
-  // doesn't do anything because this Mine doesn't have a list of neighbors
-  public void addNeighbor(IGamePiece piece) {
-    return;
+
+  // writes the given measures to the file at the given path, replacing it
+  static void save(BoardStats[] stats, Path path) throws IOException {
+    byte[][] names = new byte[StatsFile.COLUMNS.length][];
+    long size = 16L + 8L * stats.length + 4L * stats.length * (names.length - 1);
+    for (int i = 0; i < names.length; i++) {
+      names[i] = StatsFile.COLUMNS[i].getBytes(StandardCharsets.UTF_8);
+      size += 4 + names[i].length;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      map.putInt(StatsFile.MAGIC).putInt(StatsFile.VERSION);
+      map.putInt(stats.length).putInt(names.length);
+      for (byte[] name : names) {
+        map.putInt(name.length).put(name);
+      }
+      for (BoardStats s : stats) {
+        map.putLong(s.seed);
+      }
+      for (int column = 1; column < names.length; column++) {
+        for (BoardStats s : stats) {
+          map.putInt(StatsFile.get(s, column));
+        }
+      }
+    }
   }
-  
-  // returns false because this is not a Cell
-  public boolean isCell() {
-    return false;
+
+  // reads back the measures written by save
+  static BoardStats[] load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      if (channel.size() < 16 || map.getInt() != StatsFile.MAGIC) {
+        throw new IOException("not a board statistics file");
+      }
+      int version = map.getInt();
+      if (version != StatsFile.VERSION) {
+        throw new IOException("unsupported board statistics version " + version);
+      }
+      int rows = map.getInt();
+      int columns = map.getInt();
+      if (columns != StatsFile.COLUMNS.length) {
+        throw new IOException("unexpected number of columns " + columns);
+      }
+      for (int i = 0; i < columns; i++) {
+        int name = map.getInt();
+        map.position(map.position() + name);
+      }
+      BoardStats[] stats = new BoardStats[rows];
+      for (int i = 0; i < rows; i++) {
+        stats[i] = new BoardStats(map.getLong(), 0, 0);
+      }
+      for (int column = 1; column < columns; column++) {
+        for (BoardStats s : stats) {
+          StatsFile.set(s, column, map.getInt());
+        }
+      }
+      return stats;
+    }
   }
 
-  // returns true because this is a Mine
-  public boolean isMine() {
-    return true;
+  // returns the int measure of the given column of StatsFile.COLUMNS
+  static int get(BoardStats stats, int column) {
+    if (column == 1) {
+      return stats.length;
+    }
+    else if (column == 2) {
+      return stats.width;
+    }
+    else if (column == 3) {
+      return stats.mines;
+    }
+    else if (column == 4) {
+      return stats.bbbv;
+    }
+    else if (column == 5) {
+      return stats.openings;
+    }
+    else if (column == 6) {
+      return stats.openingCells;
+    }
+    else if (column == 7) {
+      return stats.largestOpening;
+    }
+    else if (column == 8) {
+      return stats.islands;
+    }
+    else if (column == 9) {
+      return stats.islandCells;
+    }
+    else if (column == 10) {
+      return stats.largestIsland;
+    }
+    else {
+      return stats.counts[column - 11];
+    }
   }
-  
-  // returns false because this is not a Flag
-  public boolean isFlag() {
-    return false;
+
+  // sets the int measure of the given column of StatsFile.COLUMNS
+  static void set(BoardStats stats, int column, int value) {
+    if (column == 1) {
+      stats.length = value;
+    }
+    else if (column == 2) {
+      stats.width = value;
+    }
+    else if (column == 3) {
+      stats.mines = value;
+    }
+    else if (column == 4) {
+      stats.bbbv = value;
+    }
+    else if (column == 5) {
+      stats.openings = value;
+    }
+    else if (column == 6) {
+      stats.openingCells = value;
+    }
+    else if (column == 7) {
+      stats.largestOpening = value;
+    }
+    else if (column == 8) {
+      stats.islands = value;
+    }
+    else if (column == 9) {
+      stats.islandCells = value;
+    }
+    else if (column == 10) {
+      stats.largestIsland = value;
+    }
+    else {
+      stats.counts[column - 11] = value;
+    }
   }
+}
 
-  // doesn't do anything because it doesn't have a list of neighbors
-  // nor a number of Mines
-  public void countNeighbor() {
-    return;
+// represents a lock-free histogram of non-negative numbers, such as
+// nanoseconds or squares, kept in 64 buckets by power of two: bucket b
+// counts the values from 2^(b-1) up to 2^b - 1, and bucket 0 counts zeros
+// recording is a few atomic adds with no lock or boxing, so it can be left
+// on in the hot paths of the game; the total, the maximum and the buckets
+// share one array, in that order, so that a value touches as few cache
+// lines as possible, and the count is the sum of the buckets
+class Histogram {
+  static final int TOTAL = 0;
+  static final int MAX = 1;
+  static final int BUCKETS = 2;
+  String name;
+  AtomicLongArray cells;
+
+  // default constructor
+  Histogram(String name) {
+    this.name = name;
+    this.cells = new AtomicLongArray(Histogram.BUCKETS + 64);
   }
 
-  // draws this Mine onto the given background
-  public WorldImage drawAt(int row, int col, WorldImage background) {
-    if (!isClicked) {
-      background = new OverlayOffsetImage(
-          new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK), row, col,
-          new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN));
-      return background;
+  /* TEMPLATE
+   * Fields:
+   * ... Histogram.TOTAL ...                                     --int
+   * ... Histogram.MAX ...                                       --int
+   * ... Histogram.BUCKETS ...                                   --int
+   * ... this.name ...                                           --String
+   * ... this.cells ...                                          --AtomicLongArray
+   * Methods:
+   * ... this.record(long value) ...                             --void
+   * ... this.snapshot() ...                                     --HistogramSnapshot
+   */
+
+  // counts the given value, treating negative ones as 0
+  void record(long value) {
+    long v = Math.max(0, value);
+    this.cells.getAndIncrement(Histogram.BUCKETS + (64 - Long.numberOfLeadingZeros(v) & 63));
+    this.cells.getAndAdd(Histogram.TOTAL, v);
+    long seen = this.cells.get(Histogram.MAX);
+    while (v > seen && !this.cells.compareAndSet(Histogram.MAX, seen, v)) {
+      seen = this.cells.get(Histogram.MAX);
     }
-    else {
-      background = new OverlayOffsetImage(new CircleImage(5, OutlineMode.SOLID, Color.RED), row,
-          col, new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
-              new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
-      return background;
+  }
+
+  // copies the counts so far
+  // recording goes on meanwhile, so the copy may be a few values out of step
+  // between its buckets and totals, but never blocks a recording thread
+  HistogramSnapshot snapshot() {
+    long[] copy = new long[64];
+    long count = 0;
+    for (int b = 0; b < 64; b++) {
+      copy[b] = this.cells.get(Histogram.BUCKETS + b);
+      count += copy[b];
     }
+    return new HistogramSnapshot(this.name, count, this.cells.get(Histogram.TOTAL),
+        this.cells.get(Histogram.MAX), copy);
   }
+}
 
-  // returns if this Mine is same as that Mine
-  boolean sameMine(Mine m) {
-    return this.rowNum == m.rowNum && this.colNum == m.colNum;
+// represents the counts of a Histogram at one moment
+class HistogramSnapshot {
+  String name;
+  long count;
+  long total;
+  long max;
+  long[] buckets;
+
+  // default constructor
+  HistogramSnapshot(String name, long count, long total, long max, long[] buckets) {
+    this.name = name;
+    this.count = count;
+    this.total = total;
+    this.max = max;
+    this.buckets = buckets;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.name ...                                           --String
+   * ... this.count ...                                          --long
+   * ... this.total ...                                          --long
+   * ... this.max ...                                            --long
+   * ... this.buckets ...                                        --long[]
+   * Methods:
+   * ... this.mean() ...                                         --double
+   * ... this.percentile(double p) ...                           --long
+   * ... this.toString() ...                                     --String
+   */
+
+  // returns the mean of the values recorded, or 0 if there were none
+  double mean() {
+    return this.count == 0 ? 0 : (double) this.total / this.count;
+  }
+
+  // returns an upper bound on the value below which the given fraction of
+  // the values fall: the top of its bucket, but never more than this.max
+  long percentile(double p) {
+    long seen = 0;
+    for (int b = 0; b < 64; b++) {
+      seen += this.buckets[b];
+      if (seen > 0 && seen >= p * this.count) {
+        return b == 0 ? 0 : Math.min(this.max, (1L << b) - 1);
+      }
+    }
+    return this.max;
+  }
+
+  // produces one line of the metrics report
+  public String toString() {
+    return String.format("%-14s %10d %14.1f %12d %12d %12d", this.name, this.count, this.mean(),
+        this.percentile(0.5), this.percentile(0.99), this.max);
   }
 }
 
-// represents a flag
-class Flag implements IGamePiece {
-  ArrayList<IGamePiece> neighbors;
-  int mineNum;
-  boolean isMine;
+// represents the counters of the game's hot paths: clicks, flood fills,
+// frames drawn and boards dealt, shared by every game in the JVM
+// the histograms are constants, so that recording a value loads nothing
+// but the histogram's own array; each path also emits a JFR event when a
+// recording has enabled it
+class Metrics {
+  static final ArrayList<Histogram> ALL = new ArrayList<Histogram>();
+  static final Histogram CLICK_NANOS = Metrics.add("click.nanos");
+  static final Histogram FLOOD_NANOS = Metrics.add("flood.nanos");
+  static final Histogram FLOOD_CELLS = Metrics.add("flood.cells");
+  static final Histogram FLOOD_DEPTH = Metrics.add("flood.depth");
+  static final Histogram SCENE_NANOS = Metrics.add("scene.nanos");
+  static final Histogram SCENE_TILES = Metrics.add("scene.tiles");
+  static final Histogram SCENE_BYTES = Metrics.add("scene.bytes");
+  static final Histogram DEAL_NANOS = Metrics.add("deal.nanos");
+
+  /* TEMPLATE
+   * Fields:
+   * ... Metrics.ALL ...                                         --ArrayList<Histogram>
+   * ... Metrics.CLICK_NANOS ...                                 --Histogram
+   * ... Metrics.FLOOD_NANOS ...                                 --Histogram
+   * ... Metrics.FLOOD_CELLS ...                                 --Histogram
+   * ... Metrics.FLOOD_DEPTH ...                                 --Histogram
+   * ... Metrics.SCENE_NANOS ...                                 --Histogram
+   * ... Metrics.SCENE_TILES ...                                 --Histogram
+   * ... Metrics.SCENE_BYTES ...                                 --Histogram
+   * ... Metrics.DEAL_NANOS ...                                  --Histogram
+   * Methods:
+   * ... Metrics.add(String name) ...                            --Histogram
+   * ... Metrics.snapshot() ...                                  --MetricsSnapshot
+   * ... Metrics.allocatedBytes() ...                            --long
+   */
+
+  // makes a new histogram with the given name, listed in Metrics.ALL
+  static Histogram add(String name) {
+    Histogram histogram = new Histogram(name);
+    Metrics.ALL.add(histogram);
+    return histogram;
+  }
+
+  // copies every histogram as it is now
+  static MetricsSnapshot snapshot() {
+    ArrayList<HistogramSnapshot> copies = new ArrayList<HistogramSnapshot>();
+    for (Histogram histogram : Metrics.ALL) {
+      copies.add(histogram.snapshot());
+    }
+    return new MetricsSnapshot(System.currentTimeMillis(), copies);
+  }
+
+  // returns the number of bytes allocated so far by the current thread,
+  // or 0 if the JVM can't tell
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+}
+
+// represents every histogram of Metrics at one moment
+class MetricsSnapshot {
+  long millis;
+  ArrayList<HistogramSnapshot> histograms;
 
   // default constructor
-  Flag(boolean isMine) {
-    this.isMine = isMine;
+  MetricsSnapshot(long millis, ArrayList<HistogramSnapshot> histograms) {
+    this.millis = millis;
+    this.histograms = histograms;
   }
-  
-  // convenience constructor
-  Flag(ArrayList<IGamePiece> neighbors, int mineNum) {
-    this.neighbors = neighbors;
-    this.mineNum = mineNum;
-    this.isMine = false;
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.millis ...                                         --long
+   * ... this.histograms ...                                     --ArrayList<HistogramSnapshot>
+   * Methods:
+   * ... this.get(String name) ...                               --HistogramSnapshot
+   * ... this.toString() ...                                     --String
+   */
+
+  // returns the histogram with the given name, or null if there is none
+  HistogramSnapshot get(String name) {
+    for (HistogramSnapshot histogram : this.histograms) {
+      if (histogram.name.equals(name)) {
+        return histogram;
+      }
+    }
+    return null;
   }
-  
+
+  // produces the metrics report, one histogram to a line
+  public String toString() {
+    StringBuilder out = new StringBuilder(String.format("%-14s %10s %14s %12s %12s %12s",
+        "metric", "count", "mean", "p50", "p99", "max"));
+    for (HistogramSnapshot histogram : this.histograms) {
+      out.append('\n').append(histogram);
+    }
+    return out.toString();
+  }
+}
+
+// represents one click handled by GameWorld, for JFR
+@Name("minesweeper.Click")
+@Label("Click")
+@Category("Minesweeper")
+class ClickEvent extends Event {
+  static final EventType TYPE = EventType.getEventType(ClickEvent.class);
+  @Label("Button")
+  String button;
+
   /* TEMPLATE
    * Fields:
-   * ... this.isMine ...                                                       --boolean
+   * ... ClickEvent.TYPE ...                                     --EventType
+   * ... this.button ...                                         --String
    * Methods:
-   * ... this.addNeighbor(IGamePiece piece) ...                                --void       
-   * ... this.isCell() ...                                                     --boolean
-   * ... this.isMine() ...                                                     --boolean
-   * ... this.isFlag() ...                                                     --boolean
-   * ... this.countNeighbor() ...                                              --void
-   * ... this.WorldImage drawAt(int row, int col, WorldImage background) ...   --WorldImage
+   * ... ClickEvent.start() ...                                  --ClickEvent
+   */
+
+  // begins a new event if a recording wants them, or returns null, so that
+  // nothing is allocated while JFR is off
+  static ClickEvent start() {
+    if (!ClickEvent.TYPE.isEnabled()) {
+      return null;
+    }
+    ClickEvent event = new ClickEvent();
+    event.begin();
+    return event;
+  }
+}
+
+// represents one flood fill or chord in GameWorld, for JFR
+@Name("minesweeper.FloodFill")
+@Label("Flood Fill")
+@Category("Minesweeper")
+class FloodFillEvent extends Event {
+  static final EventType TYPE = EventType.getEventType(FloodFillEvent.class);
+  @Label("Squares Opened")
+  int cells;
+  @Label("Depth")
+  int depth;
+
+  /* TEMPLATE
+   * Fields:
+   * ... FloodFillEvent.TYPE ...                                 --EventType
+   * ... this.cells ...                                          --int
+   * ... this.depth ...                                          --int
+   * Methods:
+   * ... FloodFillEvent.start() ...                              --FloodFillEvent
+   */
+
+  // begins a new event if a recording wants them, or returns null
+  static FloodFillEvent start() {
+    if (!FloodFillEvent.TYPE.isEnabled()) {
+      return null;
+    }
+    FloodFillEvent event = new FloodFillEvent();
+    event.begin();
+    return event;
+  }
+}
+
+// represents one frame drawn by GameWorld, for JFR
+@Name("minesweeper.Scene")
+@Label("Scene")
+@Category("Minesweeper")
+class SceneEvent extends Event {
+  static final EventType TYPE = EventType.getEventType(SceneEvent.class);
+  @Label("Tiles Drawn")
+  int tiles;
+  @Label("Bytes Allocated")
+  long bytes;
+
+  /* TEMPLATE
+   * Fields:
+   * ... SceneEvent.TYPE ...                                     --EventType
+   * ... this.tiles ...                                          --int
+   * ... this.bytes ...                                          --long
+   * Methods:
+   * ... SceneEvent.start() ...                                  --SceneEvent
+   */
+
+  // begins a new event if a recording wants them, or returns null
+  static SceneEvent start() {
+    if (!SceneEvent.TYPE.isEnabled()) {
+      return null;
+    }
+    SceneEvent event = new SceneEvent();
+    event.begin();
+    return event;
+  }
+}
+
+// represents one board dealt for a GameWorld, for JFR
+@Name("minesweeper.Deal")
+@Label("Deal")
+@Category("Minesweeper")
+class DealEvent extends Event {
+  static final EventType TYPE = EventType.getEventType(DealEvent.class);
+  @Label("Squares")
+  int cells;
+  @Label("Mines")
+  int mines;
+
+  /* TEMPLATE
+   * Fields:
+   * ... DealEvent.TYPE ...                                      --EventType
+   * ... this.cells ...                                          --int
+   * ... this.mines ...                                          --int
+   * Methods:
+   * ... DealEvent.start() ...                                   --DealEvent
+   */
+
+  // begins a new event if a recording wants them, or returns null
+  static DealEvent start() {
+    if (!DealEvent.TYPE.isEnabled()) {
+      return null;
+    }
+    DealEvent event = new DealEvent();
+    event.begin();
+    return event;
+  }
+}
+
+// represents the timing and allocation of one benchmarked operation
+class BenchResult {
+  String name;
+  int size;
+  double density;
+  int runs;
+  double nanosPerRun;
+  double bytesPerRun;
+
+  // default constructor
+  BenchResult(String name, int size, double density, int runs, double nanosPerRun,
+      double bytesPerRun) {
+    this.name = name;
+    this.size = size;
+    this.density = density;
+    this.runs = runs;
+    this.nanosPerRun = nanosPerRun;
+    this.bytesPerRun = bytesPerRun;
+  }
+
+  // produces one line of the benchmark report
+  public String toString() {
+    return String.format("%-22s %6dx%-6d %5.2f %7d %14.1f %14.1f", this.name, this.size,
+        this.size, this.density, this.runs, this.nanosPerRun / 1000.0, this.bytesPerRun);
+  }
+}
+
+// measures the hot paths of the game on square boards of several sizes and
+// mine densities, without opening a window; run it with
+//   java -Djava.awt.headless=true Benchmarks sizes=100,1000 densities=0.1,0.2
+class Benchmarks {
+  int[] sizes;
+  double[] densities;
+  long minNanos;
+  int minRuns;
+  long sink;
+  GameWorld game;
+  int target;
+
+  // default constructor
+  Benchmarks(int[] sizes, double[] densities, long minNanos, int minRuns) {
+    this.sizes = sizes;
+    this.densities = densities;
+    this.minNanos = minNanos;
+    this.minRuns = minRuns;
+    this.sink = 0;
+  }
+
+  /* TEMPLATE
+   * Fields:
+   * ... this.sizes ...                                                  --int[]
+   * ... this.densities ...                                              --double[]
+   * ... this.minNanos ...                                               --long
+   * ... this.minRuns ...                                                --int
+   * ... this.sink ...                                                   --long
+   * ... this.game ...                                                   --GameWorld
+   * ... this.target ...                                                 --int
+   * Methods:
+   * ... Benchmarks.main(String[] args) ...                              --void
+   * ... this.runAll() ...                                               --ArrayList<BenchResult>
+   * ... this.runBoard(int size, double density) ...                     --ArrayList<BenchResult>
+   * ... this.newGame(int size, double density, int steps) ...           --void
+   * ... this.showTarget() ...                                           --void
+   * ... this.clickTarget() ...                                          --int
+   * ... this.markDirtyInView(int count) ...                             --void
+   * ... this.findEmptyCell() ...                                        --int
+   * ... this.measure(String name, int size, double density,
+   *                  Runnable setup, IntSupplier op) ...                --BenchResult
    */
 
-  // doesn't do anything because this Mine doesn't have a list of neighbors
-  public void addNeighbor(IGamePiece piece) {
-    return;
+  // runs the benchmarks named on the command line and prints the report
+  public static void main(String[] args) {
+    int[] sizes = new int[] { 100, 1000 };
+    double[] densities = new double[] { 0.1, 0.2 };
+    long minMillis = 500;
+    int minRuns = 10;
+    for (String arg : args) {
+      String[] kv = arg.split("=", 2);
+      if (kv[0].equals("sizes")) {
+        sizes = Arrays.stream(kv[1].split(",")).mapToInt(Integer::parseInt).toArray();
+      }
+      else if (kv[0].equals("densities")) {
+        densities = Arrays.stream(kv[1].split(",")).mapToDouble(Double::parseDouble).toArray();
+      }
+      else if (kv[0].equals("millis")) {
+        minMillis = Long.parseLong(kv[1]);
+      }
+      else if (kv[0].equals("runs")) {
+        minRuns = Integer.parseInt(kv[1]);
+      }
+    }
+    Benchmarks bench = new Benchmarks(sizes, densities, minMillis * 1000000L, minRuns);
+    System.out.println(String.format("%-22s %13s %5s %7s %14s %14s", "benchmark", "board",
+        "dens", "runs", "us/op", "bytes/op"));
+    for (int size : sizes) {
+      for (double density : densities) {
+        for (BenchResult result : bench.runBoard(size, density)) {
+          System.out.println(result);
+        }
+      }
+    }
+  }
+
+  // runs every benchmark for every board size and mine density
+  ArrayList<BenchResult> runAll() {
+    ArrayList<BenchResult> results = new ArrayList<BenchResult>();
+    for (int size : this.sizes) {
+      for (double density : this.densities) {
+        results.addAll(this.runBoard(size, density));
+      }
+    }
+    return results;
+  }
+
+  // runs every benchmark on a size x size board with the given mine density
+  ArrayList<BenchResult> runBoard(int size, double density) {
+    ArrayList<BenchResult> results = new ArrayList<BenchResult>();
+    results.add(this.measure("initCells", size, density,
+        () -> this.newGame(size, density, 0),
+        () -> {
+          this.game.initCells();
+          return this.game.board.size();
+        }));
+    results.add(this.measure("placeMines", size, density,
+        () -> this.newGame(size, density, 1),
+        () -> {
+          this.game.placeMines();
+          return this.game.board.mines.length;
+        }));
+    results.add(this.measure("updateNeighbors", size, density,
+        () -> this.newGame(size, density, 2),
+        () -> {
+          this.game.updateNeighbors();
+          return this.game.board.counts[0];
+        }));
+    results.add(this.measure("floodFill", size, density,
+        () -> {
+          this.newGame(size, density, 3);
+          this.target = this.findEmptyCell();
+        },
+        () -> this.game.floodFill(this.game.board.rowOf(this.target),
+            this.game.board.colOf(this.target))));
+    results.add(this.measure("onMouseClicked", size, density,
+        () -> {
+          this.newGame(size, density, 3);
+          this.target = this.findEmptyCell();
+          this.showTarget();
+        },
+        () -> this.clickTarget()));
+    results.add(this.measure("makeScene (full)", size, density,
+        () -> {
+          this.newGame(size, density, 3);
+          this.game.scene = null;
+        },
+        () -> this.game.makeScene().hashCode()));
+    results.add(this.measure("makeScene (10 dirty)", size, density,
+        () -> {
+          this.newGame(size, density, 3);
+          this.game.makeScene();
+          this.markDirtyInView(10);
+        },
+        () -> this.game.makeScene().hashCode()));
+    return results;
   }
-  
-  // returns false because this is not a Cell
-  public boolean isCell() {
-    return false;
+
+  // builds a fresh seeded game on a size x size board, and runs the first
+  // given number of board generation steps on it
+  void newGame(int size, double density, int steps) {
+    this.game = new GameWorld(size, size, (int) (size * size * density), size);
+    if (steps > 0) {
+      this.game.initCells();
+    }
+    if (steps > 1) {
+      this.game.placeMines();
+    }
+    if (steps > 2) {
+      this.game.updateNeighbors();
+    }
   }
 
-  // returns if this flag is sitting on a Mine or not
-  public boolean isMine() {
-    return this.isMine;
+  // moves the view of this.game onto this.target, at full size, so that a
+  // click in the window can reach it
+  void showTarget() {
+    this.game.view.zoomTo(0, this.game.board.rowOf(this.target),
+        this.game.board.colOf(this.target));
   }
-  
-  // returns true because this is a Flag
-  public boolean isFlag() {
-    return true;
+
+  // clicks this.target through the window, as the player would, and
+  // returns the number of safe squares opened
+  int clickTarget() {
+    Viewport view = this.game.view;
+    int x = (this.game.board.colOf(this.target) - view.left) * view.tile() + view.tile() / 2;
+    int y = (this.game.board.rowOf(this.target) - view.top) * view.tile() + view.tile() / 2;
+    this.game.onMouseClicked(new Posn(x, y), "LeftButton");
+    return this.game.board.safeOpened;
   }
 
-  // doesn't do anything because it doesn't have a list of neighbors
-  // nor a number of Mines
-  public void countNeighbor() {
-    return;
+  // marks the given number of distinct squares in the view of this.game,
+  // at most the number in view, to be drawn again
+  void markDirtyInView(int count) {
+    Viewport view = this.game.view;
+    int down = view.bottom() - view.top;
+    int across = view.right() - view.left;
+    for (int i = 0; i < Math.min(count, down * across); i++) {
+      this.game.markDirty(this.game.board.index(view.top + i % down,
+          view.left + i / down % across));
+    }
   }
 
-  // draws this Flag onto the given background
-  public WorldImage drawAt(int row, int col, WorldImage background) {
-    background = new OverlayOffsetImage(
-        new EquilateralTriangleImage(10, OutlineMode.SOLID, Color.YELLOW), row, col,
-        new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
-            new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
-    return background;
+  // returns the index of a safe cell of this.game with no mines around it,
+  // or of any safe cell if there is none
+  int findEmptyCell() {
+    Board board = this.game.board;
+    int safe = 0;
+    for (int idx = 0; idx < board.size(); idx++) {
+      if (!board.isMine(idx)) {
+        if (board.mineNum(idx) == 0) {
+          return idx;
+        }
+        safe = idx;
+      }
+    }
+    return safe;
+  }
+
+  // runs setup and then op until both minRuns runs and minNanos of wall time,
+  // setup included, have passed, and produces the average time and allocation
+  // of one op
+  BenchResult measure(String name, int size, double density, Runnable setup, IntSupplier op) {
+    for (int i = 0; i < 3; i++) {
+      setup.run();
+      this.sink += op.getAsInt();
+    }
+    long nanos = 0;
+    long bytes = 0;
+    int runs = 0;
+    long begin = System.nanoTime();
+    while (runs < this.minRuns || System.nanoTime() - begin < this.minNanos) {
+      setup.run();
+      long startBytes = Metrics.allocatedBytes();
+      long start = System.nanoTime();
+      this.sink += op.getAsInt();
+      nanos += System.nanoTime() - start;
+      bytes += Metrics.allocatedBytes() - startBytes;
+      runs++;
+    }
+    return new BenchResult(name, size, density, runs, (double) nanos / runs,
+        (double) bytes / runs);
   }
 }
 
@@ -519,7 +7443,7 @@ class RunMinesweeper {
   IGamePiece m2 = new Mine(2, 2, true);
   IGamePiece f1 = new Flag(true);
   IGamePiece f2 = new Flag(false);
-  IGamePiece c2 = new Cell(new ArrayList<IGamePiece>(Arrays.asList(c1, m1, m2, f1, f2)), 3, true);
+  IGamePiece c2 = new Cell(3, true);
 
   void initialTestCondition() {
     this.c1 = new Cell();
@@ -527,9 +7451,7 @@ class RunMinesweeper {
     this.m2 = new Mine(2, 2, true);
     this.f1 = new Flag(true);
     this.f2 = new Flag(false);
-    this.c2 = new Cell(
-        new ArrayList<IGamePiece>(Arrays.asList(this.c1, this.m1, this.m2, this.f1, this.f2)), 3,
-        true);
+    this.c2 = new Cell(3, true);
   }
 
   // runs the Minesweeper game
@@ -541,12 +7463,14 @@ class RunMinesweeper {
   // tests the initCells method
   void testInitCells(Tester t) {
     GameWorld game = new GameWorld(5, 5, 5, 1);
-    // Test 1: show that there's nothing in grid
-    t.checkExpect(game.grid.size(), 0);
+    // Test 1: show that there's nothing in the board
+    t.checkExpect(game.board.size(), 0);
     // initializes the world with Cells
     game.initCells();
-    // Test 2: show that the grid is now initialized with the proper amount of cells
-    t.checkExpect(game.grid.size() * game.grid.get(0).size(), game.gridLength * game.gridWidth);
+    // Test 2: show that the board is now initialized with the proper amount of cells
+    t.checkExpect(game.board.length * game.board.width, game.gridLength * game.gridWidth);
+    // Test 3: none of the cells are opened, flagged or mined yet
+    t.checkExpect(game.pieceAt(4, 4), new Cell(0, false));
   }
 
   // tests the placeMines method
@@ -554,23 +7478,23 @@ class RunMinesweeper {
     GameWorld game = new GameWorld(5, 5, 5, 1);
     // initializes the world with Cells
     game.initCells();
-    // Test 1: check that there are no Mines in the grid
+    // Test 1: check that there are no Mines in the board
     int count = 0;
-    for (int r = 0; r < game.grid.size(); r++) {
-      for (int c = 0; c < game.grid.get(r).size(); c++) {
-        if (game.grid.get(r).get(c).isMine()) {
+    for (int r = 0; r < game.board.length; r++) {
+      for (int c = 0; c < game.board.width; c++) {
+        if (game.pieceAt(r, c).isMine()) {
           count++;
         }
       }
     }
     t.checkExpect(count, 0);
-    // place the mines randomly into the grid
+    // place the mines randomly into the board
     game.placeMines();
-    // Test 2: there should now be grid.numMines mines in the grid, regardless of
+    // Test 2: there should now be grid.numMines mines in the board, regardless of
     // location
-    for (int r = 0; r < game.grid.size(); r++) {
-      for (int c = 0; c < game.grid.get(r).size(); c++) {
-        if (game.grid.get(r).get(c).isMine()) {
+    for (int r = 0; r < game.board.length; r++) {
+      for (int c = 0; c < game.board.width; c++) {
+        if (game.pieceAt(r, c).isMine()) {
           count++;
         }
       }
@@ -578,28 +7502,1416 @@ class RunMinesweeper {
     t.checkExpect(count, game.numMines);
   }
 
+  // tests the placeMines method of Board
+  void testBoardPlaceMines(Tester t) {
+    // Test 1: the same seed always produces the same board
+    Board b1 = new Board(30, 40);
+    Board b2 = new Board(30, 40);
+    b1.placeMines(200, new Random(7));
+    b2.placeMines(200, new Random(7));
+    t.checkExpect(b1.mines, b2.mines);
+    // Test 2: exactly the requested number of mines is placed
+    int count = 0;
+    for (long word : b1.mines) {
+      count += Long.bitCount(word);
+    }
+    t.checkExpect(count, 200);
+    // Test 3: asking for more mines than squares fills the whole board
+    Board full = new Board(3, 3);
+    full.placeMines(12, new Random(1));
+    t.checkExpect(Long.bitCount(full.mines[0]), 9);
+  }
+
+  // tests placing mines away from a given square
+  void testBoardPlaceMinesSafe(Tester t) {
+    // Test 1: no mine lands on the square or its neighbors
+    Board board = new Board(20, 20);
+    board.placeMines(150, new Random(3), board.index(0, 5));
+    t.checkExpect(board.numMines, 150);
+    for (int r = 0; r <= 1; r++) {
+      for (int c = 4; c <= 6; c++) {
+        t.checkExpect(board.isMine(board.index(r, c)), false);
+      }
+    }
+    // Test 2: asking for every other square fills exactly those
+    Board full = new Board(5, 5);
+    full.placeMines(30, new Random(1), 12);
+    t.checkExpect(full.numMines, 16);
+    t.checkExpect(full.isMine(6), false);
+    t.checkExpect(full.isMine(18), false);
+    t.checkExpect(full.isMine(5), true);
+  }
+
+  // tests the moveMine method
+  void testMoveMine(Tester t) {
+    Board board = new Board(4, 4);
+    board.setMine(5);
+    board.setMine(15);
+    board.countNeighbors();
+    // Test 1: the counts match a board counted from scratch, including next
+    // to both spots when they touch
+    board.moveMine(5, 10);
+    Board fresh = new Board(4, 4);
+    fresh.setMine(10);
+    fresh.setMine(15);
+    fresh.countNeighbors();
+    t.checkExpect(board.mines, fresh.mines);
+    t.checkExpect(board.counts, fresh.counts);
+    // Test 2: a mine moved to the far corner
+    board.moveMine(10, 0);
+    fresh = new Board(4, 4);
+    fresh.setMine(0);
+    fresh.setMine(15);
+    fresh.countNeighbors();
+    t.checkExpect(board.counts, fresh.counts);
+  }
+
+  // tests the NoGuessGenerator class
+  void testNoGuessGenerator(Tester t) {
+    NoGuessGenerator gen = new NoGuessGenerator(30, 30, 180);
+    int first = 15 * 30 + 15;
+    Board board = gen.generate(4, first);
+    // Test 1: the board has every mine, all squares hidden, and an opening
+    // at the first click
+    t.checkExpect(board.numMines, 180);
+    t.checkExpect(Long.bitCount(board.revealed[0]), 0);
+    t.checkExpect(board.mineNum(first), 0);
+    // Test 2: a solver that never guesses clears it from the first click
+    ConstraintSolver solver = new ConstraintSolver();
+    solver.start(board, 0);
+    int safeLeft = board.size() - 180;
+    int idx = first;
+    while (idx >= 0 && !board.isMine(idx)) {
+      int opened = board.floodFill(idx);
+      solver.opened(board, board.opened, opened);
+      safeLeft -= opened;
+      idx = solver.nextSafe(board);
+    }
+    t.checkExpect(safeLeft, 0);
+    // Test 3: the same seed deals the same board
+    t.checkExpect(gen.generate(4, first).mines, board.mines);
+  }
+
+  // tests dealing a GameWorld from a NoGuessGenerator
+  void testGameWorldNoGuess(Tester t) {
+    GameWorld game = new GameWorld(new NoGuessGenerator(16, 30, 99), 2);
+    t.checkExpect(game.board.numMines, 99);
+    t.checkExpect(game.board.isRevealed(8 * 30 + 15), true);
+    t.checkExpect(game.board.mineNum(8 * 30 + 15), 0);
+    // Test 2: only the squares opened by the first click count as opened,
+    // and opening every other safe square wins
+    GameWorld small = new GameWorld(new NoGuessGenerator(9, 9, 10), 5);
+    int opened = 0;
+    for (int idx = 0; idx < small.board.size(); idx++) {
+      if (small.board.isRevealed(idx)) {
+        opened++;
+      }
+    }
+    t.checkExpect(small.board.safeLeft(), 71 - opened);
+    for (int idx = 0; idx < small.board.size(); idx++) {
+      if (!small.board.isMine(idx) && !small.board.isRevealed(idx)) {
+        small.click(small.board.colOf(idx) * 20, small.board.rowOf(idx) * 20, "LeftButton");
+      }
+    }
+    t.checkExpect(small.board.safeLeft(), 0);
+    t.checkExpect(small.isWon(), true);
+    t.checkExpect(small.isGameOver, true);
+  }
+
+  // tests packing the opened and flagged squares of a Chunk
+  void testChunkEncode(Tester t) {
+    Chunk chunk = new Chunk(0, 0, new long[Chunk.WORDS]);
+    // Test 1: an untouched chunk packs into one byte per word
+    t.checkExpect(chunk.isTouched(), false);
+    t.checkExpect(chunk.encode().length, 32);
+    // Test 2: full and mixed words survive a round trip
+    chunk.revealed[0] = -1;
+    chunk.revealed[3] = 0x00F0_0000_1234_5678L;
+    chunk.flagged[15] = Long.MIN_VALUE;
+    byte[] packed = chunk.encode();
+    t.checkExpect(packed.length, 30 + 9 + 9);
+    Chunk copy = new Chunk(0, 0, new long[Chunk.WORDS]);
+    copy.decode(packed);
+    t.checkExpect(copy.revealed, chunk.revealed);
+    t.checkExpect(copy.flagged, chunk.flagged);
+    t.checkExpect(copy.isTouched(), true);
+  }
+
+  // tests the EndlessBoard class
+  void testEndlessBoard(Tester t) {
+    EndlessBoard board = new EndlessBoard(9, 160, 64);
+    // Test 1: nothing is made until it is asked for, and the origin is clear
+    t.checkExpect(board.chunks.size(), 0);
+    t.checkExpect(board.peek(0, 0), null);
+    for (int y = -1; y <= 1; y++) {
+      for (int x = -1; x <= 1; x++) {
+        t.checkExpect(board.isMine(x, y), false);
+      }
+    }
+    // Test 2: the same seed gives the same mines, wherever they are
+    EndlessBoard twin = new EndlessBoard(9, 160, 64);
+    t.checkExpect(twin.chunkAt(-70, 1000).mines, board.chunkAt(-70, 1000).mines);
+    t.checkExpect(Long.bitCount(board.chunkAt(-70, 1000).mines[0]) >= 0, true);
+    // Test 3: counts next to a chunk edge see the mines across it
+    for (int y = -33; y <= 32; y += 13) {
+      for (int x = 30; x <= 33; x++) {
+        if (!board.isMine(x, y)) {
+          int count = 0;
+          for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              count += board.isMine(x + dx, y + dy) ? 1 : 0;
+            }
+          }
+          t.checkExpect(board.mineNum(x, y), count);
+        }
+      }
+    }
+    // Test 4: the first click opens the origin and everything next to it
+    int opened = board.floodFill(0, 0);
+    t.checkExpect(opened >= 9, true);
+    t.checkExpect(board.isRevealed(1, -1), true);
+    t.checkExpect(board.floodFill(0, 0), 0);
+  }
+
+  // tests evicting chunks of an EndlessBoard
+  void testEndlessEvict(Tester t) {
+    EndlessBoard board = new EndlessBoard(3, 160, 4);
+    board.floodFill(0, 0);
+    board.toggleFlag(200, 200);
+    // Test 1: moving far away evicts the opened chunks into packed form
+    board.setViewport(5000, 5000);
+    for (int k = 0; k < 6; k++) {
+      board.chunkAt(5000 + 32 * k, 5000);
+    }
+    // only the chunk next to the viewport may stay loaded beyond capacity
+    t.checkExpect(board.chunks.size(), 5);
+    t.checkExpect(board.stored.containsKey(EndlessBoard.pack(0, 0)), true);
+    t.checkExpect(board.stored.containsKey(EndlessBoard.pack(6, 6)), true);
+    // Test 2: coming back restores what was opened and flagged
+    board.setViewport(0, 0);
+    t.checkExpect(board.isRevealed(0, 0), true);
+    t.checkExpect(board.isFlagged(200, 200), true);
+    t.checkExpect(board.stored.containsKey(EndlessBoard.pack(0, 0)), false);
+    // Test 3: a chunk nobody touched is dropped, not stored
+    t.checkExpect(board.chunks.containsKey(EndlessBoard.pack(158, 156)), false);
+    t.checkExpect(board.stored.containsKey(EndlessBoard.pack(158, 156)), false);
+  }
+
+  // tests the EndlessWorld class
+  void testEndlessWorld(Tester t) {
+    EndlessWorld world = new EndlessWorld(new EndlessBoard(5, 160, 64), 20, 10);
+    // Test 1: a click in the middle of the window opens the origin
+    world.onMouseClicked(new Posn(210, 110), "LeftButton");
+    t.checkExpect(world.board.isRevealed(0, 0), true);
+    t.checkExpect(world.openedTotal > 0, true);
+    WorldScene scene = world.makeScene();
+    t.checkExpect(world.makeScene(), scene);
+    // Test 2: the arrow keys move the window and the viewport
+    world.onKeyEvent("right");
+    world.onKeyEvent("down");
+    t.checkExpect(world.left, -2);
+    t.checkExpect(world.top, 3);
+    t.checkExpect(world.scene, null);
+    // Test 3: right clicks flag hidden squares only
+    world.onMouseClicked(new Posn(0, 0), "RightButton");
+    t.checkExpect(world.board.isFlagged(-2, 3), !world.board.isRevealed(-2, 3));
+  }
+
+  // tests saving and loading a Board
+  void testSaveFile(Tester t) {
+    Board board = new Board(37, 53);
+    board.placeMines(300, new Random(12));
+    board.countNeighbors();
+    board.floodFill(board.index(20, 20));
+    board.toggleFlag(board.index(0, 0));
+    board.toggleFlag(board.index(36, 52));
+    try {
+      Path path = Files.createTempFile("minesweeper", ".sav");
+      SaveFile.save(board, path);
+      // Test 1: the whole board comes back, counts included
+      Board loaded = SaveFile.load(path);
+      t.checkExpect(loaded.length, 37);
+      t.checkExpect(loaded.width, 53);
+      t.checkExpect(loaded.numMines, 300);
+      t.checkExpect(loaded.seed, board.seed);
+      t.checkExpect(loaded.mines, board.mines);
+      t.checkExpect(loaded.revealed, board.revealed);
+      t.checkExpect(loaded.flagged, board.flagged);
+      t.checkExpect(loaded.counts, board.counts);
+      // Test 2: a slice matches the same squares of the board, and its edges
+      // count the mines outside it
+      Board slice = SaveFile.loadSlice(path, 10, 30, 8, 40);
+      t.checkExpect(slice.length, 8);
+      t.checkExpect(slice.width, 23);
+      for (int r = 0; r < 8; r++) {
+        for (int c = 0; c < 23; c++) {
+          int idx = board.index(r + 10, c + 30);
+          int s = slice.index(r, c);
+          t.checkExpect(slice.isMine(s), board.isMine(idx));
+          t.checkExpect(slice.isRevealed(s), board.isRevealed(idx));
+          t.checkExpect(slice.isFlagged(s), board.isFlagged(idx));
+          t.checkExpect(slice.mineNum(s), board.mineNum(idx));
+        }
+      }
+      // Test 3: a slice off the board is empty
+      t.checkExpect(SaveFile.loadSlice(path, 40, 0, 5, 5).size(), 0);
+      // Test 4: anything else is refused
+      Files.write(path, new byte[100]);
+      String message = "";
+      try {
+        SaveFile.load(path);
+      }
+      catch (IOException e) {
+        message = e.getMessage();
+      }
+      t.checkExpect(message, "not a minesweeper save");
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests saving and loading a GameWorld with the keyboard
+  void testSaveGame(Tester t) {
+    GameWorld game = new GameWorld(5, 5, 3, 4);
+    game.initCells();
+    game.placeMines();
+    game.updateNeighbors();
+    try {
+      game.savePath = Files.createTempFile("minesweeper", ".sav");
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+      return;
+    }
+    int mine = 0;
+    while (!game.board.isMine(mine)) {
+      mine++;
+    }
+    Posn onMine = new Posn(20 * game.board.colOf(mine) + 5, 20 * game.board.rowOf(mine) + 5);
+    game.onMouseClicked(onMine, "RightButton");
+    t.checkExpect(game.flagNum, 1);
+    t.checkExpect(game.minesLeft(), 2);
+    t.checkExpect(game.board.rightFlags, 1);
+    game.onKeyEvent("s");
+    // Test 1: loading undoes everything done since the save
+    game.onMouseClicked(onMine, "RightButton");
+    t.checkExpect(game.flagNum, 0);
+    game.onKeyEvent("l");
+    t.checkExpect(game.flagNum, 1);
+    t.checkExpect(game.minesLeft(), 2);
+    t.checkExpect(game.board.rightFlags, 1);
+    t.checkExpect(game.board.isFlagged(mine), true);
+    t.checkExpect(game.scene, null);
+    // Test 2: a game saved before its first click still deals its mines on
+    // the first click after loading
+    GameWorld early = new GameWorld(10, 10, 15, 4);
+    early.defer();
+    early.savePath = game.savePath;
+    early.onMouseClicked(new Posn(185, 185), "RightButton");
+    early.onKeyEvent("s");
+    early.onMouseClicked(new Posn(185, 185), "RightButton");
+    early.onKeyEvent("l");
+    t.checkExpect(early.deferred, true);
+    t.checkExpect(early.numMines, 15);
+    t.checkExpect(early.minesLeft(), 14);
+    t.checkExpect(early.board.isFlagged(99), true);
+    early.onMouseClicked(new Posn(105, 105), "LeftButton");
+    t.checkExpect(early.deferred, false);
+    t.checkExpect(early.board.numMines, 15);
+    t.checkExpect(early.board.isMine(55), false);
+    t.checkExpect(early.isWon(), false);
+    t.checkExpect(early.isGameOver, false);
+    try {
+      Files.delete(game.savePath);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests the MoveLog class
+  void testMoveLog(Tester t) {
+    MoveLog log = new MoveLog(9, 9, 10, 42, false);
+    for (int i = 0; i < 100; i++) {
+      log.add(new Posn(i, 2 * i), i % 3 == 0 ? "RightButton" : "LeftButton");
+    }
+    log.add(new Posn(5, 5), "Button4");
+    // Test 1: every move comes back as it was added
+    t.checkExpect(log.size, 101);
+    t.checkExpect(log.posnAt(7), new Posn(7, 14));
+    t.checkExpect(log.buttonAt(6), "RightButton");
+    t.checkExpect(log.buttonAt(7), "LeftButton");
+    t.checkExpect(log.buttonAt(100), "Button4");
+    // Test 2: a saved log loads back the same
+    try {
+      Path path = Files.createTempFile("minesweeper", ".log");
+      log.save(path);
+      MoveLog loaded = MoveLog.load(path);
+      t.checkExpect(loaded.size, 101);
+      t.checkExpect(loaded.seed, 42);
+      t.checkExpect(loaded.noGuess, false);
+      t.checkExpect(loaded.posnAt(99), new Posn(99, 198));
+      t.checkExpect(loaded.buttonAt(99), "RightButton");
+      t.checkExpect(loaded.buttonAt(100), "Button4");
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests the Replay class
+  void testReplay(Tester t) {
+    GameWorld game = new GameWorld(12, 12, 20, 8);
+    game.initCells();
+    game.placeMines();
+    game.updateNeighbors();
+    // plays flags and safe clicks, remembering the squares after every move
+    ArrayList<long[]> revealed = new ArrayList<long[]>();
+    ArrayList<long[]> flagged = new ArrayList<long[]>();
+    revealed.add(game.board.revealed.clone());
+    flagged.add(game.board.flagged.clone());
+    for (int idx = 0; idx < game.board.size(); idx += 5) {
+      Posn pos = new Posn(20 * game.board.colOf(idx) + 3, 20 * game.board.rowOf(idx) + 3);
+      game.onMouseClicked(pos, game.board.isMine(idx) ? "RightButton" : "LeftButton");
+      revealed.add(game.board.revealed.clone());
+      flagged.add(game.board.flagged.clone());
+    }
+    Replay replay = new Replay(game.log, 4);
+    // Test 1: every move can be reached, forwards and backwards
+    int[] order = new int[] { 0, 29, 3, 28, 4, 5, 17, 1, 16, 29 };
+    for (int move : order) {
+      GameWorld at = replay.seek(move);
+      t.checkExpect(at.board.revealed, revealed.get(move));
+      t.checkExpect(at.board.flagged, flagged.get(move));
+    }
+    // Test 2: the end of the replay matches the live game
+    t.checkExpect(replay.seek(game.log.size).flagNum, game.flagNum);
+    t.checkExpect(replay.game.numMines, game.numMines);
+    t.checkExpect(replay.snapshots.size(), game.log.size / 4 + 1);
+  }
+
+  // tests the MoveHistory class
+  void testMoveHistory(Tester t) {
+    MoveHistory history = new MoveHistory();
+    // Test 1: there is nothing to take back yet
+    t.checkExpect(history.undo(), -1);
+    t.checkExpect(history.redo(), -1);
+    history.begin(MoveHistory.OPEN);
+    for (int i = 0; i < 100; i++) {
+      history.push(i);
+    }
+    history.begin(MoveHistory.FLAG);
+    history.push(7);
+    // Test 2: each entry keeps only its own squares
+    t.checkExpect(history.start[1] - history.start[0], 100);
+    t.checkExpect(history.end(1) - history.start[1], 1);
+    t.checkExpect(history.kinds[1], MoveHistory.FLAG);
+    // Test 3: undo walks back through the parents and redo walks forward
+    t.checkExpect(history.undo(), 1);
+    t.checkExpect(history.undo(), 0);
+    t.checkExpect(history.current, -1);
+    t.checkExpect(history.redo(), 0);
+    // Test 4: a new move branches off and drops the redo
+    history.begin(MoveHistory.FLAG);
+    history.push(9);
+    t.checkExpect(history.parent[2], 0);
+    t.checkExpect(history.redo(), -1);
+    t.checkExpect(history.cellCount, 102);
+  }
+
+  // tests undo and redo in GameWorld, and their replay
+  void testUndo(Tester t) {
+    GameWorld game = new GameWorld(10, 10, 2, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(9, 9));
+    game.board.setMine(game.board.index(9, 0));
+    game.updateNeighbors();
+    long[] none = game.board.revealed.clone();
+    game.onMouseClicked(new Posn(45, 45), "LeftButton");
+    long[] opened = game.board.revealed.clone();
+    int count = 0;
+    for (long word : opened) {
+      count += Long.bitCount(word);
+    }
+    // Test 1: the cascade is remembered square by square, not as a copy
+    t.checkExpect(count, 98);
+    t.checkExpect(game.history.cellCount, count);
+    game.onMouseClicked(new Posn(185, 185), "RightButton");
+    t.checkExpect(game.flagNum, 1);
+    t.checkExpect(game.minesLeft(), 1);
+    // Test 2: undo takes back the flag, then the cascade
+    game.undo();
+    t.checkExpect(game.board.isFlagged(game.board.index(9, 9)), false);
+    t.checkExpect(game.flagNum, 0);
+    t.checkExpect(game.minesLeft(), 2);
+    game.undo();
+    t.checkExpect(game.board.revealed, none);
+    game.undo();
+    t.checkExpect(game.board.revealed, none);
+    // Test 3: redo opens the same squares again
+    game.redo();
+    t.checkExpect(game.board.revealed, opened);
+    // Test 4: a new move drops the flag that could have been redone
+    game.onMouseClicked(new Posn(5, 185), "RightButton");
+    game.redo();
+    t.checkExpect(game.board.isFlagged(game.board.index(9, 9)), false);
+    t.checkExpect(game.board.isFlagged(game.board.index(9, 0)), true);
+    // Test 5: undo from the keyboard is logged as a move
+    game.onKeyEvent("u");
+    t.checkExpect(game.board.isFlagged(game.board.index(9, 0)), false);
+    t.checkExpect(game.log.buttonAt(game.log.size - 1), "Undo");
+    // Test 6: a replay follows undo and redo like any other move
+    GameWorld dealt = new GameWorld(12, 12, 20, 8);
+    dealt.initCells();
+    dealt.placeMines();
+    dealt.updateNeighbors();
+    ArrayList<long[]> revealed = new ArrayList<long[]>();
+    ArrayList<long[]> flagged = new ArrayList<long[]>();
+    revealed.add(dealt.board.revealed.clone());
+    flagged.add(dealt.board.flagged.clone());
+    for (int idx = 0; idx < dealt.board.size(); idx += 7) {
+      Posn pos = new Posn(20 * dealt.board.colOf(idx) + 3, 20 * dealt.board.rowOf(idx) + 3);
+      dealt.onMouseClicked(pos, dealt.board.isMine(idx) ? "RightButton" : "LeftButton");
+      revealed.add(dealt.board.revealed.clone());
+      flagged.add(dealt.board.flagged.clone());
+      dealt.onKeyEvent(idx % 3 == 0 ? "u" : "r");
+      revealed.add(dealt.board.revealed.clone());
+      flagged.add(dealt.board.flagged.clone());
+    }
+    Replay replay = new Replay(dealt.log, 4);
+    int[] order = new int[] { 0, 41, 3, 40, 6, 7, 23, 1, 22, 41 };
+    for (int move : order) {
+      GameWorld at = replay.seek(move);
+      t.checkExpect(at.board.revealed, revealed.get(move));
+      t.checkExpect(at.board.flagged, flagged.get(move));
+    }
+    t.checkExpect(replay.game.flagNum, dealt.flagNum);
+    t.checkExpect(replay.game.numMines, dealt.numMines);
+  }
+
+  // tests the SessionManager and Session classes
+  void testSessionManager(Tester t) {
+    SessionManager manager;
+    try {
+      manager = new SessionManager(Files.createTempDirectory("minesweeper-sessions"),
+          new ForkJoinPool(2));
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+      return;
+    }
+    long id = manager.open(9, 9, 10, 3);
+    Board board = manager.sessions.get(id).game.board;
+    int mine = 0;
+    while (!board.isMine(mine)) {
+      mine++;
+    }
+    int safe = 0;
+    while (board.isMine(safe)) {
+      safe++;
+    }
+    String at = " " + board.rowOf(mine) + " " + board.colOf(mine);
+    // Test 1: commands are played and answered with the state of the game
+    t.checkExpect(manager.command("flag " + id + at), "playing 1");
+    t.checkExpect(manager.command("open " + id + at), "playing 1");
+    // Test 2: the commands of one session are played in the order sent
+    ArrayList<CompletableFuture<String>> replies = new ArrayList<CompletableFuture<String>>();
+    for (int i = 0; i < 100; i++) {
+      replies.add(manager.submit(id, "flag", board.rowOf(mine), board.colOf(mine)));
+    }
+    for (int i = 0; i < 100; i++) {
+      t.checkExpect(replies.get(i).join(), i % 2 == 0 ? "playing 0" : "playing 1");
+    }
+    // Test 3: a paged out session comes back as it was
+    t.checkExpect(manager.submit(id, "page", 0, 0).join(), "paged");
+    t.checkExpect(manager.resident.get(), 0);
+    t.checkExpect(manager.sessions.get(id).game, null);
+    t.checkExpect(manager.command("state " + id), "playing 1");
+    t.checkExpect(manager.resident.get(), 1);
+    t.checkExpect(manager.pagedIn.get(), 1L);
+    t.checkExpect(manager.command("show " + id).charAt(mine), 'F');
+    t.checkExpect(manager.command("show " + id).length(), 81);
+    t.checkExpect(manager.pageOut(Long.MAX_VALUE), 0);
+    // Test 4: bad commands get errors instead of changing the game
+    t.checkExpect(manager.command("state 99"), "error no session 99");
+    t.checkExpect(manager.command("open " + id + " 9 0"), "error out of bounds");
+    t.checkExpect(manager.command("dance " + id), "error unknown command dance");
+    t.checkExpect(manager.command("open"), "error bad command open");
+    t.checkExpect(manager.command("open " + id), "error bad command open " + id);
+    t.checkExpect(manager.command("open " + id + " 3"), "error bad command open " + id + " 3");
+    t.checkExpect(manager.command("flag " + id + " 3 4 5"),
+        "error bad command flag " + id + " 3 4 5");
+    t.checkExpect(manager.command("state " + id + " 3 4"), "error bad command state " + id + " 3 4");
+    t.checkExpect(manager.command("show"), "error bad command show");
+    t.checkExpect(manager.command("state " + id), "playing 1");
+    // Test 5: a lost game ignores further moves
+    manager.command("flag " + id + at);
+    t.checkExpect(manager.command("open " + id + at), "lost 0");
+    t.checkExpect(manager.command("open " + id + " " + board.rowOf(safe) + " "
+        + board.colOf(safe)), "lost 0");
+    // Test 6: closing forgets the session and its page file
+    Path path = manager.sessions.get(id).path;
+    t.checkExpect(Files.exists(path), true);
+    t.checkExpect(manager.command("close " + id), "closed");
+    t.checkExpect(manager.sessions.isEmpty(), true);
+    t.checkExpect(Files.exists(path), false);
+    // Test 7: an Error thrown by a command becomes its reply, and the
+    // session still plays the commands after it
+    long brokenId = manager.nextId.getAndIncrement();
+    Session broken = new Session(manager, brokenId, 9, 9, 10, 3) {
+      String play(SessionCommand cmd) {
+        if (cmd.op.equals("state")) {
+          throw new AssertionError("broken");
+        }
+        return super.play(cmd);
+      }
+    };
+    manager.sessions.put(brokenId, broken);
+    t.checkExpect(manager.command("state " + brokenId), "error java.lang.AssertionError: broken");
+    t.checkExpect(manager.command("show " + brokenId).length(), 81);
+    t.checkExpect(manager.command("close " + brokenId), "closed");
+    manager.shutdown();
+    try {
+      Files.delete(manager.dir);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests the text protocol of SessionManager through a loopback socket
+  void testSessionServer(Tester t) {
+    SessionManager manager = new SessionManager(Paths.get("."), new ForkJoinPool(1));
+    try {
+      int port = manager.listen(0);
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+          BufferedReader in = new BufferedReader(new InputStreamReader(
+              socket.getInputStream(), StandardCharsets.UTF_8));
+          PrintWriter out = new PrintWriter(new OutputStreamWriter(
+              socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+        out.println("new 5 5 1 7");
+        String id = in.readLine();
+        t.checkExpect(manager.sessions.containsKey(Long.parseLong(id)), true);
+        out.println("state " + id);
+        t.checkExpect(in.readLine(), "playing 0");
+        out.println("show " + id);
+        t.checkExpect(in.readLine(), ".........................");
+        out.println("close " + id);
+        t.checkExpect(in.readLine(), "closed");
+        out.println("quit");
+        t.checkExpect(in.readLine(), null);
+      }
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+    manager.shutdown();
+  }
+
+  // tests the SharedBoard class
+  void testSharedBoard(Tester t) {
+    Board board = new Board(5, 5);
+    board.setMine(board.index(0, 4));
+    board.setMine(board.index(4, 4));
+    board.countNeighbors();
+    board.setRevealed(board.index(4, 0));
+    SharedBoard shared = new SharedBoard(board);
+    ConcurrentLinkedQueue<BoardChange> feed = shared.subscribe();
+    // Test 1: the board starts from the squares already opened
+    t.checkExpect(shared.stateOf(board.index(4, 0)), SharedBoard.OPENED);
+    t.checkExpect(shared.opened.get(), 1);
+    // Test 2: flags can be toggled but not opened, and are sent to the feed
+    t.checkExpect(shared.toggleFlag(3, board.index(2, 2)), true);
+    t.checkExpect(shared.open(3, board.index(2, 2)), 0);
+    t.checkExpect(shared.toggleFlag(3, board.index(4, 0)), false);
+    BoardChange change = feed.poll();
+    t.checkExpect(change.player, 3);
+    t.checkExpect(change.kind, SharedBoard.FLAGGED);
+    t.checkExpect(change.cells, new int[] { board.index(2, 2) });
+    t.checkExpect(shared.flags.get(), 1);
+    // Test 3: a cascade stops at the flag, and opening it again does nothing
+    t.checkExpect(shared.open(1, 0), 21);
+    t.checkExpect(shared.open(2, 0), 0);
+    t.checkExpect(feed.poll().cells.length, 21);
+    t.checkExpect(feed.poll(), null);
+    t.checkExpect(shared.toggleFlag(3, board.index(2, 2)), true);
+    t.checkExpect(shared.open(1, board.index(2, 2)), 1);
+    t.checkExpect(shared.isWon(), true);
+    // Test 4: opening a mine loses the game for everyone
+    SharedBoard other = new SharedBoard(board);
+    t.checkExpect(other.open(0, board.index(0, 4)), -1);
+    t.checkExpect(other.lost, true);
+    t.checkExpect(other.open(0, 0), 0);
+    t.checkExpect(other.isWon(), false);
+  }
+
+  // tests two CoopWorlds playing on the same SharedBoard
+  void testCoopWorld(Tester t) {
+    Board board = new Board(5, 5);
+    board.setMine(board.index(0, 4));
+    board.countNeighbors();
+    SharedBoard shared = new SharedBoard(board);
+    CoopWorld first = new CoopWorld(shared, 0);
+    CoopWorld second = new CoopWorld(shared, 1);
+    first.onMouseClicked(new Posn(85, 5), "RightButton");
+    // Test 1: a player sees their own move at once, the other on the next tick
+    t.checkExpect(first.board.isFlagged(board.index(0, 4)), true);
+    t.checkExpect(second.board.isFlagged(board.index(0, 4)), false);
+    second.onTick();
+    t.checkExpect(second.board.isFlagged(board.index(0, 4)), true);
+    t.checkExpect(second.flagNum, 1);
+    // Test 2: clicks out of the board are ignored
+    second.onMouseClicked(new Posn(105, 5), "LeftButton");
+    t.checkExpect(shared.opened.get(), 0);
+    // Test 3: the cascade of one player wins the game for both
+    second.onMouseClicked(new Posn(5, 95), "LeftButton");
+    first.onTick();
+    t.checkExpect(first.board.revealed, second.board.revealed);
+    t.checkExpect(first.isGameOver, true);
+    t.checkExpect(second.isGameOver, true);
+    // Test 4: a player joining late starts from the board as it is
+    t.checkExpect(new CoopWorld(shared, 2).board.revealed, first.board.revealed);
+    // Test 5: a player pans and zooms their own view of a large board, while
+    // undo does nothing
+    Board large = new Board(60, 60);
+    large.setMine(0);
+    large.countNeighbors();
+    CoopWorld roaming = new CoopWorld(new SharedBoard(large), 0);
+    roaming.resize(200, 200);
+    roaming.onKeyEvent("right");
+    roaming.onKeyEvent("down");
+    t.checkExpect(roaming.view.left > 0, true);
+    t.checkExpect(roaming.view.top > 0, true);
+    roaming.onKeyEvent("-");
+    t.checkExpect(roaming.view.zoom, 1);
+    roaming.onMouseClicked(new Posn(5, 5), "RightButton");
+    roaming.onKeyEvent("u");
+    t.checkExpect(roaming.flagNum, 1);
+  }
+
+  // tests dozens of players clicking one SharedBoard at once
+  void testCoopStress(Tester t) {
+    for (int seed = 0; seed < 3; seed++) {
+      Board board = new Board(80, 80);
+      board.placeMines(800, new Random(seed));
+      board.countNeighbors();
+      CoopStress stress = new CoopStress(board, 32, 400, seed);
+      try {
+        stress.run();
+      }
+      catch (InterruptedException e) {
+        t.checkExpect(e, null);
+      }
+      t.checkExpect(stress.check(), "ok");
+      t.checkExpect(stress.shared.opened.get() > 0, true);
+    }
+  }
+
+  // tests the neighbors method of Board
+  void testNeighbors(Tester t) {
+    Board board = new Board(3, 4);
+    int[] out = new int[8];
+    // Test 1: a corner has three neighbors, an edge five, the middle eight
+    t.checkExpect(board.neighbors(0, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] { 1, 4, 5 });
+    t.checkExpect(board.neighbors(board.index(0, 2), out), 5);
+    t.checkExpect(board.neighbors(board.index(1, 1), out), 8);
+    t.checkExpect(out, new int[] { 0, 1, 2, 4, 6, 8, 9, 10 });
+  }
+
+  // tests the chord method of Board and chording in GameWorld
+  void testChord(Tester t) {
+    GameWorld game = new GameWorld(5, 5, 2, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(0, 1));
+    game.board.setMine(game.board.index(4, 4));
+    game.updateNeighbors();
+    Board board = game.board;
+    int one = board.index(1, 1);
+    board.setRevealed(one);
+    // Test 1: nothing happens until the number's flags are all placed
+    t.checkExpect(board.chord(one), 0);
+    t.checkExpect(board.chord(board.index(0, 0)), 0);
+    // Test 2: a wrong flag leaves a mine to open, and nothing is opened
+    board.toggleFlag(board.index(0, 0));
+    t.checkExpect(board.chord(one), -1);
+    t.checkExpect(board.isRevealed(board.index(1, 0)), false);
+    board.toggleFlag(board.index(0, 0));
+    // Test 3: chording from the game opens the rest, cascades included
+    game.onMouseClicked(new Posn(25, 5), "RightButton");
+    game.onMouseClicked(new Posn(25, 25), "MiddleButton");
+    t.checkExpect(board.isRevealed(board.index(0, 0)), true);
+    t.checkExpect(board.isRevealed(board.index(3, 3)), true);
+    t.checkExpect(board.isRevealed(board.index(4, 4)), false);
+    t.checkExpect(game.history.cellCount, 1 + 22);
+    // Test 4: it can be undone like any other move
+    game.undo();
+    t.checkExpect(board.isRevealed(board.index(0, 0)), false);
+    t.checkExpect(board.isRevealed(one), true);
+    // Test 5: a left click on the number chords too, and a wrong flag loses
+    game.onMouseClicked(new Posn(25, 5), "RightButton");
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    game.onMouseClicked(new Posn(25, 25), "LeftButton");
+    t.checkExpect(game.isGameOver, true);
+  }
+
+  // tests the Histogram and HistogramSnapshot classes
+  void testHistogram(Tester t) {
+    Histogram histogram = new Histogram("test");
+    // Test 1: an empty histogram
+    t.checkExpect(histogram.snapshot().count, 0L);
+    t.checkExpect(histogram.snapshot().mean(), 0.0);
+    t.checkExpect(histogram.snapshot().percentile(0.99), 0L);
+    histogram.record(0);
+    histogram.record(-5);
+    histogram.record(1);
+    histogram.record(5);
+    histogram.record(5);
+    histogram.record(1000);
+    HistogramSnapshot snapshot = histogram.snapshot();
+    // Test 2: values land in the bucket of their power of two
+    t.checkExpect(snapshot.count, 6L);
+    t.checkExpect(snapshot.buckets[0], 2L);
+    t.checkExpect(snapshot.buckets[1], 1L);
+    t.checkExpect(snapshot.buckets[3], 2L);
+    t.checkExpect(snapshot.buckets[10], 1L);
+    t.checkExpect(snapshot.total, 1011L);
+    t.checkExpect(snapshot.max, 1000L);
+    // Test 3: percentiles are the top of a bucket, capped by the maximum
+    t.checkExpect(snapshot.percentile(0.3), 0L);
+    t.checkExpect(snapshot.percentile(0.5), 1L);
+    t.checkExpect(snapshot.percentile(0.8), 7L);
+    t.checkExpect(snapshot.percentile(1.0), 1000L);
+  }
+
+  // tests the counts that GameWorld records in Metrics
+  void testMetrics(Tester t) {
+    MetricsSnapshot before = Metrics.snapshot();
+    GameWorld game = new GameWorld(5, 5, 1, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(4, 4));
+    game.updateNeighbors();
+    game.onMouseClicked(new Posn(5, 5), "LeftButton");
+    game.makeScene();
+    MetricsSnapshot after = Metrics.snapshot();
+    // Test 1: the click and its cascade were each counted once
+    t.checkExpect(after.get("click.nanos").count - before.get("click.nanos").count, 1L);
+    t.checkExpect(after.get("flood.cells").count - before.get("flood.cells").count, 1L);
+    t.checkExpect(after.get("flood.cells").total - before.get("flood.cells").total, 24L);
+    t.checkExpect(after.get("flood.depth").total - before.get("flood.depth").total, 5L);
+    // Test 2: the first frame draws every tile
+    t.checkExpect(after.get("scene.tiles").total - before.get("scene.tiles").total, 25L);
+    t.checkExpect(after.get("deal.nanos").count >= before.get("deal.nanos").count, true);
+    t.checkExpect(after.get("nothing"), null);
+    t.checkExpect(after.toString().split("\n").length, 1 + Metrics.ALL.size());
+  }
+
+  // tests the Viewport class
+  void testViewport(Tester t) {
+    Viewport view = new Viewport(100, 200, 300, 300);
+    // Test 1: at zoom 0, a 300 pixel window shows 15 by 15 squares
+    t.checkExpect(view.tile(), 20);
+    t.checkExpect(view.span(), 1);
+    t.checkExpect(view.bottom(), 15);
+    t.checkExpect(view.right(), 15);
+    t.checkExpect(view.shows(14, 14), true);
+    t.checkExpect(view.shows(14, 15), false);
+    // Test 2: the whole board first fits in 8 by 8 blocks
+    t.checkExpect(view.maxZoom(), 3);
+    t.checkExpect(new Viewport(10, 10, 300, 300).maxZoom(), 0);
+    t.checkExpect(new Viewport(20, 30, 300, 300).maxZoom(), 1);
+    // Test 3: panning stops at the edges of the board
+    view.pan(2, 3);
+    t.checkExpect(view.top, 2);
+    t.checkExpect(view.left, 3);
+    view.pan(-10, -10);
+    t.checkExpect(view.top, 0);
+    t.checkExpect(view.left, 0);
+    view.pan(1000, 1000);
+    t.checkExpect(view.top, 85);
+    t.checkExpect(view.left, 185);
+    t.checkExpect(view.bottom(), 100);
+    t.checkExpect(view.right(), 200);
+    // Test 4: zooming keeps the given square in the middle, on whole blocks
+    view.zoomTo(2, 50, 100);
+    t.checkExpect(view.zoom, 2);
+    t.checkExpect(view.tile(), 10);
+    t.checkExpect(view.span(), 4);
+    t.checkExpect(view.top, 0);
+    t.checkExpect(view.left, 40);
+    t.checkExpect(view.right(), 160);
+    t.checkExpect(new HitTester(view).cellAt(25, 45), 16 * 200 + 48);
+    // Test 5: zoom stops where the whole board fits
+    view.zoomTo(9, 50, 100);
+    t.checkExpect(view.zoom, 3);
+    view.zoomTo(-1, 50, 100);
+    t.checkExpect(view.zoom, 0);
+    t.checkExpect(view.top, 43);
+    t.checkExpect(view.left, 93);
+  }
+
+  // tests the Overview class
+  void testOverview(Tester t) {
+    Board board = new Board(6, 10);
+    board.setRevealed(board.index(0, 0));
+    board.setRevealed(board.index(0, 1));
+    board.setRevealed(board.index(1, 0));
+    board.setRevealed(board.index(5, 9));
+    Overview overview = new Overview(board, 3);
+    t.checkExpect(overview.blocksDown(2), 2);
+    t.checkExpect(overview.blocksAcross(2), 3);
+    t.checkExpect(overview.blocksDown(3), 1);
+    t.checkExpect(overview.blocksAcross(3), 2);
+    // Test 1: the first refresh counts the whole board
+    t.checkExpect(overview.stale, true);
+    overview.refresh();
+    t.checkExpect(overview.stale, false);
+    t.checkExpect(overview.opened[2], new int[] {3, 0, 0, 0, 0, 1});
+    t.checkExpect(overview.opened[3], new int[] {3, 1});
+    // Test 2: blocks cut off by the edge count only the squares on the board
+    t.checkExpect(overview.fraction(2, 1, 2), 0.25);
+    t.checkExpect(overview.fraction(3, 0, 1), 1.0 / 12);
+    // Test 3: a touched square is brought up to date at every level
+    board.setRevealed(board.index(2, 5));
+    overview.touch(board.index(2, 5));
+    t.checkExpect(overview.pendingCount, 1);
+    overview.refresh();
+    t.checkExpect(overview.pendingCount, 0);
+    t.checkExpect(overview.opened[2], new int[] {3, 1, 0, 0, 0, 1});
+    t.checkExpect(overview.opened[3], new int[] {4, 1});
+    // Test 4: more changes than blocks make the overview count everything again
+    for (int idx = 0; idx < 7; idx++) {
+      overview.touch(idx);
+    }
+    t.checkExpect(overview.stale, true);
+    t.checkExpect(overview.pendingCount, 0);
+  }
+
+  // tests drawing, panning and zooming a board larger than the window
+  void testViewportScene(Tester t) {
+    GameWorld game = new GameWorld(100, 200, 0, 1);
+    game.initCells();
+    // Test 1: only the squares in view are drawn
+    game.makeScene();
+    t.checkExpect(game.tilesPlaced, 225);
+    // Test 2: the arrow keys move the view by a quarter of the window
+    game.onKeyEvent("right");
+    game.onKeyEvent("down");
+    t.checkExpect(game.view.left, 3);
+    t.checkExpect(game.view.top, 3);
+    t.checkExpect(game.scene, null);
+    game.makeScene();
+    t.checkExpect(game.tilesPlaced, 225);
+    // Test 3: clicks land on the square under them in the view
+    game.onMouseClicked(new Posn(5, 25), "RightButton");
+    t.checkExpect(game.board.isFlagged(game.board.index(4, 3)), true);
+    t.checkExpect(game.dirtyCount, 1);
+    game.makeScene();
+    t.checkExpect(game.tilesPlaced, 226);
+    // Test 4: changes out of view are not drawn
+    game.play(new Posn(20 * 150 + 5, 5), "RightButton");
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 150)), true);
+    t.checkExpect(game.dirtyCount, 0);
+    // Test 5: a drag moves the view along with the mouse
+    game.onMousePressed(new Posn(100, 100), "LeftButton");
+    game.onMouseReleased(new Posn(60, 100), "LeftButton");
+    t.checkExpect(game.view.left, 5);
+    t.checkExpect(game.view.top, 3);
+    // Test 6: zoomed out once, half size tiles show four times as many squares
+    game.onKeyEvent("-");
+    t.checkExpect(game.view.zoom, 1);
+    game.makeScene();
+    t.checkExpect(game.tilesPlaced, 900);
+    game.onMouseClicked(new Posn(75, 35), "RightButton");
+    t.checkExpect(game.board.isFlagged(
+        game.board.index(game.view.top + 3, game.view.left + 7)), true);
+    // Test 7: zoomed out further, the board is drawn from the overview
+    game.onKeyEvent("-");
+    t.checkExpect(game.view.zoom, 2);
+    WorldScene scene = game.makeScene();
+    t.checkExpect(game.overview.levels, 3);
+    t.checkExpect(game.makeScene() == scene, true);
+    game.play(new Posn(20 * 199 + 5, 20 * 99 + 5), "LeftButton");
+    t.checkExpect(game.scene, null);
+    game.makeScene();
+    t.checkExpect(game.overview.fraction(2, 24, 49), 1.0);
+    t.checkExpect(game.overview.fraction(2, 0, 0), 1.0);
+    t.checkExpect(game.overview.fraction(2, 1, 0), 15.0 / 16);
+    // Test 8: a click on the overview zooms back in on the block clicked
+    game.onMouseClicked(new Posn(25, 15), "LeftButton");
+    t.checkExpect(game.view.zoom, 0);
+    t.checkExpect(game.view.top, 0);
+    t.checkExpect(game.view.left, 3);
+  }
+
+  // tests the HitTester class
+  void testHitTester(Tester t) {
+    Viewport view = new Viewport(100, 200, 300, 300);
+    HitTester hits = new HitTester(view);
+    // Test 1: points of the window map to squares, with columns along x
+    t.checkExpect(hits.cellAt(0, 0), 0);
+    t.checkExpect(hits.cellAt(45, 25), 1 * 200 + 2);
+    t.checkExpect(hits.boardX(45), 45);
+    t.checkExpect(hits.boardY(25), 25);
+    // Test 2: points off the window or off the board hit nothing
+    t.checkExpect(hits.cellAt(-1, 5), -1);
+    t.checkExpect(hits.cellAt(5, 300), -1);
+    t.checkExpect(new HitTester(new Viewport(2, 3, 300, 300)).cellAt(65, 5), -1);
+    t.checkExpect(new HitTester(new Viewport(2, 3, 300, 300)).cellAt(5, 45), -1);
+    // Test 3: the cached transform follows the view once it pans or zooms
+    view.pan(2, 3);
+    t.checkExpect(hits.cellAt(45, 25), 3 * 200 + 5);
+    t.checkExpect(hits.originX, 60);
+    t.checkExpect(hits.boardX(45), 105);
+    view.zoomTo(1, 0, 0);
+    t.checkExpect(hits.cellAt(45, 25), 2 * 200 + 4);
+    t.checkExpect(hits.boardX(45), 90);
+    view.zoomTo(2, 0, 0);
+    t.checkExpect(hits.cellAt(45, 25), 8 * 200 + 16);
+    // Test 4: points of the board at full size map whatever the view
+    t.checkExpect(hits.cellOnBoard(45, 25), 1 * 200 + 2);
+    t.checkExpect(hits.cellOnBoard(-5, 25), -1);
+    t.checkExpect(hits.cellOnBoard(4000, 25), -1);
+    t.checkExpect(hits.cellOnBoard(25, 2000), -1);
+  }
+
+  // tests clicks off the board and flagging by dragging
+  void testDragToFlag(Tester t) {
+    GameWorld game = new GameWorld(4, 5, 1, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(3, 4));
+    game.updateNeighbors();
+    // Test 1: clicks off the board, or past its last column, do nothing
+    game.onMouseClicked(new Posn(105, 5), "LeftButton");
+    game.onMouseClicked(new Posn(5, 85), "RightButton");
+    game.play(-20, 5, "RightButton");
+    t.checkExpect(game.flagNum, 0);
+    t.checkExpect(game.history.entries, 0);
+    // Test 2: moving the mouse without a right drag does nothing
+    game.onMouseMoved(new Posn(5, 5));
+    game.onMousePressed(new Posn(5, 5), "LeftButton");
+    game.onMouseMoved(new Posn(25, 5));
+    t.checkExpect(game.flagNum, 0);
+    game.onMouseReleased(new Posn(5, 5), "LeftButton");
+    // Test 3: a right drag flags the square it starts on and each one it
+    // moves onto, once, however often the mouse moves within it
+    game.onMousePressed(new Posn(5, 5), "RightButton");
+    game.onMouseMoved(new Posn(8, 7));
+    t.checkExpect(game.flagNum, 0);
+    game.onMouseMoved(new Posn(25, 5));
+    game.onMouseMoved(new Posn(35, 15));
+    game.onMouseMoved(new Posn(45, 5));
+    t.checkExpect(game.flagNum, 3);
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 0)), true);
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 1)), true);
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 2)), true);
+    // Test 4: dragging back over a flag, or off the board, never takes it off
+    game.onMouseMoved(new Posn(25, 5));
+    game.onMouseMoved(new Posn(500, 5));
+    t.checkExpect(game.flagNum, 3);
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 1)), true);
+    game.onMouseReleased(new Posn(500, 5), "RightButton");
+    t.checkExpect(game.flagging, false);
+    // Test 5: each flag is its own move, undone one at a time
+    t.checkExpect(game.history.entries, 3);
+    game.onKeyEvent("u");
+    t.checkExpect(game.board.isFlagged(game.board.index(0, 2)), false);
+    t.checkExpect(game.flagNum, 2);
+    // Test 6: after the drag, moving the mouse flags nothing
+    game.onMouseMoved(new Posn(65, 25));
+    t.checkExpect(game.flagNum, 2);
+  }
+
+  // tests the countAroundMines method of Board
+  void testCountAroundMines(Tester t) {
+    Board board = new Board(30, 40);
+    board.placeMines(200, new Random(4));
+    Board full = new Board(30, 40);
+    full.mines = board.mines.clone();
+    // Test 1: counting around each mine gives the counts of countNeighbors
+    board.countAroundMines();
+    full.countNeighbors();
+    t.checkExpect(board.counts, full.counts);
+    // Test 2: a board without mines keeps every count at 0
+    Board empty = new Board(3, 3);
+    empty.countAroundMines();
+    t.checkExpect(empty.counts, new byte[9]);
+  }
+
+  // tests dealing the mines on the first left click
+  void testDeal(Tester t) {
+    GameWorld game = new GameWorld(20, 30, 150);
+    // Test 1: until the first left click, there are no mines
+    t.checkExpect(game.deferred, true);
+    t.checkExpect(game.log.deferred, true);
+    t.checkExpect(game.board.size(), 600);
+    t.checkExpect(game.board.numMines, 0);
+    // Test 2: a flag or a click off the board doesn't deal
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    game.onMouseClicked(new Posn(-5, 5), "LeftButton");
+    t.checkExpect(game.deferred, true);
+    // Test 3: the first left click places every mine away from it
+    game.onMouseClicked(new Posn(105, 105), "LeftButton");
+    t.checkExpect(game.deferred, false);
+    t.checkExpect(game.board.numMines, 150);
+    t.checkExpect(game.isGameOver, false);
+    for (int row = 4; row <= 6; row++) {
+      for (int col = 4; col <= 6; col++) {
+        t.checkExpect(game.board.isMine(game.board.index(row, col)), false);
+      }
+    }
+    t.checkExpect(game.board.mineNum(game.board.index(5, 5)), 0);
+    t.checkExpect(game.board.isRevealed(game.board.index(4, 4)), true);
+    // Test 4: the counts are those of counting every square
+    Board full = new Board(20, 30);
+    full.mines = game.board.mines.clone();
+    full.countNeighbors();
+    t.checkExpect(game.board.counts, full.counts);
+    // Test 5: a flag put down before the deal counts if a mine landed on it
+    t.checkExpect(game.board.rightFlags, game.board.isMine(0) ? 1 : 0);
+    t.checkExpect(game.minesLeft(), 149);
+    // Test 6: the same seed and first click deal the same board
+    GameWorld first = new GameWorld(20, 30, 150, 9);
+    first.defer();
+    GameWorld second = new GameWorld(20, 30, 150, 9);
+    second.defer();
+    first.onMouseClicked(new Posn(285, 45), "LeftButton");
+    second.onMouseClicked(new Posn(285, 45), "LeftButton");
+    t.checkExpect(first.board.mines, second.board.mines);
+    t.checkExpect(first.board.revealed, second.board.revealed);
+    // Test 7: a mine in a corner is never dealt next to a first click there
+    GameWorld corner = new GameWorld(3, 3, 5, 2);
+    corner.defer();
+    corner.onMouseClicked(new Posn(5, 5), "LeftButton");
+    t.checkExpect(corner.board.numMines, 5);
+    t.checkExpect(corner.board.isMine(corner.board.index(1, 1)), false);
+    t.checkExpect(corner.board.mineNum(0), 0);
+  }
+
+  // tests replaying a game dealt on its first left click
+  void testReplayDeferred(Tester t) {
+    GameWorld game = new GameWorld(12, 12, 20, 3);
+    game.defer();
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    game.onMouseClicked(new Posn(125, 125), "LeftButton");
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    game.onMouseClicked(new Posn(225, 225), "RightButton");
+    // Test 1: a saved log keeps that the game was dealt on the first click
+    try {
+      Path path = Files.createTempFile("minesweeper", ".log");
+      game.log.save(path);
+      MoveLog loaded = MoveLog.load(path);
+      t.checkExpect(loaded.deferred, true);
+      t.checkExpect(loaded.noGuess, false);
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+    // Test 2: the replay deals the same board, and seeking back past the
+    // first click and forward again gives the same game
+    Replay replay = new Replay(game.log, 1);
+    t.checkExpect(replay.game.board.mines, game.board.mines);
+    t.checkExpect(replay.seek(1).deferred, true);
+    t.checkExpect(replay.game.board.numMines, 0);
+    t.checkExpect(replay.seek(4).board.mines, game.board.mines);
+    t.checkExpect(replay.game.board.revealed, game.board.revealed);
+    t.checkExpect(replay.game.numMines, game.numMines);
+    t.checkExpect(replay.game.flagNum, game.flagNum);
+    // Test 3: seeking from before the first click to far after it plays up
+    // to the click and puts back the snapshot, rather than playing every
+    // move; a flag changed in the log after the click is never played again
+    GameWorld played = new GameWorld(12, 12, 20, 3);
+    played.defer();
+    played.onMouseClicked(new Posn(5, 5), "RightButton");
+    played.onMouseClicked(new Posn(125, 125), "LeftButton");
+    int flagged = 0;
+    int spare = -1;
+    long[] atTen = null;
+    for (int idx = 0; idx < played.board.size(); idx++) {
+      if (played.board.isRevealed(idx) || played.board.isFlagged(idx)) {
+        continue;
+      }
+      if (flagged == 10) {
+        spare = idx;
+        break;
+      }
+      played.onMouseClicked(new Posn(played.board.colOf(idx) * 20 + 5,
+          played.board.rowOf(idx) * 20 + 5), "RightButton");
+      flagged++;
+      if (played.log.size == 10) {
+        atTen = played.board.flagged.clone();
+      }
+    }
+    Replay skip = new Replay(played.log, 4);
+    t.checkExpect(skip.seek(1).deferred, true);
+    played.log.xs[3] = played.board.colOf(spare) * 20 + 5;
+    played.log.ys[3] = played.board.rowOf(spare) * 20 + 5;
+    t.checkExpect(skip.seek(10).board.flagged, atTen);
+    t.checkExpect(skip.position, 10);
+    t.checkExpect(skip.game.board.mines, played.board.mines);
+  }
+
+  // tests the countNeighbors method of Board
+  void testCountNeighbors(Tester t) {
+    // Test 1: counts along the edges, with mines counted as 0
+    Board small = new Board(3, 4);
+    small.setMine(small.index(0, 0));
+    small.setMine(small.index(1, 2));
+    small.setMine(small.index(2, 3));
+    small.countNeighbors();
+    t.checkExpect(small.counts, new byte[] {0, 2, 1, 1, 1, 2, 0, 2, 0, 1, 2, 0});
+    // Test 2: boards one square wide or one row long
+    Board column = new Board(4, 1);
+    column.setMine(1);
+    column.countNeighbors();
+    t.checkExpect(column.counts, new byte[] {1, 0, 1, 0});
+    Board row = new Board(1, 4);
+    row.setMine(1);
+    row.setMine(2);
+    row.countNeighbors();
+    t.checkExpect(row.counts, new byte[] {1, 0, 0, 1});
+    // Test 3: a board large enough to be counted in strips across the pool
+    // matches one counted around each mine
+    Board large = new Board(600, 500);
+    large.placeMines(50000, new Random(6));
+    Board around = new Board(600, 500);
+    around.mines = large.mines.clone();
+    large.countNeighbors();
+    around.countAroundMines();
+    t.checkExpect(large.size() >= CountTask.PARALLEL, true);
+    t.checkExpect(large.counts, around.counts);
+    // Test 4: counting strips of rows on their own gives the same counts
+    Board strips = new Board(600, 500);
+    strips.mines = large.mines.clone();
+    strips.countRows(0, 7);
+    strips.countRows(7, 300);
+    strips.countRows(300, 600);
+    t.checkExpect(strips.counts, large.counts);
+  }
+
+  // tests the counters of Board
+  void testBoardCounters(Tester t) {
+    Board board = new Board(3, 3);
+    board.setMine(0);
+    board.setMine(8);
+    board.countNeighbors();
+    // Test 1: opening counts safe squares once, and never mines
+    board.setRevealed(4);
+    board.setRevealed(4);
+    board.setRevealed(0);
+    t.checkExpect(board.safeOpened, 1);
+    t.checkExpect(board.safeLeft(), 6);
+    board.hide(0);
+    board.hide(4);
+    board.hide(4);
+    t.checkExpect(board.safeOpened, 0);
+    // Test 2: flags count once each, and on mines as right flags
+    board.toggleFlag(0);
+    board.toggleFlag(1);
+    t.checkExpect(board.flags, 2);
+    t.checkExpect(board.rightFlags, 1);
+    board.toggleFlag(0);
+    t.checkExpect(board.flags, 1);
+    t.checkExpect(board.rightFlags, 0);
+    // Test 3: a mine placed under a flag or moved keeps the counters right
+    board.setMine(1);
+    t.checkExpect(board.rightFlags, 1);
+    board.moveMine(1, 2);
+    t.checkExpect(board.rightFlags, 0);
+    // Test 4: recounting the bitsets gives the same counters
+    board.floodFill(6);
+    int opened = board.safeOpened;
+    board.recount();
+    t.checkExpect(board.safeOpened, opened);
+    t.checkExpect(board.flags, 1);
+    t.checkExpect(board.rightFlags, 0);
+  }
+
+  // tests winning, and the counters shown below the board
+  void testWinCounters(Tester t) {
+    GameWorld game = new GameWorld(3, 3, 2, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(0, 2));
+    game.board.setMine(game.board.index(2, 2));
+    game.updateNeighbors();
+    t.checkExpect(game.minesLeft(), 2);
+    t.checkExpect(game.cellsLeft(), 7);
+    // Test 1: a wrong flag alongside the right ones doesn't win
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    game.onMouseClicked(new Posn(45, 5), "RightButton");
+    game.onMouseClicked(new Posn(45, 45), "RightButton");
+    t.checkExpect(game.isWon(), false);
+    t.checkExpect(game.isGameOver, false);
+    t.checkExpect(game.minesLeft(), -1);
+    // Test 2: taking the wrong flag off wins
+    game.onMouseClicked(new Posn(5, 5), "RightButton");
+    t.checkExpect(game.isWon(), true);
+    t.checkExpect(game.isGameOver, true);
+    // Test 3: opening every safe square wins, whatever the flags
+    GameWorld open = new GameWorld(3, 3, 2, 1);
+    open.initCells();
+    open.board.setMine(open.board.index(0, 2));
+    open.board.setMine(open.board.index(2, 2));
+    open.updateNeighbors();
+    open.onMouseClicked(new Posn(5, 5), "RightButton");
+    open.onMouseClicked(new Posn(25, 5), "LeftButton");
+    open.onMouseClicked(new Posn(25, 25), "LeftButton");
+    open.onMouseClicked(new Posn(25, 45), "LeftButton");
+    open.onMouseClicked(new Posn(45, 25), "LeftButton");
+    open.onMouseClicked(new Posn(5, 5), "RightButton");
+    t.checkExpect(open.cellsLeft(), 3);
+    open.onMouseClicked(new Posn(5, 5), "LeftButton");
+    t.checkExpect(open.cellsLeft(), 0);
+    t.checkExpect(open.isGameOver, true);
+    // Test 4: undoing the last opening takes the count back
+    open.undo();
+    t.checkExpect(open.cellsLeft(), 3);
+    // Test 5: before the deal, the counters count the mines still to come
+    GameWorld deferred = new GameWorld(10, 10, 12, 4);
+    deferred.defer();
+    deferred.onMouseClicked(new Posn(5, 5), "RightButton");
+    t.checkExpect(deferred.minesLeft(), 11);
+    t.checkExpect(deferred.cellsLeft(), 88);
+    t.checkExpect(deferred.isWon(), false);
+    // Test 6: the counters are drawn below the board only when they change
+    deferred.onKeyEvent("i");
+    t.checkExpect(deferred.view.height, 280);
+    deferred.makeScene();
+    int placed = deferred.tilesPlaced;
+    t.checkExpect(deferred.hudMines, 11);
+    deferred.makeScene();
+    t.checkExpect(deferred.tilesPlaced, placed);
+    deferred.onMouseClicked(new Posn(5, 5), "RightButton");
+    deferred.makeScene();
+    t.checkExpect(deferred.tilesPlaced, placed + 3);
+    t.checkExpect(deferred.hudMines, 12);
+    deferred.onKeyEvent("i");
+    t.checkExpect(deferred.view.height, 300);
+  }
+
+  // tests measuring boards with BoardStats
+  void testBoardStats(Tester t) {
+    // Test 1: a mine in a corner leaves one opening, cleared in one click
+    Board corner = new Board(4, 4);
+    corner.setMine(corner.index(0, 0));
+    BoardStats one = BoardStats.of(corner, 0);
+    t.checkExpect(one.bbbv, 1);
+    t.checkExpect(one.openings, 1);
+    t.checkExpect(one.openingCells, 12);
+    t.checkExpect(one.largestOpening, 12);
+    t.checkExpect(one.islands, 0);
+    t.checkExpect(one.mines, 1);
+    t.checkExpect(one.counts, new int[] {12, 3, 0, 0, 0, 0, 0, 0, 0});
+    // Test 2: with mines in every corner, every number is clicked on its own
+    // and they all touch
+    Board corners = new Board(3, 3);
+    corners.setMine(corners.index(0, 0));
+    corners.setMine(corners.index(0, 2));
+    corners.setMine(corners.index(2, 0));
+    corners.setMine(corners.index(2, 2));
+    BoardStats four = BoardStats.of(corners, 0);
+    t.checkExpect(four.bbbv, 5);
+    t.checkExpect(four.openings, 0);
+    t.checkExpect(four.islands, 1);
+    t.checkExpect(four.islandCells, 5);
+    t.checkExpect(four.largestIsland, 5);
+    t.checkExpect(four.counts, new int[] {0, 0, 4, 0, 1, 0, 0, 0, 0});
+    // Test 3: one row split by a mine has two openings, and two mines leave
+    // three numbers apart
+    Board split = new Board(1, 7);
+    split.setMine(3);
+    BoardStats halves = BoardStats.of(split, 0);
+    t.checkExpect(halves.bbbv, 2);
+    t.checkExpect(halves.openings, 2);
+    t.checkExpect(halves.openingCells, 4);
+    t.checkExpect(halves.largestOpening, 2);
+    Board apart = new Board(1, 5);
+    apart.setMine(1);
+    apart.setMine(3);
+    BoardStats three = BoardStats.of(apart, 0);
+    t.checkExpect(three.bbbv, 3);
+    t.checkExpect(three.openings, 0);
+    t.checkExpect(three.islands, 3);
+    t.checkExpect(three.largestIsland, 1);
+    // Test 4: the two arms of a U are one opening, though they only meet in
+    // the last row
+    Board cup = new Board(4, 5);
+    cup.setMine(cup.index(0, 2));
+    cup.setMine(cup.index(1, 2));
+    BoardStats u = BoardStats.of(cup, 0);
+    t.checkExpect(u.bbbv, 1);
+    t.checkExpect(u.openings, 1);
+    t.checkExpect(u.openingCells, 11);
+    t.checkExpect(u.largestOpening, 11);
+    t.checkExpect(u.islands, 0);
+    // Test 5: a batch in parallel measures each board as dealt from its seed
+    BoardStats[] batch = BoardStats.run(9, 11, 15, 40, 30, new ForkJoinPool(3));
+    for (int i = 0; i < 30; i++) {
+      Board board = new Board(9, 11);
+      board.placeMines(15, new Random(40 + i));
+      t.checkExpect(batch[i], BoardStats.of(board, 40 + i));
+    }
+  }
+
+  // tests writing and reading BoardStats with StatsFile
+  void testStatsFile(Tester t) {
+    BoardStats[] stats = BoardStats.run(16, 30, 99, 7, 25, ForkJoinPool.commonPool());
+    try {
+      Path path = Files.createTempFile("minesweeper", ".msst");
+      StatsFile.save(stats, path);
+      // Test 1: every column comes back
+      t.checkExpect(StatsFile.load(path), stats);
+      // Test 2: a column starts where the header and the columns before it end
+      ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+      bytes.order(ByteOrder.LITTLE_ENDIAN);
+      int header = 16;
+      for (String name : StatsFile.COLUMNS) {
+        header += 4 + name.length();
+      }
+      t.checkExpect(bytes.getLong(header + 8), stats[1].seed);
+      t.checkExpect(bytes.getInt(header + 8 * 25 + 4 * 25 * 3 + 4 * 2), stats[2].bbbv);
+      // Test 3: anything else is refused
+      Files.write(path, new byte[100]);
+      String message = "";
+      try {
+        StatsFile.load(path);
+      }
+      catch (IOException e) {
+        message = e.getMessage();
+      }
+      t.checkExpect(message, "not a board statistics file");
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
   // tests the updateNeighbors method
   void testUpdateNeighbors(Tester t) {
-    GameWorld game = new GameWorld(2, 2, 0, 1);
+    GameWorld game = new GameWorld(2, 3, 0, 1);
     // initializes the world with Cells
     game.initCells();
-    // Test 1: the list of neighbors for each cell now should be empty
-    for (int r = 0; r < game.grid.size(); r++) {
-      for (int c = 0; c < game.grid.get(r).size(); c++) {
-        Cell cell = (Cell) game.grid.get(r).get(c);
-        t.checkExpect(cell.neighbors.size(), 0);
-      }
-    }
-    // update the neighbors
+    // Test 1: with no Mines, every cell should have no mines around it
     game.updateNeighbors();
-    // Test 2: because the grid is a 2x2 square with no Mines, each cell should have
-    // 3 neighbors
-    for (int r = 0; r < game.grid.size(); r++) {
-      for (int c = 0; c < game.grid.get(r).size(); c++) {
-        Cell cell = (Cell) game.grid.get(r).get(c);
-        t.checkExpect(cell.neighbors.size(), 3);
+    for (int r = 0; r < game.board.length; r++) {
+      for (int c = 0; c < game.board.width; c++) {
+        t.checkExpect(game.board.mineNum(game.board.index(r, c)), 0);
       }
     }
+    // put a Mine in the top left corner and update the neighbors
+    game.board.setMine(game.board.index(0, 0));
+    game.updateNeighbors();
+    // Test 2: only the cells touching the corner should count it
+    t.checkExpect(game.board.mineNum(game.board.index(0, 1)), 1);
+    t.checkExpect(game.board.mineNum(game.board.index(1, 0)), 1);
+    t.checkExpect(game.board.mineNum(game.board.index(1, 1)), 1);
+    t.checkExpect(game.board.mineNum(game.board.index(0, 2)), 0);
+    t.checkExpect(game.board.mineNum(game.board.index(1, 2)), 0);
   }
 
   // tests the CheckOutOfBounds method
@@ -607,13 +8919,117 @@ class RunMinesweeper {
     GameWorld game = new GameWorld(5, 5, 5, 1);
     // initialize the world with Cells
     game.initCells();
-    t.checkExpect(game.checkOutOfBounds(3, game.grid.size()), 3);
-    t.checkExpect(game.checkOutOfBounds(0, game.grid.size()), 0);
-    t.checkExpect(game.checkOutOfBounds(-1, game.grid.size()), 0);
-    t.checkExpect(game.checkOutOfBounds(5, game.grid.size()), 4);
-    t.checkExpect(game.checkOutOfBounds(4, game.grid.size()), 4);
+    t.checkExpect(game.checkOutOfBounds(3, game.board.length), 3);
+    t.checkExpect(game.checkOutOfBounds(0, game.board.length), 0);
+    t.checkExpect(game.checkOutOfBounds(-1, game.board.length), 0);
+    t.checkExpect(game.checkOutOfBounds(5, game.board.length), 4);
+    t.checkExpect(game.checkOutOfBounds(4, game.board.length), 4);
+  }
+
+  // tests that floodFill can open a very large empty area at once
+  void testFloodFillLarge(Tester t) {
+    Board board = new Board(1000, 1000);
+    board.countNeighbors();
+    // Test 1: a million squares open without overflowing the stack
+    t.checkExpect(board.floodFill(board.index(500, 500)), 1000000);
+    t.checkExpect(board.openedCount, 1000000);
+    t.checkExpect(board.opened[0], board.index(500, 500));
+    // Test 2: the fill stops at flags and at numbered squares
+    Board walled = new Board(3, 5);
+    walled.setMine(walled.index(0, 4));
+    walled.countNeighbors();
+    walled.toggleFlag(walled.index(2, 2));
+    t.checkExpect(walled.floodFill(walled.index(2, 0)), 13);
+    t.checkExpect(walled.isRevealed(walled.index(2, 2)), false);
+    t.checkExpect(walled.isRevealed(walled.index(2, 4)), true);
+  }
+
+  // tests the bitset accessors of Board
+  void testBoardBits(Tester t) {
+    Board board = new Board(3, 50);
+    // Test 1: a 3x50 board needs three 64-bit words per bitset
+    t.checkExpect(board.mines.length, 3);
+    t.checkExpect(board.index(2, 10), 110);
+    t.checkExpect(board.rowOf(110), 2);
+    t.checkExpect(board.colOf(110), 10);
+    // Test 2: setting a bit only affects that square
+    board.setMine(110);
+    t.checkExpect(board.isMine(110), true);
+    t.checkExpect(board.isMine(109), false);
+    t.checkExpect(board.isMine(46), false);
+    // Test 3: flags can be put on and taken off again
+    board.toggleFlag(64);
+    t.checkExpect(board.isFlagged(64), true);
+    board.toggleFlag(64);
+    t.checkExpect(board.isFlagged(64), false);
+  }
+
+  // tests the pieceAt method of Board
+  void testPieceAt(Tester t) {
+    Board board = new Board(2, 2);
+    board.setMine(0);
+    board.countNeighbors();
+    board.setRevealed(3);
+    board.toggleFlag(1);
+    t.checkExpect(board.pieceAt(0), new Mine(0, 0, false));
+    t.checkExpect(board.pieceAt(1), new Flag(1));
+    t.checkExpect(board.pieceAt(2), new Cell(1, false));
+    t.checkExpect(board.pieceAt(3), new Cell(1, true));
+    board.toggleFlag(0);
+    t.checkExpect(board.pieceAt(0), new Flag(true));
+  }
+
+  // tests the floodFill method
+  void testFloodFill(Tester t) {
+    GameWorld game = new GameWorld(3, 4, 0, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(0, 3));
+    game.updateNeighbors();
+    // Test 1: clicking a numbered cell only opens that cell
+    t.checkExpect(game.floodFill(0, 2), 1);
+    t.checkExpect(game.board.isRevealed(game.board.index(0, 2)), true);
+    t.checkExpect(game.board.isRevealed(game.board.index(1, 2)), false);
+    // Test 2: clicking an empty cell opens everything but the Mine
+    t.checkExpect(game.floodFill(2, 0), 10);
+    t.checkExpect(game.board.isRevealed(game.board.index(0, 3)), false);
+    // Test 3: clicking an opened cell does nothing
+    t.checkExpect(game.floodFill(2, 0), 0);
   }
 
+  // tests the makeScene method
+  void testMakeScene(Tester t) {
+    GameWorld game = new GameWorld(2, 3, 0, 1);
+    game.initCells();
+    game.board.setMine(game.board.index(0, 2));
+    game.updateNeighbors();
+    WorldImage bg = new RectangleImage(60, 40, OutlineMode.SOLID, Color.CYAN);
+    // Test 1: the first frame draws every cell, with columns along the x axis
+    WorldScene expected = game.getEmptyScene();
+    for (int r = 0; r < 2; r++) {
+      for (int c = 0; c < 3; c++) {
+        expected.placeImageXY(game.pieceAt(r, c).drawAt(0, 0, bg), 20 * c + 10, 20 * r + 10);
+      }
+    }
+    WorldScene scene = game.makeScene();
+    t.checkExpect(scene, expected);
+    // Test 2: a frame with no changes gives back the same scene untouched
+    t.checkExpect(game.makeScene() == scene, true);
+    t.checkExpect(scene, expected);
+    // Test 3: after a flag, only the flagged cell is drawn on top
+    game.onMouseClicked(new Posn(50, 30), "RightButton");
+    t.checkExpect(game.dirtyCount, 1);
+    expected.placeImageXY(game.pieceAt(1, 2).drawAt(0, 0, bg), 50, 30);
+    t.checkExpect(game.makeScene(), expected);
+    t.checkExpect(game.dirtyCount, 0);
+    // Test 4: after a flood fill, only the opened cells are drawn on top
+    game.onMouseClicked(new Posn(10, 30), "LeftButton");
+    t.checkExpect(game.dirtyCount, 4);
+    expected.placeImageXY(game.pieceAt(1, 0).drawAt(0, 0, bg), 10, 30);
+    expected.placeImageXY(game.pieceAt(0, 0).drawAt(0, 0, bg), 10, 10);
+    expected.placeImageXY(game.pieceAt(0, 1).drawAt(0, 0, bg), 30, 10);
+    expected.placeImageXY(game.pieceAt(1, 1).drawAt(0, 0, bg), 30, 30);
+    t.checkExpect(game.makeScene(), expected);
+  }
   
   //test method lastScene
   void testLastScene(Tester t) {
@@ -628,23 +9044,64 @@ class RunMinesweeper {
     t.checkExpect(game.lastScene("You lost"), background2);
   }
 
-  // tests the addNeighbor and countNeighbor method
-  void testAddAndCountNeighbor(Tester t) {
-    Cell cell = new Cell();
-    Mine mine = new Mine(5, 5);
-    Flag flag = new Flag(false);
-    // Test 1: check the list of neighbors for cell is empty
-    t.checkExpect(cell.neighbors.size(), 0);
-    // update the list of neighbors with new IGamePieces
-    cell.addNeighbor(mine);
-    cell.addNeighbor(new Mine(5, 3));
-    cell.addNeighbor(new Cell());
-    cell.addNeighbor(new Flag(false));
-    // Test 2: check that the list of neighbors is now size 4
-    t.checkExpect(cell.neighbors.size(), 4);
-    // Test 3: check that the countNeighbor method returns 2 mines as expected
-    cell.countNeighbor();
-    t.checkExpect(cell.mineNum, 2);
+  // tests the neighbors of SquareTopology, TorusTopology and HexTopology
+  void testTopology(Tester t) {
+    int[] out = new int[ITopology.MAX];
+    // Test 1: a plain grid cuts the squares off at the edges
+    ITopology square = new SquareTopology();
+    t.checkExpect(square.neighbors(3, 4, 0, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] {1, 4, 5});
+    t.checkExpect(square.neighbors(3, 4, 5, out), 8);
+    t.checkExpect(square.isSquare(), true);
+    // Test 2: a torus wraps a corner around to the other three, and counts a
+    // square reached from two sides once
+    ITopology torus = new TorusTopology();
+    t.checkExpect(torus.neighbors(3, 4, 0, out), 8);
+    t.checkExpect(Arrays.copyOf(out, 8), new int[] {11, 8, 9, 3, 1, 7, 4, 5});
+    t.checkExpect(torus.neighbors(2, 2, 0, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] {3, 2, 1});
+    t.checkExpect(torus.neighbors(1, 1, 0, out), 0);
+    t.checkExpect(torus.isSquare(), false);
+    // Test 3: a hexagon touches the rows above and below to the left on even
+    // rows and to the right on odd ones
+    ITopology hex = new HexTopology();
+    t.checkExpect(hex.neighbors(4, 4, 5, out), 6);
+    t.checkExpect(Arrays.copyOf(out, 6), new int[] {1, 2, 4, 6, 9, 10});
+    t.checkExpect(hex.neighbors(4, 4, 9, out), 6);
+    t.checkExpect(Arrays.copyOf(out, 6), new int[] {4, 5, 8, 10, 12, 13});
+    t.checkExpect(hex.neighbors(4, 4, 0, out), 2);
+    t.checkExpect(Arrays.copyOf(out, 2), new int[] {1, 4});
+    // Test 4: a Board counts and floods across the edges of a torus
+    Board ring = new Board(4, 4, new TorusTopology());
+    ring.setMine(0);
+    ring.countNeighbors();
+    t.checkExpect(ring.counts,
+        new byte[] {0, 1, 0, 1, 1, 1, 0, 1, 0, 0, 0, 0, 1, 1, 0, 1});
+    t.checkExpect(ring.floodFill(ring.index(2, 2)), 15);
+    t.checkExpect(ring.safeLeft(), 0);
+    // Test 5: a Board of hexagons counts the 6 around a mine
+    Board hive = new Board(3, 3, new HexTopology());
+    hive.setMine(4);
+    hive.countNeighbors();
+    t.checkExpect(hive.counts, new byte[] {0, 1, 1, 1, 0, 1, 0, 1, 1});
+    // Test 6: the first click keeps its wrapped neighbors free of mines too
+    Board first = new Board(3, 4, new TorusTopology());
+    first.placeMines(8, new Random(3), 0);
+    t.checkExpect(first.numMines, 3);
+    t.checkExpect(first.isMine(2) && first.isMine(6) && first.isMine(10), true);
+    // Test 7: the solver compares numbers that share a cell across the
+    // wrapped edge: the 1 at column 0 sees only column 7, which the 1 at
+    // column 6 also sees, so column 5 is safe
+    Board loop = new Board(1, 8, new TorusTopology());
+    loop.setMine(7);
+    loop.countNeighbors();
+    loop.setRevealed(0);
+    loop.setRevealed(1);
+    loop.setRevealed(6);
+    ConstraintSolver solver = new ConstraintSolver();
+    solver.start(loop, 0);
+    t.checkExpect(solver.applyPairs(0), true);
+    t.checkExpect(Board.get(solver.knownSafe, 5), true);
   }
 
   // tests the isMine method
@@ -684,6 +9141,265 @@ class RunMinesweeper {
                 new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray))));
   }
 
+  // tests that drawAt without an offset shares the tiles of TileAtlas
+  void testTileAtlas(Tester t) {
+    this.initialTestCondition();
+    WorldImage bg = new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK);
+    // Test 1: the shared tiles are the same instances for every piece
+    t.checkExpect(c1.drawAt(0, 0, bg) == new Cell().drawAt(0, 0, bg), true);
+    t.checkExpect(c2.drawAt(0, 0, bg) == TileAtlas.REVEALED[3], true);
+    t.checkExpect(m1.drawAt(0, 0, bg) == TileAtlas.HIDDEN, true);
+    t.checkExpect(m2.drawAt(0, 0, bg) == TileAtlas.MINE, true);
+    t.checkExpect(f1.drawAt(0, 0, bg) == f2.drawAt(0, 0, bg), true);
+    // Test 2: the shared tiles look exactly like the ones built by hand
+    t.checkExpect(c1.drawAt(0, 0, bg),
+        new OverlayOffsetImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK), 0, 0,
+            new RectangleImage(20, 20, OutlineMode.SOLID, Color.CYAN)));
+    Integer n = 3;
+    t.checkExpect(c2.drawAt(0, 0, bg),
+        new OverlayOffsetImage(new TextImage(n.toString(), Color.ORANGE), 0, 0,
+            new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
+                new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray))));
+    t.checkExpect(new Cell(0, true).drawAt(0, 0, bg),
+        new OverlayImage(new RectangleImage(20, 20, OutlineMode.OUTLINE, Color.BLACK),
+            new RectangleImage(20, 20, OutlineMode.SOLID, Color.lightGray)));
+    // Test 3: tileAt picks the same tile as the piece showing that square
+    Board board = new Board(2, 2);
+    board.setMine(0);
+    board.countNeighbors();
+    board.setRevealed(3);
+    board.toggleFlag(1);
+    for (int idx = 0; idx < 4; idx++) {
+      t.checkExpect(TileAtlas.tileAt(board, idx) == board.pieceAt(idx).drawAt(0, 0, bg), true);
+    }
+  }
+
+  // tests that the benchmarks run every operation on every board
+  void testBenchmarks(Tester t) {
+    Benchmarks bench = new Benchmarks(new int[] { 8, 12 }, new double[] { 0.1 }, 0, 1);
+    ArrayList<BenchResult> results = bench.runAll();
+    // Test 1: seven benchmarks for each of the two board sizes
+    t.checkExpect(results.size(), 14);
+    t.checkExpect(results.get(0).name, "initCells");
+    t.checkExpect(results.get(7).size, 12);
+    // Test 2: every benchmark ran at least once
+    for (BenchResult result : results) {
+      t.checkExpect(result.runs >= 1, true);
+    }
+    // Test 3: the empty cell found for the flood fill is safe and empty
+    bench.newGame(12, 0.1, 3);
+    int idx = bench.findEmptyCell();
+    t.checkExpect(bench.game.board.isMine(idx), false);
+    t.checkExpect(bench.game.board.mineNum(idx), 0);
+    // Test 4: on a board larger than the window, the click benchmark still
+    // opens the empty cell, and the dirty squares are all in view
+    bench.newGame(100, 0.3, 3);
+    bench.target = bench.findEmptyCell();
+    bench.showTarget();
+    t.checkExpect(bench.game.view.shows(bench.game.board.rowOf(bench.target),
+        bench.game.board.colOf(bench.target)), true);
+    t.checkExpect(bench.clickTarget() > 0, true);
+    t.checkExpect(bench.game.board.isRevealed(bench.target), true);
+    bench.newGame(100, 0.3, 3);
+    bench.game.makeScene();
+    bench.markDirtyInView(10);
+    t.checkExpect(bench.game.dirtyCount, 10);
+  }
+
+  // tests the Simulator class
+  void testSimulator(Tester t) {
+    Simulator sim = new Simulator(9, 9, 10, RandomPlayer::new);
+    SimulationResult alone = sim.playAll(100, 500);
+    SimulationResult parallel =
+        new Simulator(9, 9, 10, RandomPlayer::new, new ForkJoinPool(4)).run(100, 500);
+    // Test 1: the same seeds give the same result however the batch is split
+    t.checkExpect(parallel.games, 500L);
+    t.checkExpect(parallel.wins, alone.wins);
+    t.checkExpect(parallel.clicks, alone.clicks);
+    t.checkExpect(parallel.cascadeSizes, alone.cascadeSizes);
+    // Test 2: every game takes at least one click
+    t.checkExpect(alone.clicksPerGame() >= 1, true);
+    // Test 3: a board without mines is won with one click that opens everything
+    SimulationResult empty = new Simulator(5, 6, 0, RandomPlayer::new).playAll(0, 3);
+    t.checkExpect(empty.wins, 3L);
+    t.checkExpect(empty.clicks, 3L);
+    t.checkExpect(empty.maxCascade, 30);
+    t.checkExpect(empty.cascadeSizes[4], 3L);
+  }
+
+  // tests the RandomPlayer class
+  void testRandomPlayer(Tester t) {
+    Board board = new Board(2, 2);
+    RandomPlayer player = new RandomPlayer();
+    player.start(board, 1);
+    board.setRevealed(2);
+    // Test 1: every hidden cell is tried exactly once, opened ones are skipped
+    boolean[] seen = new boolean[4];
+    for (int i = 0; i < 3; i++) {
+      int idx = player.nextMove(board);
+      t.checkExpect(seen[idx], false);
+      t.checkExpect(idx == 2, false);
+      seen[idx] = true;
+    }
+    // Test 2: the player gives up once nothing is left
+    t.checkExpect(player.nextMove(board), -1);
+  }
+
+  // tests the single-cell rule of ConstraintSolver
+  void testSolverSingle(Tester t) {
+    Board board = new Board(1, 3);
+    board.setMine(2);
+    board.countNeighbors();
+    ConstraintSolver solver = new ConstraintSolver();
+    solver.start(board, 0);
+    // Test 1: nothing is proved before anything is opened
+    t.checkExpect(solver.nextSafe(board), -1);
+    // Test 2: the 1 next to the last hidden cell proves it is a mine
+    int opened = board.floodFill(0);
+    solver.opened(board, board.opened, opened);
+    t.checkExpect(solver.nextSafe(board), -1);
+    t.checkExpect(solver.isKnownMine(2), true);
+    t.checkExpect(solver.isKnownMine(1), false);
+  }
+
+  // tests the pairwise subset rule of ConstraintSolver
+  void testSolverPairs(Tester t) {
+    // the bottom row shows 1 2 1 under three hidden cells, and mines are
+    // under the two outer ones
+    Board board = new Board(2, 3);
+    board.setMine(0);
+    board.setMine(2);
+    board.countNeighbors();
+    for (int idx = 3; idx < 6; idx++) {
+      board.setRevealed(idx);
+      board.opened[idx - 3] = idx;
+    }
+    ConstraintSolver solver = new ConstraintSolver();
+    solver.start(board, 0);
+    solver.opened(board, board.opened, 3);
+    // Test 1: no single number proves anything, but comparing the 1 with the
+    // 2 next to it does: the middle hidden cell is safe
+    t.checkExpect(solver.nextSafe(board), 1);
+    // Test 2: a proved cell is handed out once, and the outer ones are mines
+    t.checkExpect(solver.nextSafe(board), -1);
+    t.checkExpect(solver.isKnownMine(0), true);
+    t.checkExpect(solver.isKnownMine(2), true);
+    t.checkExpect(solver.isKnownMine(1), false);
+  }
+
+  // tests that ConstraintSolver guesses only when nothing is proved
+  void testSolverGuess(Tester t) {
+    Board board = new Board(3, 3);
+    board.setMine(8);
+    board.countNeighbors();
+    ConstraintSolver solver = new ConstraintSolver();
+    solver.start(board, 0);
+    // Test 1: the first move has to be a guess, away from any number
+    t.checkExpect(solver.nextMove(board), 0);
+    int opened = board.floodFill(0);
+    solver.opened(board, board.opened, opened);
+    // Test 2: after that the solver proves the last hidden cell is a mine
+    t.checkExpect(opened, 8);
+    t.checkExpect(solver.nextMove(board), -1);
+    t.checkExpect(solver.isKnownMine(8), true);
+  }
+
+  // tests that ConstraintSolver wins far more often than random clicking
+  void testSolverSimulated(Tester t) {
+    SimulationResult random = new Simulator(9, 9, 10, RandomPlayer::new).playAll(0, 300);
+    SimulationResult solved = new Simulator(9, 9, 10, ConstraintSolver::new).playAll(0, 300);
+    t.checkExpect(solved.wins > 150, true);
+    t.checkExpect(solved.wins > 10 * random.wins, true);
+  }
+
+  // tests the MineProbability class
+  void testMineProbability(Tester t) {
+    // Test 1: a 1 between two hidden cells with one mine in total is a coin flip
+    Board flip = new Board(1, 3);
+    flip.setMine(0);
+    flip.countNeighbors();
+    flip.setRevealed(1);
+    MineProbability odds = new MineProbability().compute(flip);
+    t.checkInexact(odds.probabilityOf(0), 0.5, 0.0001);
+    t.checkInexact(odds.probabilityOf(2), 0.5, 0.0001);
+    t.checkExpect(odds.probabilityOf(1), 0.0);
+    t.checkExpect(odds.components, 1);
+    // Test 2: 1 2 1 under three hidden cells pins the mines to the outer two
+    Board pinned = new Board(2, 3);
+    pinned.setMine(0);
+    pinned.setMine(2);
+    pinned.countNeighbors();
+    for (int idx = 3; idx < 6; idx++) {
+      pinned.setRevealed(idx);
+    }
+    odds.compute(pinned);
+    t.checkInexact(odds.probabilityOf(0), 1.0, 0.0001);
+    t.checkInexact(odds.probabilityOf(1), 0.0, 0.0001);
+    t.checkInexact(odds.probabilityOf(2), 1.0, 0.0001);
+    t.checkExpect(odds.safest(), 1);
+    // Test 3: cells away from the frontier share the mines left over
+    Board row = new Board(1, 6);
+    row.setMine(2);
+    row.setMine(5);
+    row.countNeighbors();
+    row.floodFill(0);
+    odds.compute(row);
+    t.checkInexact(odds.probabilityOf(2), 1.0, 0.0001);
+    t.checkInexact(odds.probabilityOf(4), 1.0 / 3, 0.0001);
+    t.checkExpect(odds.interiorCells, 3);
+    t.checkExpect(odds.exact, true);
+  }
+
+  // tests that ConstraintSolver can guess with exact odds
+  void testSolverExact(Tester t) {
+    SimulationResult exact =
+        new Simulator(9, 9, 10, () -> new ConstraintSolver(true)).playAll(0, 300);
+    t.checkExpect(exact.wins > 150, true);
+  }
+
+  // tests the hint overlay of GameWorld
+  void testHints(Tester t) {
+    GameWorld game = new GameWorld(1, 3, 1, 1);
+    game.initCells();
+    game.board.setMine(0);
+    game.updateNeighbors();
+    game.floodFill(0, 1);
+    game.makeScene();
+    // Test 1: "h" turns on the hints, and hidden cells are shaded by their odds
+    game.onKeyEvent("h");
+    t.checkExpect(game.hints, true);
+    WorldScene expected = game.getEmptyScene();
+    expected.placeImageXY(TileAtlas.HINTS[5], 10, 10);
+    expected.placeImageXY(TileAtlas.REVEALED[1], 30, 10);
+    expected.placeImageXY(TileAtlas.HINTS[5], 50, 10);
+    t.checkExpect(game.makeScene(), expected);
+    // Test 2: pressing "h" again hides them
+    game.onKeyEvent("h");
+    t.checkExpect(game.hints, false);
+    t.checkExpect(TileAtlas.tileAt(game.board, 2), TileAtlas.HIDDEN);
+  }
+
+  // tests the SimulationResult class
+  void testSimulationResult(Tester t) {
+    SimulationResult r1 = new SimulationResult();
+    r1.addCascade(1);
+    r1.addCascade(5);
+    SimulationResult r2 = new SimulationResult();
+    r2.games = 2;
+    r2.wins = 1;
+    r2.clicks = 6;
+    r2.addCascade(3);
+    r1.merge(r2);
+    t.checkExpect(r1.cascades, 3L);
+    t.checkExpect(r1.maxCascade, 5);
+    t.checkExpect(r1.cascadeSizes[0], 1L);
+    t.checkExpect(r1.cascadeSizes[1], 1L);
+    t.checkExpect(r1.cascadeSizes[2], 1L);
+    t.checkInexact(r1.meanCascade(), 3.0, 0.001);
+    t.checkInexact(r1.winRate(), 0.5, 0.001);
+    t.checkInexact(r1.clicksPerGame(), 3.0, 0.001);
+  }
+
   // tests the sameMine method
   void testSameMine(Tester t) {
     this.initialTestCondition();